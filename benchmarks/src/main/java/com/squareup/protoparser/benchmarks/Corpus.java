@@ -0,0 +1,80 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser.benchmarks;
+
+import com.squareup.protoparser.ProtoFileGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Schema text used as benchmark input. */
+final class Corpus {
+  /**
+   * Returns schema text of the given {@code style} and {@code size}.
+   *
+   * @param style either {@code synthetic}, for randomly generated messages, or {@code realistic},
+   *     for copies of a hand-written production-style schema.
+   * @param size one of {@code small}, {@code medium}, or {@code huge}.
+   */
+  static String create(String style, String size) {
+    // Both styles are roughly 3 KiB, 100 KiB, and 2 MiB at each size.
+    int scale;
+    switch (size) {
+      case "small":
+        scale = 1;
+        break;
+      case "medium":
+        scale = 20;
+        break;
+      case "huge":
+        scale = 400;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+    switch (style) {
+      case "synthetic":
+        return synthetic(scale);
+      case "realistic":
+        return realistic(scale * 3 / 2);
+      default:
+        throw new IllegalArgumentException("Unknown style: " + style);
+    }
+  }
+
+  /** Returns generated messages and enums in the default shape of {@link ProtoFileGenerator}. */
+  static String synthetic(int messageCount) {
+    return ProtoFileGenerator.builder()
+        .messageCount(messageCount)
+        .enumCount(1 + messageCount / 4)
+        .build()
+        .generateSchema("synthetic.proto");
+  }
+
+  /** Returns {@code copies} of {@code realistic.proto}, each with uniquely named types. */
+  static String realistic(int copies) {
+    String template = readResource("realistic.proto");
+    StringBuilder result = new StringBuilder("package squareup.benchmarks;\n\n");
+    for (int i = 0; i < copies; i++) {
+      result.append(template.replace("${copy}", Integer.toString(i)));
+    }
+    return result.toString();
+  }
+
+  private static String readResource(String name) {
+    try (InputStream in = Corpus.class.getResourceAsStream(name)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int count; (count = in.read(buffer)) != -1; ) {
+        out.write(buffer, 0, count);
+      }
+      return new String(out.toByteArray(), UTF_8);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private Corpus() {
+  }
+}
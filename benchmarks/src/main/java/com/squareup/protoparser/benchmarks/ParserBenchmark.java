@@ -0,0 +1,88 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser.benchmarks;
+
+import com.squareup.protoparser.DataType;
+import com.squareup.protoparser.FieldElement;
+import com.squareup.protoparser.OptionElement;
+import com.squareup.protoparser.ParseOptions;
+import com.squareup.protoparser.ProtoFile;
+import com.squareup.protoparser.ProtoListener;
+import com.squareup.protoparser.ProtoParser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parses schema text through the {@code String} and UTF-8 {@code byte[]} entry points, with
+ * documentation decoded lazily or skipped, and scans it with a listener which sums field tags.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+  @Param({"synthetic", "realistic"})
+  String style;
+
+  @Param({"small", "medium", "huge"})
+  String size;
+
+  String schema;
+  byte[] utf8;
+  ParseOptions lazyDocumentation = ParseOptions.builder()
+      .documentationMode(ParseOptions.DocumentationMode.LAZY)
+      .build();
+  ParseOptions skipDocumentation = ParseOptions.builder()
+      .documentationMode(ParseOptions.DocumentationMode.SKIP)
+      .build();
+
+  @Setup public void setUp() {
+    schema = Corpus.create(style, size);
+    utf8 = schema.getBytes(UTF_8);
+  }
+
+  @Benchmark public ProtoFile parseString() {
+    return ProtoParser.parse("benchmark.proto", schema);
+  }
+
+  @Benchmark public ProtoFile parseUtf8() {
+    return ProtoParser.parseUtf8("benchmark.proto", utf8);
+  }
+
+  @Benchmark public ProtoFile parseUtf8LazyDocumentation() {
+    return ProtoParser.parseUtf8("benchmark.proto", utf8, lazyDocumentation);
+  }
+
+  @Benchmark public ProtoFile parseUtf8SkipDocumentation() {
+    return ProtoParser.parseUtf8("benchmark.proto", utf8, skipDocumentation);
+  }
+
+  @Benchmark public long scanUtf8FieldTags() {
+    TagSum tagSum = new TagSum();
+    ProtoParser.parseUtf8("benchmark.proto", utf8, skipDocumentation, tagSum);
+    return tagSum.sum;
+  }
+
+  static final class TagSum extends ProtoListener {
+    long sum;
+
+    @Override public void onField(FieldElement.Label label, DataType type, String name, int tag,
+        String documentation, List<OptionElement> options) {
+      sum += tag;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser.benchmarks;
+
+import com.squareup.protoparser.EnumConstantElement;
+import com.squareup.protoparser.EnumElement;
+import com.squareup.protoparser.FieldElement;
+import com.squareup.protoparser.MessageElement;
+import com.squareup.protoparser.OptionElement;
+import com.squareup.protoparser.ProtoFile;
+import com.squareup.protoparser.ProtoParser;
+import com.squareup.protoparser.ServiceElement;
+import com.squareup.protoparser.TypeElement;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Operations on an already-parsed {@link ProtoFile}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaBenchmark {
+  @Param({"synthetic", "realistic"})
+  String style;
+
+  @Param({"small", "medium", "huge"})
+  String size;
+
+  ProtoFile protoFile;
+  StringBuilder output = new StringBuilder();
+  List<List<OptionElement>> optionLists;
+
+  @Setup public void setUp() {
+    protoFile = ProtoParser.parse("benchmark.proto", Corpus.create(style, size));
+    optionLists = new ArrayList<>();
+    optionLists.add(protoFile.options());
+    collectOptions(protoFile.typeElements());
+    for (ServiceElement service : protoFile.services()) {
+      optionLists.add(service.options());
+    }
+  }
+
+  private void collectOptions(List<TypeElement> types) {
+    for (TypeElement type : types) {
+      optionLists.add(type.options());
+      if (type instanceof MessageElement) {
+        for (FieldElement field : ((MessageElement) type).fields()) {
+          optionLists.add(field.options());
+        }
+      } else if (type instanceof EnumElement) {
+        for (EnumConstantElement constant : ((EnumElement) type).constants()) {
+          optionLists.add(constant.options());
+        }
+      }
+      collectOptions(type.nestedElements());
+    }
+  }
+
+  @Benchmark public String toSchema() {
+    return protoFile.toSchema();
+  }
+
+  @Benchmark public int writeSchema() throws IOException {
+    output.setLength(0);
+    protoFile.writeSchema(output);
+    return output.length();
+  }
+
+  @Benchmark public void optionsAsMap(Blackhole blackhole) {
+    for (List<OptionElement> options : optionLists) {
+      Map<String, Object> map = OptionElement.optionsAsMap(options);
+      blackhole.consume(map);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser.benchmarks;
+
+import com.squareup.protoparser.ProtoFile;
+import com.squareup.protoparser.ProtoFileDiskCache;
+import com.squareup.protoparser.ProtoFileSnapshot;
+import com.squareup.protoparser.ProtoParser;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares decoding a {@link ProtoFileSnapshot}, and loading one from a warm
+ * {@link ProtoFileDiskCache}, with parsing the schema it was made from.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+  @Param({"realistic"})
+  String style;
+
+  @Param({"small", "medium", "huge"})
+  String size;
+
+  byte[] utf8;
+  byte[] snapshot;
+  ProtoFileDiskCache diskCache;
+
+  @Setup public void setUp() throws IOException {
+    utf8 = Corpus.create(style, size).getBytes(UTF_8);
+    snapshot = ProtoFileSnapshot.encode(ProtoParser.parseUtf8("benchmark.proto", utf8));
+    diskCache = new ProtoFileDiskCache(Files.createTempDirectory("protoparser-benchmark"));
+    diskCache.parseUtf8("benchmark.proto", utf8);
+  }
+
+  @TearDown public void tearDown() throws IOException {
+    Path directory = diskCache.directory();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        Files.delete(path);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Benchmark public ProtoFile parse() {
+    return ProtoParser.parseUtf8("benchmark.proto", utf8);
+  }
+
+  @Benchmark public ProtoFile decode() throws IOException {
+    return ProtoFileSnapshot.decode(snapshot);
+  }
+
+  /** Hashes the schema, then reads and decodes its snapshot. */
+  @Benchmark public ProtoFile loadFromDiskCache() throws IOException {
+    return diskCache.parseUtf8("benchmark.proto", utf8);
+  }
+}
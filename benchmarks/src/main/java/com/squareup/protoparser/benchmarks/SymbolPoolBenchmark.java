@@ -0,0 +1,64 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser.benchmarks;
+
+import com.squareup.protoparser.ParseOptions;
+import com.squareup.protoparser.ProtoParser;
+import com.squareup.protoparser.SymbolPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parses a batch of files on several threads, each file with its own symbol pool or all of them
+ * with one shared pool, to check that sharing a pool doesn't cost throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SymbolPoolBenchmark {
+  @Param({"synthetic", "realistic"})
+  String style;
+
+  byte[][] batch;
+  ParseOptions sharedPool;
+
+  @Setup public void setUp() {
+    batch = new byte[20][];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = Corpus.create(style, "small").getBytes(UTF_8);
+    }
+    sharedPool = ParseOptions.builder().symbolPool(new SymbolPool()).build();
+  }
+
+  @Benchmark public int parsePoolPerFile() {
+    return parseBatch(ParseOptions.DEFAULT);
+  }
+
+  @Benchmark public int parseSharedPool() {
+    return parseBatch(sharedPool);
+  }
+
+  private int parseBatch(ParseOptions options) {
+    int typeCount = 0;
+    for (byte[] utf8 : batch) {
+      typeCount += ProtoParser.parseUtf8("benchmark.proto", utf8, options).typeElements().size();
+    }
+    return typeCount;
+  }
+}
@@ -0,0 +1,30 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.google.auto.value.AutoValue;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/** A problem found in a {@code .proto} file, and where it was found. */
+@AutoValue
+public abstract class Diagnostic {
+  public static Diagnostic create(String filePath, int line, int column, String message) {
+    checkNotNull(filePath, "filePath");
+    checkNotNull(message, "message");
+    return new AutoValue_Diagnostic(filePath, line, column, message);
+  }
+
+  Diagnostic() {
+  }
+
+  public abstract String filePath();
+  /** The 1-based line number. */
+  public abstract int line();
+  /** The 1-based column number. */
+  public abstract int column();
+  public abstract String message();
+
+  @Override public final String toString() {
+    return String.format("%s at %d:%d: %s", filePath(), line(), column(), message());
+  }
+}
@@ -0,0 +1,175 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+/**
+ * The documentation of an element. This is either text, or the offsets of the comments in a
+ * {@link Source} which are decoded into text when it is first requested. Instances are equal if
+ * their text is equal. Elements hold it in a package-private {@code docs()} property, and write
+ * their own {@code toString()} to show it as their public {@code documentation}.
+ */
+abstract class Documentation {
+  static final Documentation EMPTY = new Text("");
+
+  static Documentation of(String text) {
+    return text.isEmpty() ? EMPTY : new Text(text);
+  }
+
+  /**
+   * Returns documentation made of the comments in {@code [leadingStart, leadingEnd)} of
+   * {@code source}, followed by the trailing comment text in {@code [trailingStart, trailingEnd)}.
+   * Either range may be empty.
+   */
+  static Documentation lazy(Source source, int leadingStart, int leadingEnd, int trailingStart,
+      int trailingEnd) {
+    return new Lazy(source, leadingStart, leadingEnd, trailingStart, trailingEnd);
+  }
+
+  Documentation() {
+  }
+
+  abstract String text();
+
+  /**
+   * Returns this documentation followed by the trailing comment text in {@code [start, end)} of
+   * {@code source}.
+   */
+  abstract Documentation withTrailing(Source source, int start, int end);
+
+  @Override public final boolean equals(Object o) {
+    return o == this || (o instanceof Documentation && text().equals(((Documentation) o).text()));
+  }
+
+  @Override public final int hashCode() {
+    return text().hashCode();
+  }
+
+  @Override public final String toString() {
+    return text();
+  }
+
+  /**
+   * Returns the text of the comments in {@code [start, end)} of {@code source}, which contains only
+   * whitespace and complete comments. Comments are joined by newlines.
+   */
+  static String commentText(Source source, int start, int end) {
+    StringBuilder result = null;
+    int pos = start;
+    while (true) {
+      while (pos < end && isWhitespace(source.charAt(pos))) {
+        pos++;
+      }
+      if (pos == end) {
+        return result != null ? result.toString() : "";
+      }
+      if (result == null) {
+        result = new StringBuilder();
+      } else {
+        result.append('\n');
+      }
+
+      pos++; // Skip '/'.
+      if (source.charAt(pos++) == '*') {
+        int bodyStart = pos;
+        while (source.charAt(pos) != '*' || source.charAt(pos + 1) != '/') {
+          pos++;
+        }
+        result.append(blockCommentBody(source.substring(bodyStart, pos)));
+        pos += 2;
+      } else {
+        if (pos < end && source.charAt(pos) == ' ') {
+          pos++; // Skip a single leading space, if present.
+        }
+        int bodyStart = pos;
+        while (pos < end && source.charAt(pos) != '\n') {
+          pos++;
+        }
+        result.append(source.substring(bodyStart, pos));
+      }
+    }
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  /**
+   * Returns the text of a block comment whose delimiters have been removed. Leading whitespace and
+   * a leading {@code *} are stripped from each line.
+   */
+  static String blockCommentBody(String comment) {
+    StringBuilder result = new StringBuilder();
+    boolean startOfLine = true;
+    for (int i = 0, length = comment.length(); i < length; i++) {
+      char c = comment.charAt(i);
+      if (c == '\n') {
+        result.append('\n');
+        startOfLine = true;
+      } else if (!startOfLine) {
+        result.append(c);
+      } else if (c == '*') {
+        if (i + 1 < length && comment.charAt(i + 1) == ' ') {
+          i += 1; // Skip a single leading space, if present.
+        }
+        startOfLine = false;
+      } else if (!Character.isWhitespace(c)) {
+        result.append(c);
+        startOfLine = false;
+      }
+    }
+    return result.toString().trim();
+  }
+
+  private static final class Text extends Documentation {
+    private final String text;
+
+    Text(String text) {
+      this.text = text;
+    }
+
+    @Override String text() {
+      return text;
+    }
+
+    @Override Documentation withTrailing(Source source, int start, int end) {
+      if (text.isEmpty()) {
+        return new Lazy(source, start, start, start, end);
+      }
+      return of(text + '\n' + source.substring(start, end));
+    }
+  }
+
+  private static final class Lazy extends Documentation {
+    private Source source;
+    private final int leadingStart;
+    private final int leadingEnd;
+    private final int trailingStart;
+    private final int trailingEnd;
+    private String text;
+
+    Lazy(Source source, int leadingStart, int leadingEnd, int trailingStart, int trailingEnd) {
+      this.source = source;
+      this.leadingStart = leadingStart;
+      this.leadingEnd = leadingEnd;
+      this.trailingStart = trailingStart;
+      this.trailingEnd = trailingEnd;
+    }
+
+    @Override synchronized String text() {
+      if (text == null) {
+        String leading = commentText(source, leadingStart, leadingEnd);
+        if (trailingStart == trailingEnd) {
+          text = leading;
+        } else {
+          String trailing = source.substring(trailingStart, trailingEnd);
+          text = leading.isEmpty() ? trailing : leading + '\n' + trailing;
+        }
+        source = null; // The text is decoded; don't retain the source for it.
+      }
+      return text;
+    }
+
+    @Override Documentation withTrailing(Source source, int start, int end) {
+      return new Lazy(source, leadingStart, leadingEnd, start, end);
+    }
+  }
+}
@@ -5,10 +5,7 @@ import com.google.auto.value.AutoValue;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.squareup.protoparser.OptionElement.formatOptionList;
-import static com.squareup.protoparser.Utils.appendDocumentation;
 import static com.squareup.protoparser.Utils.checkNotNull;
-import static com.squareup.protoparser.Utils.immutableCopyOf;
 
 /** An enum constant. */
 @AutoValue
@@ -22,27 +19,45 @@ public abstract class EnumConstantElement {
 
   public abstract String name();
   public abstract int tag();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<OptionElement> options();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "EnumConstantElement{"
+        + "name=" + name() + ", "
+        + "tag=" + tag() + ", "
+        + "documentation=" + documentation() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append(name())
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append(name())
         .append(" = ")
         .append(tag());
     if (!options().isEmpty()) {
-      builder.append(" [\n");
-      formatOptionList(builder, options());
-      builder.append(']');
+      writer.append(" [\n").indent();
+      OptionElement.writeOptionList(writer, options());
+      writer.unindent().append(']');
     }
-    return builder.append(";\n").toString();
+    writer.append(";\n");
   }
 
   public static final class Builder {
     private String name;
     private Integer tag;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<OptionElement> options = new ArrayList<>();
 
     private Builder() {
@@ -59,7 +74,12 @@ public abstract class EnumConstantElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -72,7 +92,7 @@ public abstract class EnumConstantElement {
       checkNotNull(name, "name");
       checkNotNull(tag, "tag");
 
-      return new AutoValue_EnumConstantElement(name, tag, documentation, immutableCopyOf(options));
+      return new AutoValue_EnumConstantElement(name, tag, docs, OptionList.copyOf(options));
     }
   }
 }
@@ -9,8 +9,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
 
@@ -30,11 +28,6 @@ public abstract class EnumElement implements TypeElement {
     }
   }
 
-  private static boolean parseAllowAlias(List<OptionElement> options) {
-    OptionElement option = OptionElement.findByName(options, "allow_alias");
-    return option != null && "true".equals(option.value());
-  }
-
   /**
    * Though not mentioned in the spec, enum names use C++ scoping rules, meaning that enum constants
    * are siblings of their declaring element, not children of it.
@@ -65,39 +58,60 @@ public abstract class EnumElement implements TypeElement {
 
   @Override public abstract String name();
   @Override public abstract String qualifiedName();
-  @Override public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<EnumConstantElement> constants();
   @Override public abstract List<OptionElement> options();
 
+  @Override public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "EnumElement{"
+        + "name=" + name() + ", "
+        + "qualifiedName=" + qualifiedName() + ", "
+        + "documentation=" + documentation() + ", "
+        + "constants=" + constants() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   @Override public final List<TypeElement> nestedElements() {
     return Collections.emptyList(); // Enums do not allow nested type declarations.
   }
 
   @Override public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("enum ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("enum ")
         .append(name())
         .append(" {");
     if (!options().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (OptionElement option : options()) {
-        appendIndented(builder, option.toSchemaDeclaration());
+        option.writeSchemaDeclaration(writer);
       }
+      writer.unindent();
     }
     if (!constants().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (EnumConstantElement constant : constants()) {
-        appendIndented(builder, constant.toSchema());
+        constant.writeSchema(writer);
       }
+      writer.unindent();
     }
-    return builder.append("}\n").toString();
+    writer.append("}\n");
   }
 
   public static final class Builder {
     private String name;
     private String qualifiedName;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<EnumConstantElement> constants = new ArrayList<>();
     private final List<OptionElement> options = new ArrayList<>();
 
@@ -118,7 +132,12 @@ public abstract class EnumElement implements TypeElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -150,11 +169,12 @@ public abstract class EnumElement implements TypeElement {
       checkNotNull(name, "name");
       checkNotNull(qualifiedName, "qualifiedName");
 
-      if (!parseAllowAlias(options)) {
+      List<OptionElement> optionList = OptionList.copyOf(options);
+      if (!OptionList.isSet(optionList, OptionList.ALLOW_ALIAS)) {
         validateTagUniqueness(qualifiedName, constants);
       }
-      return new AutoValue_EnumElement(name, qualifiedName, documentation,
-          immutableCopyOf(constants), immutableCopyOf(options));
+      return new AutoValue_EnumElement(name, qualifiedName, docs,
+          immutableCopyOf(constants), optionList);
     }
   }
 }
@@ -8,8 +8,6 @@ import java.util.Collections;
 import java.util.List;
 
 import static com.squareup.protoparser.MessageElement.validateFieldTagUniqueness;
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
 
@@ -24,28 +22,47 @@ public abstract class ExtendElement {
 
   public abstract String name();
   public abstract String qualifiedName();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<FieldElement> fields();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "ExtendElement{"
+        + "name=" + name() + ", "
+        + "qualifiedName=" + qualifiedName() + ", "
+        + "documentation=" + documentation() + ", "
+        + "fields=" + fields()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("extend ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("extend ")
         .append(name())
         .append(" {");
     if (!fields().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (FieldElement field : fields()) {
-        appendIndented(builder, field.toSchema());
+        field.writeSchema(writer);
       }
+      writer.unindent();
     }
-    return builder.append("}\n").toString();
+    writer.append("}\n");
   }
 
   public static final class Builder {
     private String name;
     private String qualifiedName;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<FieldElement> fields = new ArrayList<>();
 
     private Builder() {
@@ -65,7 +82,12 @@ public abstract class ExtendElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -86,7 +108,7 @@ public abstract class ExtendElement {
       checkNotNull(qualifiedName, "qualifiedName");
 
       validateFieldTagUniqueness(qualifiedName, fields, Collections.<OneOfElement>emptyList());
-      return new AutoValue_ExtendElement(name, qualifiedName, documentation,
+      return new AutoValue_ExtendElement(name, qualifiedName, docs,
           immutableCopyOf(fields));
     }
   }
@@ -4,8 +4,8 @@ package com.squareup.protoparser;
 import com.google.auto.value.AutoValue;
 
 import static com.squareup.protoparser.ProtoFile.isValidTag;
-import static com.squareup.protoparser.Utils.appendDocumentation;
 import static com.squareup.protoparser.Utils.checkArgument;
+import static com.squareup.protoparser.Utils.checkNotNull;
 
 @AutoValue
 public abstract class ExtensionsElement {
@@ -14,32 +14,53 @@ public abstract class ExtensionsElement {
   }
 
   public static ExtensionsElement create(int start, int end, String documentation) {
+    return create(start, end, Documentation.of(checkNotNull(documentation, "documentation")));
+  }
+
+  static ExtensionsElement create(int start, int end, Documentation docs) {
     checkArgument(isValidTag(start), "Invalid start value: %s", start);
     checkArgument(isValidTag(end), "Invalid end value: %s", end);
 
-    return new AutoValue_ExtensionsElement(documentation, start, end);
+    return new AutoValue_ExtensionsElement(checkNotNull(docs, "docs"), start, end);
   }
 
   ExtensionsElement() {
   }
 
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract int start();
   public abstract int end();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "ExtensionsElement{"
+        + "documentation=" + documentation() + ", "
+        + "start=" + start() + ", "
+        + "end=" + end()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("extensions ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("extensions ")
         .append(start());
     if (start() != end()) {
-      builder.append(" to ");
+      writer.append(" to ");
       if (end() < ProtoFile.MAX_TAG_VALUE) {
-        builder.append(end());
+        writer.append(end());
       } else {
-        builder.append("max");
+        writer.append("max");
       }
     }
-    return builder.append(";\n").toString();
+    writer.append(";\n");
   }
 }
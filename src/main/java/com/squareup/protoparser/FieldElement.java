@@ -8,11 +8,8 @@ import java.util.List;
 import java.util.Locale;
 
 import static com.squareup.protoparser.ProtoFile.isValidTag;
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkArgument;
 import static com.squareup.protoparser.Utils.checkNotNull;
-import static com.squareup.protoparser.Utils.immutableCopyOf;
 
 @AutoValue
 public abstract class FieldElement {
@@ -32,46 +29,64 @@ public abstract class FieldElement {
   public abstract DataType type();
   public abstract String name();
   public abstract int tag();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<OptionElement> options();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "FieldElement{"
+        + "label=" + label() + ", "
+        + "type=" + type() + ", "
+        + "name=" + name() + ", "
+        + "tag=" + tag() + ", "
+        + "documentation=" + documentation() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   /** Returns true when the {@code deprecated} option is present and set to true. */
   public final boolean isDeprecated() {
-    OptionElement deprecatedOption = OptionElement.findByName(options(), "deprecated");
-    return deprecatedOption != null && "true".equals(deprecatedOption.value());
+    return OptionList.isSet(options(), OptionList.DEPRECATED);
   }
 
   /** Returns true when the {@code packed} option is present and set to true. */
   public final boolean isPacked() {
-    OptionElement packedOption = OptionElement.findByName(options(), "packed");
-    return packedOption != null && "true".equals(packedOption.value());
+    return OptionList.isSet(options(), OptionList.PACKED);
   }
 
   /** Returns the {@code default} option value or {@code null}. */
   public final OptionElement getDefault() {
-    OptionElement defaultOption = OptionElement.findByName(options(), "default");
-    return defaultOption != null ? defaultOption : null;
+    return OptionElement.findByName(options(), "default");
   }
 
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation());
     if (label() != Label.ONE_OF) {
-      builder.append(label().name().toLowerCase(Locale.US)).append(' ');
+      writer.append(label().name().toLowerCase(Locale.US)).append(' ');
     }
-    builder.append(type())
+    writer.append(type())
         .append(' ')
         .append(name())
         .append(" = ")
         .append(tag());
     if (!options().isEmpty()) {
-      builder.append(" [\n");
+      writer.append(" [\n").indent();
       for (OptionElement option : options()) {
-        appendIndented(builder, option.toSchema());
+        option.writeSchema(writer);
+        writer.endLine();
       }
-      builder.append(']');
+      writer.unindent().append(']');
     }
-    return builder.append(";\n").toString();
+    writer.append(";\n");
   }
 
   public enum Label {
@@ -85,7 +100,7 @@ public abstract class FieldElement {
     private DataType type;
     private String name;
     private Integer tag;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<OptionElement> options = new ArrayList<>();
 
     private Builder() {
@@ -112,7 +127,12 @@ public abstract class FieldElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -136,8 +156,7 @@ public abstract class FieldElement {
 
       checkArgument(isValidTag(tag), "Illegal tag value: %s", tag);
 
-      return new AutoValue_FieldElement(label, type, name, tag, documentation,
-          immutableCopyOf(options));
+      return new AutoValue_FieldElement(label, type, name, tag, docs, OptionList.copyOf(options));
     }
   }
 }
@@ -0,0 +1,101 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.ScalarType;
+import com.squareup.protoparser.Utils.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The reserved words of the {@code .proto} grammar: declaration keywords, scalar type names, and
+ * the words of extension ranges.
+ * These are matched in place against the parser's source so that only true identifiers are
+ * decoded into strings.
+ */
+enum Keyword {
+  PACKAGE,
+  IMPORT,
+  SYNTAX,
+  OPTION,
+  MESSAGE,
+  ENUM,
+  SERVICE,
+  EXTEND,
+  RPC,
+  RETURNS,
+  REQUIRED,
+  OPTIONAL,
+  REPEATED,
+  ONEOF,
+  EXTENSIONS,
+  TO,
+  MAX,
+  MAP,
+  ANY(ScalarType.ANY),
+  BOOL(ScalarType.BOOL),
+  BYTES(ScalarType.BYTES),
+  DOUBLE(ScalarType.DOUBLE),
+  FLOAT(ScalarType.FLOAT),
+  FIXED32(ScalarType.FIXED32),
+  FIXED64(ScalarType.FIXED64),
+  INT32(ScalarType.INT32),
+  INT64(ScalarType.INT64),
+  SFIXED32(ScalarType.SFIXED32),
+  SFIXED64(ScalarType.SFIXED64),
+  SINT32(ScalarType.SINT32),
+  SINT64(ScalarType.SINT64),
+  STRING(ScalarType.STRING),
+  UINT32(ScalarType.UINT32),
+  UINT64(ScalarType.UINT64);
+
+  /** Keywords indexed by their first character's offset from {@code 'a'}. */
+  private static final Keyword[][] BY_FIRST_CHAR = new Keyword[26][];
+
+  static {
+    List<List<Keyword>> buckets = new ArrayList<>();
+    for (int i = 0; i < BY_FIRST_CHAR.length; i++) {
+      buckets.add(new ArrayList<Keyword>());
+    }
+    for (Keyword keyword : values()) {
+      buckets.get(keyword.text.charAt(0) - 'a').add(keyword);
+    }
+    for (int i = 0; i < BY_FIRST_CHAR.length; i++) {
+      BY_FIRST_CHAR[i] = buckets.get(i).toArray(new Keyword[0]);
+    }
+  }
+
+  /** The keyword as it appears in a schema. */
+  final String text;
+  /** The type this keyword names, or null if it isn't a scalar type. */
+  @Nullable final ScalarType scalarType;
+
+  Keyword() {
+    this(null);
+  }
+
+  Keyword(ScalarType scalarType) {
+    this.text = name().toLowerCase(Locale.US);
+    this.scalarType = scalarType;
+  }
+
+  /**
+   * Returns the keyword spelled by the non-empty text in {@code [start, end)} of {@code source},
+   * or null if that text is not a keyword.
+   */
+  @Nullable static Keyword match(Source source, int start, int end) {
+    int first = source.charAt(start) - 'a';
+    if (first < 0 || first >= BY_FIRST_CHAR.length) return null;
+    int length = end - start;
+    candidates:
+    for (Keyword keyword : BY_FIRST_CHAR[first]) {
+      String text = keyword.text;
+      if (text.length() != length) continue;
+      for (int i = 1; i < length; i++) {
+        if (text.charAt(i) != source.charAt(start + i)) continue candidates;
+      }
+      return keyword;
+    }
+    return null;
+  }
+}
@@ -8,8 +8,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
 
@@ -52,56 +50,83 @@ public abstract class MessageElement implements TypeElement {
 
   @Override public abstract String name();
   @Override public abstract String qualifiedName();
-  @Override public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<FieldElement> fields();
   public abstract List<OneOfElement> oneOfs();
   @Override public abstract List<TypeElement> nestedElements();
   public abstract List<ExtensionsElement> extensions();
   @Override public abstract List<OptionElement> options();
 
+  @Override public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "MessageElement{"
+        + "name=" + name() + ", "
+        + "qualifiedName=" + qualifiedName() + ", "
+        + "documentation=" + documentation() + ", "
+        + "fields=" + fields() + ", "
+        + "oneOfs=" + oneOfs() + ", "
+        + "nestedElements=" + nestedElements() + ", "
+        + "extensions=" + extensions() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   @Override public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("message ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("message ")
         .append(name())
         .append(" {");
     if (!options().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (OptionElement option : options()) {
-        appendIndented(builder, option.toSchemaDeclaration());
+        option.writeSchemaDeclaration(writer);
       }
+      writer.unindent();
     }
     if (!fields().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (FieldElement field : fields()) {
-        appendIndented(builder, field.toSchema());
+        field.writeSchema(writer);
       }
+      writer.unindent();
     }
     if (!oneOfs().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (OneOfElement oneOf : oneOfs()) {
-        appendIndented(builder, oneOf.toSchema());
+        oneOf.writeSchema(writer);
       }
+      writer.unindent();
     }
     if (!extensions().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (ExtensionsElement extension : extensions()) {
-        appendIndented(builder, extension.toSchema());
+        extension.writeSchema(writer);
       }
+      writer.unindent();
     }
     if (!nestedElements().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (TypeElement type : nestedElements()) {
-        appendIndented(builder, type.toSchema());
+        writer.type(type);
       }
+      writer.unindent();
     }
-    return builder.append("}\n").toString();
+    writer.append("}\n");
   }
 
   public static final class Builder {
     private String name;
     private String qualifiedName;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<FieldElement> fields = new ArrayList<>();
     private final List<OneOfElement> oneOfs = new ArrayList<>();
     private final List<TypeElement> nestedElements = new ArrayList<>();
@@ -125,7 +150,12 @@ public abstract class MessageElement implements TypeElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -197,9 +227,9 @@ public abstract class MessageElement implements TypeElement {
       validateFieldLabel(qualifiedName, fields);
       EnumElement.validateValueUniquenessInScope(qualifiedName, nestedElements);
 
-      return new AutoValue_MessageElement(name, qualifiedName, documentation,
+      return new AutoValue_MessageElement(name, qualifiedName, docs,
           immutableCopyOf(fields), immutableCopyOf(oneOfs), immutableCopyOf(nestedElements),
-          immutableCopyOf(extensions), immutableCopyOf(options));
+          immutableCopyOf(extensions), OptionList.copyOf(options));
     }
   }
 }
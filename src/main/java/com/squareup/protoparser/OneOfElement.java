@@ -6,8 +6,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
 
@@ -21,25 +19,42 @@ public abstract class OneOfElement {
   }
 
   public abstract String name();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<FieldElement> fields();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "OneOfElement{"
+        + "name=" + name() + ", "
+        + "documentation=" + documentation() + ", "
+        + "fields=" + fields()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("oneof ").append(name()).append(" {");
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation()).append("oneof ").append(name()).append(" {");
     if (!fields().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (FieldElement field : fields()) {
-        appendIndented(builder, field.toSchema());
+        field.writeSchema(writer);
       }
+      writer.unindent();
     }
-    return builder.append("}\n").toString();
+    writer.append("}\n");
   }
 
   public static final class Builder {
     private String name;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<FieldElement> fields = new ArrayList<>();
 
     private Builder() {
@@ -51,7 +66,12 @@ public abstract class OneOfElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -71,7 +91,7 @@ public abstract class OneOfElement {
       checkNotNull(name, "name");
       // TODO check non-empty?
 
-      return new AutoValue_OneOfElement(name, documentation, immutableCopyOf(fields));
+      return new AutoValue_OneOfElement(name, docs, immutableCopyOf(fields));
     }
   }
 }
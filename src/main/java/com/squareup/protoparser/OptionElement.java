@@ -2,13 +2,11 @@
 package com.squareup.protoparser;
 
 import com.google.auto.value.AutoValue;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static java.util.Collections.unmodifiableMap;
 
@@ -65,6 +63,9 @@ public abstract class OptionElement {
     checkNotNull(options, "options");
     checkNotNull(name, "name");
 
+    if (options instanceof OptionList) {
+      return ((OptionList) options).find(name);
+    }
     OptionElement found = null;
     for (OptionElement option : options) {
       if (option.name().equals(name)) {
@@ -89,6 +90,120 @@ public abstract class OptionElement {
     return new AutoValue_OptionElement(name, kind, value, isParenthesized);
   }
 
+  /** Returns a Boolean, Long, or Double if {@code value} is a literal of that kind, or null. */
+  private static Object parse(Kind kind, Object value) {
+    if (!(value instanceof String)) return null;
+    String literal = (String) value;
+    if (kind == Kind.BOOLEAN) {
+      switch (literal) {
+        case "true":
+          return Boolean.TRUE;
+        case "false":
+          return Boolean.FALSE;
+        default:
+          return null;
+      }
+    }
+    return kind == Kind.NUMBER ? parseNumber(literal) : null;
+  }
+
+  /**
+   * Returns a Long if {@code literal} is a decimal, hexadecimal, or octal integer which fits in 64
+   * bits, a Double if it is a floating point literal, {@code inf}, or {@code nan}, or null. Only
+   * the syntax of the {@code .proto} language is accepted, optionally preceded by {@code -}.
+   */
+  private static Number parseNumber(String literal) {
+    boolean negative = literal.startsWith("-");
+    int start = negative ? 1 : 0;
+    if (literal.length() - start == 3 && literal.startsWith("inf", start)) {
+      return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+    if (literal.length() - start == 3 && literal.startsWith("nan", start)) {
+      return Double.NaN;
+    }
+    Long integer = parseInteger(literal, start, negative);
+    if (integer != null) return integer;
+    return isFloat(literal, start) ? Double.parseDouble(literal) : null;
+  }
+
+  /**
+   * Returns the decimal, hexadecimal ({@code 0x}), or octal ({@code 0}) integer from {@code start}
+   * of {@code literal} to its end, or null if it isn't one or doesn't fit in 64 bits. The digits
+   * are read in place.
+   */
+  private static Long parseInteger(String literal, int start, boolean negative) {
+    int end = literal.length();
+    int i = start;
+    int radix = 10;
+    if (end - i > 1 && literal.charAt(i) == '0') {
+      char c = literal.charAt(i + 1);
+      if (c == 'x' || c == 'X') {
+        radix = 16;
+        i += 2;
+      } else {
+        radix = 8;
+        i++;
+      }
+    }
+    if (i == end) return null;
+
+    // The magnitude is accumulated as an unsigned 64-bit value. Values up to the maximum uint64
+    // wrap around like they do in protobuf's Java runtime.
+    long maxMultiplicand = Long.MAX_VALUE / radix * 2 + 1; // (2^64 - 1) / radix, rounded down.
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = ProtoParser.hexDigit(literal.charAt(i));
+      if (digit == -1 || digit >= radix || value < 0 || value > maxMultiplicand) return null;
+      long product = value * radix;
+      value = product + digit;
+      if (value + Long.MIN_VALUE < product + Long.MIN_VALUE) return null; // Carried out.
+    }
+    if (negative) {
+      // Long.MIN_VALUE is the only magnitude above Long.MAX_VALUE which can be negated.
+      if (value < 0 && value != Long.MIN_VALUE) return null;
+      return -value;
+    }
+    return value;
+  }
+
+  /**
+   * Returns true if {@code literal} is a floating point literal from {@code start} to its end:
+   * digits with a decimal point, an exponent, or both.
+   */
+  private static boolean isFloat(String literal, int start) {
+    int end = literal.length();
+    int i = skipDigits(literal, start);
+    int digitCount = i - start;
+    boolean isFloat = false;
+    if (i < end && literal.charAt(i) == '.') {
+      int fractionStart = i + 1;
+      i = skipDigits(literal, fractionStart);
+      digitCount += i - fractionStart;
+      isFloat = true;
+    }
+    if (digitCount == 0) return false;
+    if (i < end && (literal.charAt(i) == 'e' || literal.charAt(i) == 'E')) {
+      i++;
+      if (i < end && (literal.charAt(i) == '+' || literal.charAt(i) == '-')) i++;
+      int exponentStart = i;
+      i = skipDigits(literal, exponentStart);
+      if (i == exponentStart) return false;
+      isFloat = true;
+    }
+    return isFloat && i == end;
+  }
+
+  private static int skipDigits(String s, int i) {
+    while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+      i++;
+    }
+    return i;
+  }
+
+  // The value of a BOOLEAN or NUMBER option parsed from its literal on first use, or null. Threads
+  // may race to set it, which is benign: each one parses an equal immutable value.
+  private Object parsedValue;
+
   OptionElement() {
   }
 
@@ -97,97 +212,184 @@ public abstract class OptionElement {
   public abstract Object value();
   public abstract boolean isParenthesized();
 
+  /** Returns the value of this {@code BOOLEAN} option. */
+  public final boolean booleanValue() {
+    checkKind(Kind.BOOLEAN);
+    Object parsed = parsedValue();
+    if (parsed == null) throw new IllegalStateException(toSchema() + " is not a boolean");
+    return (Boolean) parsed;
+  }
+
+  /**
+   * Returns the value of this {@code NUMBER} option, which must be an integer. Values of unsigned
+   * 64-bit options above {@link Long#MAX_VALUE} are negative.
+   */
+  public final long longValue() {
+    checkKind(Kind.NUMBER);
+    Object parsed = parsedValue();
+    if (!(parsed instanceof Long)) {
+      throw new IllegalStateException(toSchema() + " is not an integer");
+    }
+    return (Long) parsed;
+  }
+
+  /** Returns the value of this {@code NUMBER} option. */
+  public final double doubleValue() {
+    checkKind(Kind.NUMBER);
+    Object parsed = parsedValue();
+    if (parsed == null) throw new IllegalStateException(toSchema() + " is not a number");
+    return ((Number) parsed).doubleValue();
+  }
+
+  /** Returns the string of this {@code STRING} option. */
+  public final String stringValue() {
+    checkKind(Kind.STRING);
+    return (String) value();
+  }
+
+  /** Returns the identifier of the constant in this {@code ENUM} option. */
+  public final String enumValue() {
+    checkKind(Kind.ENUM);
+    return (String) value();
+  }
+
+  /** Returns the nested option of this {@code OPTION} option, like {@code b} in {@code (a).b}. */
+  public final OptionElement optionValue() {
+    checkKind(Kind.OPTION);
+    return (OptionElement) value();
+  }
+
+  /**
+   * Returns the entries of this {@code MAP} option. Values are strings, maps of the same type, or
+   * lists.
+   */
+  @SuppressWarnings("unchecked") // Maps are created with string keys.
+  public final Map<String, Object> mapValue() {
+    checkKind(Kind.MAP);
+    return (Map<String, Object>) value();
+  }
+
+  /** Returns the elements of this {@code LIST} option. */
+  @SuppressWarnings("unchecked") // Lists are created with object elements.
+  public final List<Object> listValue() {
+    checkKind(Kind.LIST);
+    return (List<Object>) value();
+  }
+
+  private Object parsedValue() {
+    Object result = parsedValue;
+    if (result == null) {
+      result = parse(kind(), value());
+      parsedValue = result;
+    }
+    return result;
+  }
+
+  private void checkKind(Kind kind) {
+    if (kind() != kind) {
+      throw new IllegalStateException("Expected a " + kind + " option but was " + toSchema());
+    }
+  }
+
   public final String toSchema() {
+    StringBuilder builder = new StringBuilder();
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  public final String toSchemaDeclaration() {
+    StringBuilder builder = new StringBuilder();
+    writeSchemaDeclaration(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchemaDeclaration(SchemaWriter writer) {
+    writer.append("option ");
+    writeSchema(writer);
+    writer.append(";\n");
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writeSchema(writer, isParenthesized());
+  }
+
+  private void writeSchema(SchemaWriter writer, boolean parenthesized) {
+    if (parenthesized) {
+      writer.append('(').append(name()).append(')');
+    } else {
+      writer.append(name());
+    }
     Object value = value();
     switch (kind()) {
       case STRING:
-        return formatName() + " = \"" + value + '"';
+        writer.append(" = \"").append(value).append('"');
+        break;
       case BOOLEAN:
       case NUMBER:
       case ENUM:
-        return formatName() + " = " + value;
-      case OPTION: {
-        StringBuilder builder = new StringBuilder();
-        OptionElement optionValue = (OptionElement) value;
+        writer.append(" = ").append(value);
+        break;
+      case OPTION:
         // Treat nested options as non-parenthesized always, prevents double parentheses.
-        optionValue =
-            OptionElement.create(optionValue.name(), optionValue.kind(), optionValue.value());
-        builder.append(formatName()).append('.').append(optionValue.toSchema());
-        return builder.toString();
-      }
-      case MAP: {
-        StringBuilder builder = new StringBuilder();
-        builder.append(formatName()).append(" = {\n");
+        writer.append('.');
+        ((OptionElement) value).writeSchema(writer, false);
+        break;
+      case MAP:
+        writer.append(" = {\n").indent();
         //noinspection unchecked
-        Map<String, ?> valueMap = (Map<String, ?>) value;
-        formatOptionMap(builder, valueMap);
-        builder.append('}');
-        return builder.toString();
-      }
-      case LIST: {
-        StringBuilder builder = new StringBuilder();
-        builder.append(formatName()).append(" = [\n");
+        writeOptionMap(writer, (Map<String, ?>) value);
+        writer.unindent().append('}');
+        break;
+      case LIST:
+        writer.append(" = [\n").indent();
         //noinspection unchecked
-        List<OptionElement> optionList = (List<OptionElement>) value;
-        formatOptionList(builder, optionList);
-        builder.append(']');
-        return builder.toString();
-      }
+        writeOptionList(writer, (List<OptionElement>) value);
+        writer.unindent().append(']');
+        break;
       default:
         throw new AssertionError();
     }
   }
 
-  public final String toSchemaDeclaration() {
-    return "option " + toSchema() + ";\n";
-  }
-
-  static void formatOptionList(StringBuilder builder, List<OptionElement> optionList) {
+  /** Writes each option on its own line, separated by commas. */
+  static void writeOptionList(SchemaWriter writer, List<OptionElement> optionList) {
     for (int i = 0, count = optionList.size(); i < count; i++) {
-      String endl = (i < count - 1) ? "," : "";
-      appendIndented(builder, optionList.get(i).toSchema() + endl);
+      optionList.get(i).writeSchema(writer);
+      if (i < count - 1) writer.append(',');
+      writer.endLine();
     }
   }
 
-  static void formatOptionMap(StringBuilder builder, Map<String, ?> valueMap) {
-    List<? extends Map.Entry<String, ?>> entries = new ArrayList<>(valueMap.entrySet());
-    for (int i = 0, count = entries.size(); i < count; i++) {
-      Map.Entry<String, ?> entry = entries.get(i);
-      String endl = (i < count - 1) ? "," : "";
-      appendIndented(builder,
-          entry.getKey() + ": " + formatOptionMapValue(entry.getValue()) + endl);
+  private static void writeOptionMap(SchemaWriter writer, Map<String, ?> valueMap) {
+    int remaining = valueMap.size();
+    for (Map.Entry<String, ?> entry : valueMap.entrySet()) {
+      writer.append(entry.getKey()).append(": ");
+      writeOptionMapValue(writer, entry.getValue());
+      if (--remaining > 0) writer.append(',');
+      writer.endLine();
     }
   }
 
-  static String formatOptionMapValue(Object value) {
+  private static void writeOptionMapValue(SchemaWriter writer, Object value) {
     checkNotNull(value, "value == null");
     if (value instanceof String) {
-      return "\"" + value + '"';
-    }
-    if (value instanceof Map) {
-      StringBuilder builder = new StringBuilder().append("{\n");
+      writer.append('"').append((String) value).append('"');
+    } else if (value instanceof Map) {
+      writer.append("{\n").indent();
       //noinspection unchecked
-      Map<String, ?> map = (Map<String, ?>) value;
-      formatOptionMap(builder, map);
-      return builder.append('}').toString();
-    }
-    if (value instanceof List) {
-      StringBuilder builder = new StringBuilder().append("[\n");
+      writeOptionMap(writer, (Map<String, ?>) value);
+      writer.unindent().append('}');
+    } else if (value instanceof List) {
+      writer.append("[\n").indent();
       List<?> list = (List<?>) value;
       for (int i = 0, count = list.size(); i < count; i++) {
-        String endl = (i < count - 1) ? "," : "";
-        appendIndented(builder, formatOptionMapValue(list.get(i)) + endl);
+        writeOptionMapValue(writer, list.get(i));
+        if (i < count - 1) writer.append(',');
+        writer.endLine();
       }
-      return builder.append("]").toString();
-    }
-    return value.toString();
-  }
-
-  private String formatName() {
-    if (isParenthesized()) {
-      return '(' + name() + ')';
+      writer.unindent().append(']');
     } else {
-      return name();
+      writer.append(value);
     }
   }
 }
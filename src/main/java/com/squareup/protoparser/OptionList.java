@@ -0,0 +1,129 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.squareup.protoparser.Utils.immutableCopyOf;
+
+/**
+ * An immutable list of options with an index from name to option, built once when an element is
+ * built. {@link OptionElement#findByName} uses the index instead of scanning, and the well-known
+ * boolean options are resolved up front into flags.
+ *
+ * <p>Lists of fewer than two options aren't worth indexing; {@link #copyOf} returns them as
+ * compact immutable lists instead.
+ */
+final class OptionList extends AbstractList<OptionElement> implements RandomAccess {
+  static final int DEPRECATED = 1;
+  static final int PACKED = 1 << 1;
+  static final int ALLOW_ALIAS = 1 << 2;
+  /** The option name of each flag, indexed by the flag's bit position. */
+  private static final String[] FLAG_NAMES = {"deprecated", "packed", "allow_alias"};
+
+  /** Returns an immutable copy of {@code options}, indexed by name if it has several options. */
+  static List<OptionElement> copyOf(List<OptionElement> options) {
+    if (options instanceof OptionList) {
+      return options;
+    }
+    if (options.size() < 2) {
+      return immutableCopyOf(options);
+    }
+    return new OptionList(options.toArray(new OptionElement[options.size()]));
+  }
+
+  /**
+   * Returns true when the option named by {@code flag} is present in {@code options} and set to
+   * true.
+   *
+   * @throws IllegalStateException if several options have that name.
+   */
+  static boolean isSet(List<OptionElement> options, int flag) {
+    if (options instanceof OptionList) {
+      OptionList optionList = (OptionList) options;
+      if ((optionList.duplicateFlags & flag) != 0) {
+        throw multipleOptions(flagName(flag));
+      }
+      return (optionList.trueFlags & flag) != 0;
+    }
+    OptionElement option = OptionElement.findByName(options, flagName(flag));
+    return option != null && "true".equals(option.value());
+  }
+
+  private static String flagName(int flag) {
+    return FLAG_NAMES[Integer.numberOfTrailingZeros(flag)];
+  }
+
+  private static IllegalStateException multipleOptions(String name) {
+    return new IllegalStateException("Multiple options match name: " + name);
+  }
+
+  private final OptionElement[] elements;
+  /**
+   * Open-addressed by name hash with linear probing. Each slot holds the only option with its
+   * name, or the name itself if several options share it. The length is a power of two.
+   */
+  private final Object[] byName;
+  /** The flags whose option is present once and set to true. */
+  private final int trueFlags;
+  /** The flags whose option is present more than once. */
+  private final int duplicateFlags;
+
+  private OptionList(OptionElement[] elements) {
+    this.elements = elements;
+    this.byName = new Object[Integer.highestOneBit(elements.length * 2 - 1) << 1];
+    for (OptionElement option : elements) {
+      int slot = slot(option.name());
+      Object entry = byName[slot];
+      byName[slot] = entry == null ? option : option.name();
+    }
+
+    int trueFlags = 0;
+    int duplicateFlags = 0;
+    for (int i = 0; i < FLAG_NAMES.length; i++) {
+      Object entry = byName[slot(FLAG_NAMES[i])];
+      if (entry instanceof String) {
+        duplicateFlags |= 1 << i;
+      } else if (entry != null && "true".equals(((OptionElement) entry).value())) {
+        trueFlags |= 1 << i;
+      }
+    }
+    this.trueFlags = trueFlags;
+    this.duplicateFlags = duplicateFlags;
+  }
+
+  /**
+   * Returns the option named {@code name}, or null if there is none.
+   *
+   * @throws IllegalStateException if several options have that name.
+   */
+  OptionElement find(String name) {
+    Object entry = byName[slot(name)];
+    if (entry instanceof String) {
+      throw multipleOptions(name);
+    }
+    return (OptionElement) entry;
+  }
+
+  /** Returns the slot of {@code name} in {@code byName}, or the empty slot where it belongs. */
+  private int slot(String name) {
+    int mask = byName.length - 1;
+    int i = name.hashCode() & mask;
+    while (true) {
+      Object entry = byName[i];
+      if (entry == null) return i;
+      String entryName = entry instanceof String ? (String) entry : ((OptionElement) entry).name();
+      if (entryName.equals(name)) return i;
+      i = (i + 1) & mask;
+    }
+  }
+
+  @Override public OptionElement get(int index) {
+    return elements[index];
+  }
+
+  @Override public int size() {
+    return elements.length;
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.google.auto.value.AutoValue;
+import com.squareup.protoparser.Utils.Nullable;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/** Settings which tune how {@link ProtoParser} builds its model. */
+@AutoValue
+public abstract class ParseOptions {
+  /**
+   * Options which parse each file with its own {@link SymbolPool}, decode documentation eagerly,
+   * and don't record a {@link SourceMap}.
+   */
+  public static final ParseOptions DEFAULT = builder().build();
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  ParseOptions() {
+  }
+
+  /** How the parser handles the comments which document elements. */
+  public enum DocumentationMode {
+    /** Decode documentation while parsing. */
+    EAGER,
+    /**
+     * Record where each element's comments are and decode them the first time
+     * {@code documentation()} is called. This makes parsing faster but usually retains more
+     * memory: while any element's documentation is unread, the entire parsed source stays
+     * reachable, whether that is a copy of the text, a {@code byte[]}, or a buffer. Files are read
+     * into memory rather than mapped, so that they can be changed or deleted meanwhile. Prefer
+     * {@link #EAGER} or {@link #SKIP} for models which are kept for long. Sources supplied by the
+     * caller must not change while documentation is unread.
+     */
+    LAZY,
+    /**
+     * Treat comments as whitespace. Every element's documentation is empty. Syntax which follows
+     * a trailing comment on the same line is accepted rather than rejected.
+     */
+    SKIP
+  }
+
+  /** The pool shared by every parse using these options, or null to use a pool per parse. */
+  @Nullable public abstract SymbolPool symbolPool();
+  public abstract DocumentationMode documentationMode();
+  /** True if parsed files have a {@link ProtoFile#sourceMap() source map}. */
+  public abstract boolean sourceMap();
+
+  /** Returns the pool for a single parse. */
+  final SymbolPool symbolPoolForParse() {
+    SymbolPool symbolPool = symbolPool();
+    return symbolPool != null ? symbolPool : new SymbolPool();
+  }
+
+  public static final class Builder {
+    private SymbolPool symbolPool;
+    private DocumentationMode documentationMode = DocumentationMode.EAGER;
+    private boolean sourceMap;
+
+    private Builder() {
+    }
+
+    public Builder symbolPool(SymbolPool symbolPool) {
+      this.symbolPool = checkNotNull(symbolPool, "symbolPool");
+      return this;
+    }
+
+    public Builder documentationMode(DocumentationMode documentationMode) {
+      this.documentationMode = checkNotNull(documentationMode, "documentationMode");
+      return this;
+    }
+
+    public Builder sourceMap(boolean sourceMap) {
+      this.sourceMap = sourceMap;
+      return this;
+    }
+
+    public ParseOptions build() {
+      return new AutoValue_ParseOptions(symbolPool, documentationMode, sourceMap);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.google.auto.value.AutoValue;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Parses many {@code .proto} files concurrently. Each file is parsed by an independent
+ * {@link ProtoParser} on the supplied executor, and a file that fails to parse is reported in the
+ * result rather than aborting the batch.
+ */
+public final class ProtoBatchParser {
+  /**
+   * Parse every {@code .proto} file beneath {@code root} on a pool with one thread per available
+   * processor.
+   */
+  public static Result parseAll(Path root) throws IOException, InterruptedException {
+    return parseAll(findProtoFiles(root));
+  }
+
+  /**
+   * Parse {@code paths} on a pool with one thread per available processor. The pool's threads are
+   * started for this call and stopped when it returns; to parse many small batches, reuse an
+   * executor with {@link #ProtoBatchParser(ExecutorService)} instead.
+   */
+  public static Result parseAll(Collection<Path> paths) throws InterruptedException {
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      return new ProtoBatchParser(pool).parse(paths);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Returns the {@code .proto} files beneath {@code root}, sorted by path. */
+  static List<Path> findProtoFiles(Path root) throws IOException {
+    final List<Path> result = new ArrayList<>();
+    Files.walkFileTree(checkNotNull(root, "root"), new SimpleFileVisitor<Path>() {
+      @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".proto")) {
+          result.add(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    Collections.sort(result);
+    return result;
+  }
+
+  private final ExecutorService executor;
+  private final ParseOptions options;
+
+  /** Create a batch parser which runs its parse tasks on {@code executor}. */
+  public ProtoBatchParser(ExecutorService executor) {
+    this(executor, ParseOptions.DEFAULT);
+  }
+
+  /**
+   * Create a batch parser which runs its parse tasks on {@code executor} and parses each file
+   * with {@code options}. To share identifiers across the batch, set a {@link SymbolPool} on the
+   * options.
+   */
+  public ProtoBatchParser(ExecutorService executor, ParseOptions options) {
+    this.executor = checkNotNull(executor, "executor");
+    this.options = checkNotNull(options, "options");
+  }
+
+  /** Parse every {@code .proto} file beneath {@code root}. */
+  public Result parseTree(Path root) throws IOException, InterruptedException {
+    return parse(findProtoFiles(root));
+  }
+
+  /** Parse {@code paths}, returning results in iteration order of {@code paths}. */
+  public Result parse(Collection<Path> paths) throws InterruptedException {
+    checkNotNull(paths, "paths");
+
+    List<Future<Object>> futures = new ArrayList<>(paths.size());
+    try {
+      for (final Path path : paths) {
+        checkNotNull(path, "path");
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override public Object call() {
+            try {
+              return ProtoParser.parseUtf8(path, options);
+            } catch (IOException | RuntimeException e) {
+              return e;
+            }
+          }
+        }));
+      }
+
+      Map<String, ProtoFile> files = new LinkedHashMap<>();
+      Map<String, Exception> errors = new LinkedHashMap<>();
+      int i = 0;
+      for (Path path : paths) {
+        Object result;
+        try {
+          result = futures.get(i++).get();
+        } catch (ExecutionException e) {
+          // Parse failures are returned, not thrown, so the cause can only be an Error.
+          throw (Error) e.getCause();
+        }
+        if (result instanceof ProtoFile) {
+          ProtoFile protoFile = (ProtoFile) result;
+          files.put(protoFile.filePath(), protoFile);
+        } else {
+          errors.put(path.toString(), (Exception) result);
+        }
+      }
+      return Result.create(files, errors);
+    } finally {
+      // If parsing failed or was interrupted, don't leave tasks running on the caller's executor.
+      for (Future<Object> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /** The outcome of parsing a batch of files. */
+  @AutoValue
+  public abstract static class Result {
+    static Result create(Map<String, ProtoFile> files, Map<String, Exception> errors) {
+      return new AutoValue_ProtoBatchParser_Result(unmodifiableMap(files), unmodifiableMap(errors));
+    }
+
+    Result() {
+    }
+
+    /** Successfully parsed files keyed by {@link ProtoFile#filePath()}. */
+    public abstract Map<String, ProtoFile> files();
+
+    /**
+     * Files which could not be read or parsed, keyed by path. Syntax errors are reported as
+     * {@link IllegalStateException}s.
+     */
+    public abstract Map<String, Exception> errors();
+  }
+}
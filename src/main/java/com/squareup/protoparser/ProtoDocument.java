@@ -0,0 +1,215 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.squareup.protoparser.Utils.checkArgument;
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/**
+ * The text of a {@code .proto} file and its parsed model, for files which are edited and reparsed
+ * repeatedly, like the buffer of an editor.
+ *
+ * <p>An {@linkplain #edit edit} only reparses the top-level declarations it touches. Parsing
+ * starts at the first affected declaration and stops as soon as it reaches the end of an
+ * unchanged one; the declarations which follow are reused, so the new {@link #protoFile()} shares
+ * their {@link TypeElement} and {@link ServiceElement} instances with the previous one. Changing
+ * the file's package reparses the entire file. When the options request a {@link SourceMap}, the
+ * spans of reused elements are moved rather than recomputed.
+ */
+public final class ProtoDocument {
+  /** Parses {@code data} as the contents of the file at {@code filePath}. */
+  public static ProtoDocument parse(String filePath, String data) {
+    return parse(filePath, data, ParseOptions.DEFAULT);
+  }
+
+  /**
+   * Parses {@code data} as the contents of the file at {@code filePath}. Each parse and edit
+   * uses a pool of its own unless {@code options} has a {@linkplain ParseOptions#symbolPool symbol
+   * pool}; a shared pool retains every identifier the document has ever contained.
+   */
+  public static ProtoDocument parse(String filePath, String data, ParseOptions options) {
+    checkNotNull(filePath, "filePath");
+    checkNotNull(data, "data");
+    checkNotNull(options, "options");
+    return reparse(filePath, data, options);
+  }
+
+  private static ProtoDocument reparse(String filePath, String data, ParseOptions options) {
+    Source source = Source.of(data.toCharArray());
+    ProtoParser parser = new ProtoParser(filePath, source, options, false);
+    List<Declaration> declarations = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    while (parser.pos() < data.length()) {
+      declarations.add(read(parser));
+      ends.add(parser.pos());
+    }
+    int[] endsArray = new int[ends.size()];
+    for (int i = 0; i < endsArray.length; i++) {
+      endsArray[i] = ends.get(i);
+    }
+    SourceMap sourceMap = options.sourceMap()
+        ? parser.treeBuilder().sourceMapBuilder().build(filePath, source)
+        : null;
+    return new ProtoDocument(filePath, data, options, declarations, endsArray, sourceMap);
+  }
+
+  private static Declaration read(ProtoParser parser) {
+    parser.readFileDeclaration();
+    ProtoTreeBuilder treeBuilder = parser.treeBuilder();
+    return new Declaration(treeBuilder.takeDeclaration(), treeBuilder.takeNestedExtends());
+  }
+
+  private final String filePath;
+  private final String data;
+  private final ParseOptions options;
+  /**
+   * The file's top-level declarations, in order. Each one spans the text from the end of the one
+   * before it to its own end, including its leading whitespace and documentation. Together they
+   * span the entire file.
+   */
+  private final List<Declaration> declarations;
+  /** The offset in {@code data} which each declaration ends at. */
+  private final int[] ends;
+  private final ProtoFile protoFile;
+
+  private ProtoDocument(String filePath, String data, ParseOptions options,
+      List<Declaration> declarations, int[] ends, SourceMap sourceMap) {
+    this.filePath = filePath;
+    this.data = data;
+    this.options = options;
+    this.declarations = declarations;
+    this.ends = ends;
+
+    ProtoFile.Builder builder = ProtoFile.builder(filePath).sourceMap(sourceMap);
+    for (Declaration declaration : declarations) {
+      for (ExtendElement extend : declaration.nestedExtends) {
+        builder.addExtendDeclaration(extend);
+      }
+      ProtoTreeBuilder.addDeclaration(builder, declaration.element);
+    }
+    this.protoFile = builder.build();
+  }
+
+  public String filePath() {
+    return filePath;
+  }
+
+  public String data() {
+    return data;
+  }
+
+  public ProtoFile protoFile() {
+    return protoFile;
+  }
+
+  /**
+   * Returns a document whose text is this document's text with the {@code removedLength}
+   * characters at {@code offset} replaced by {@code insertedText}. This document is unchanged.
+   *
+   * @throws IllegalStateException if the edited text is not a valid {@code .proto} file.
+   */
+  public ProtoDocument edit(int offset, int removedLength, String insertedText) {
+    checkArgument(offset >= 0 && offset <= data.length(), "offset out of range: %s", offset);
+    checkArgument(removedLength >= 0 && removedLength <= data.length() - offset,
+        "removedLength out of range: %s", removedLength);
+    checkNotNull(insertedText, "insertedText");
+
+    String newData = data.substring(0, offset) + insertedText
+        + data.substring(offset + removedLength);
+    if (declarations.isEmpty()) {
+      return reparse(filePath, newData, options);
+    }
+    int delta = insertedText.length() - removedLength;
+
+    // Reparse from the first declaration ending at or after the edit. A declaration which ends
+    // exactly at the edit is included because it may be extended by a trailing comment.
+    int first = firstEndingAtOrAfter(offset);
+    int last = firstEndingAtOrAfter(offset + removedLength);
+    String packageName = null;
+    for (int i = 0; i < first; i++) {
+      String declaredPackage = ProtoTreeBuilder.declaredPackage(declarations.get(i).element);
+      if (declaredPackage != null) packageName = declaredPackage;
+    }
+    for (int i = first; i <= last; i++) {
+      if (ProtoTreeBuilder.declaredPackage(declarations.get(i).element) != null) {
+        return reparse(filePath, newData, options);
+      }
+    }
+
+    List<Declaration> newDeclarations = new ArrayList<>(declarations.subList(0, first));
+    List<Integer> newEnds = new ArrayList<>();
+    Source source = Source.of(newData.toCharArray());
+    ProtoParser parser = new ProtoParser(filePath, source, options, false);
+    int start = first == 0 ? 0 : ends[first - 1];
+    parser.seek(start, packageName);
+    int editEnd = offset + insertedText.length();
+    int resume = declarations.size();
+    while (parser.pos() < newData.length()) {
+      Declaration declaration = read(parser);
+      if (ProtoTreeBuilder.declaredPackage(declaration.element) != null) {
+        return reparse(filePath, newData, options);
+      }
+      newDeclarations.add(declaration);
+      newEnds.add(parser.pos());
+
+      // Past the edit, the text is unchanged. If this declaration ended where an old one did, the
+      // old declarations which follow can be reused.
+      if (parser.pos() >= editEnd) {
+        int j = Arrays.binarySearch(ends, parser.pos() - delta);
+        if (j >= 0) {
+          resume = j + 1;
+          break;
+        }
+      }
+    }
+
+    int[] resultEnds = new int[first + newEnds.size() + declarations.size() - resume];
+    System.arraycopy(ends, 0, resultEnds, 0, first);
+    int count = first;
+    for (int end : newEnds) {
+      resultEnds[count++] = end;
+    }
+    for (int i = resume; i < declarations.size(); i++) {
+      newDeclarations.add(declarations.get(i));
+      resultEnds[count++] = ends[i] + delta;
+    }
+
+    SourceMap sourceMap = null;
+    if (options.sourceMap()) {
+      // Spans of the reused declarations are copied from the previous map.
+      SourceMap.Builder sourceMapBuilder = parser.treeBuilder().sourceMapBuilder();
+      SourceMap previous = protoFile.sourceMap();
+      sourceMapBuilder.addAll(previous, 0, start, 0);
+      if (resume < declarations.size()) {
+        sourceMapBuilder.addAll(previous, ends[resume - 1], Integer.MAX_VALUE, delta);
+      }
+      sourceMap = sourceMapBuilder.build(filePath, source);
+    }
+    return new ProtoDocument(filePath, newData, options, newDeclarations, resultEnds, sourceMap);
+  }
+
+  /** Returns the index of the first declaration which ends at or after {@code offset}. */
+  private int firstEndingAtOrAfter(int offset) {
+    int i = Arrays.binarySearch(ends, offset);
+    return i >= 0 ? i : -i - 1;
+  }
+
+  @Override public String toString() {
+    return filePath;
+  }
+
+  /** A top-level declaration and the extend declarations nested in it. */
+  private static final class Declaration {
+    /** The parsed element, or null for an empty declaration or the whitespace at the end. */
+    final Object element;
+    final List<ExtendElement> nestedExtends;
+
+    Declaration(Object element, List<ExtendElement> nestedExtends) {
+      this.element = element;
+      this.nestedExtends = nestedExtends;
+    }
+  }
+}
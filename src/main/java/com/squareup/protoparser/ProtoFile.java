@@ -3,9 +3,12 @@ package com.squareup.protoparser;
 
 import com.google.auto.value.AutoValue;
 import com.squareup.protoparser.Utils.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
@@ -40,6 +43,14 @@ public abstract class ProtoFile {
     return new Builder(checkNotNull(filePath, "filePath"));
   }
 
+  /** Types and services by qualified name, built on first lookup. */
+  private volatile Index index;
+  /**
+   * Set by the builder just after construction. AutoValue constructs this class, so the field
+   * can't be final; like {@code index}, it is volatile so that other threads see the write.
+   */
+  private volatile SourceMap sourceMap;
+
   ProtoFile() {
   }
 
@@ -53,51 +64,143 @@ public abstract class ProtoFile {
   public abstract List<ExtendElement> extendDeclarations();
   public abstract List<OptionElement> options();
 
+  /**
+   * Returns where this file's elements were declared, or null if it was not parsed with
+   * {@link ParseOptions.Builder#sourceMap}. The source map is not part of this file's value.
+   */
+  @Nullable public final SourceMap sourceMap() {
+    return sourceMap;
+  }
+
+  /**
+   * Returns the type declared in this file, at any level of nesting, whose qualified name is
+   * {@code qualifiedName}, or null if there is none.
+   */
+  @Nullable public final TypeElement getType(String qualifiedName) {
+    return index().types.get(checkNotNull(qualifiedName, "qualifiedName"));
+  }
+
+  /**
+   * Returns the service declared in this file whose qualified name is {@code qualifiedName}, or
+   * null if there is none.
+   */
+  @Nullable public final ServiceElement getService(String qualifiedName) {
+    return index().services.get(checkNotNull(qualifiedName, "qualifiedName"));
+  }
+
+  private Index index() {
+    Index result = index;
+    if (result == null) {
+      // Racing threads may each build an index, but they build equal ones.
+      result = new Index(this);
+      index = result;
+    }
+    return result;
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  /**
+   * Writes the schema of this file to {@code out}. The output is identical to {@link #toSchema()}
+   * but is streamed rather than built in memory.
+   */
+  public final void writeSchema(Appendable out) throws IOException {
+    try {
+      writeSchema(new SchemaWriter(out));
+    } catch (SchemaWriter.WriteException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void writeSchema(SchemaWriter writer) {
     if (!filePath().isEmpty()) {
-      builder.append("// ").append(filePath()).append('\n');
+      writer.append("// ").append(filePath()).append('\n');
     }
     if (packageName() != null) {
-      builder.append("package ").append(packageName()).append(";\n");
+      writer.append("package ").append(packageName()).append(";\n");
     }
     if (syntax() != null) {
-      builder.append("syntax \"").append(syntax().name).append("\";\n");
+      writer.append("syntax \"").append(syntax().name).append("\";\n");
     }
     if (!dependencies().isEmpty() || !publicDependencies().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n');
       for (String dependency : dependencies()) {
-        builder.append("import \"").append(dependency).append("\";\n");
+        writer.append("import \"").append(dependency).append("\";\n");
       }
       for (String publicDependency : publicDependencies()) {
-        builder.append("import public \"").append(publicDependency).append("\";\n");
+        writer.append("import public \"").append(publicDependency).append("\";\n");
       }
     }
     if (!options().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n');
       for (OptionElement option : options()) {
-        builder.append(option.toSchemaDeclaration());
+        option.writeSchemaDeclaration(writer);
       }
     }
     if (!typeElements().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n');
       for (TypeElement typeElement : typeElements()) {
-        builder.append(typeElement.toSchema());
+        writer.type(typeElement);
       }
     }
     if (!extendDeclarations().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n');
       for (ExtendElement extendDeclaration : extendDeclarations()) {
-        builder.append(extendDeclaration.toSchema());
+        extendDeclaration.writeSchema(writer);
       }
     }
     if (!services().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n');
       for (ServiceElement service : services()) {
-        builder.append(service.toSchema());
+        service.writeSchema(writer);
+      }
+    }
+  }
+
+  private static final class Index {
+    final Map<String, TypeElement> types = new HashMap<>();
+    final Map<String, ServiceElement> services = new HashMap<>();
+
+    Index(ProtoFile protoFile) {
+      ProtoVisitor indexer = new ProtoVisitor() {
+        @Override public boolean visitMessage(MessageElement message) {
+          addType(message);
+          return true;
+        }
+
+        @Override public boolean visitEnum(EnumElement enumElement) {
+          addType(enumElement);
+          return false;
+        }
+
+        @Override public boolean visitType(TypeElement type) {
+          addType(type);
+          return true;
+        }
+
+        @Override public boolean visitExtend(ExtendElement extend) {
+          return false;
+        }
+
+        @Override public boolean visitService(ServiceElement service) {
+          if (!services.containsKey(service.qualifiedName())) {
+            services.put(service.qualifiedName(), service);
+          }
+          return false;
+        }
+      };
+      indexer.walk(protoFile);
+    }
+
+    private void addType(TypeElement type) {
+      if (!types.containsKey(type.qualifiedName())) {
+        types.put(type.qualifiedName(), type);
       }
     }
-    return builder.toString();
   }
 
   public static final class Builder {
@@ -110,6 +213,7 @@ public abstract class ProtoFile {
     private final List<ServiceElement> services = new ArrayList<>();
     private final List<ExtendElement> extendDeclarations = new ArrayList<>();
     private final List<OptionElement> options = new ArrayList<>();
+    private SourceMap sourceMap;
 
     Builder(String filePath) {
       this.filePath = filePath;
@@ -198,10 +302,18 @@ public abstract class ProtoFile {
       return this;
     }
 
+    Builder sourceMap(SourceMap sourceMap) {
+      this.sourceMap = sourceMap;
+      return this;
+    }
+
     public ProtoFile build() {
-      return new AutoValue_ProtoFile(filePath, packageName, syntax, immutableCopyOf(dependencies),
-          immutableCopyOf(publicDependencies), immutableCopyOf(types), immutableCopyOf(services),
-          immutableCopyOf(extendDeclarations), immutableCopyOf(options));
+      ProtoFile protoFile = new AutoValue_ProtoFile(filePath, packageName, syntax,
+          immutableCopyOf(dependencies), immutableCopyOf(publicDependencies),
+          immutableCopyOf(types), immutableCopyOf(services), immutableCopyOf(extendDeclarations),
+          OptionList.copyOf(options));
+      protoFile.sourceMap = sourceMap;
+      return protoFile;
     }
   }
 }
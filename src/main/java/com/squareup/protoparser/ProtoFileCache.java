@@ -0,0 +1,147 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.squareup.protoparser.Utils.checkArgument;
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A bounded cache of parsed files keyed by file path and the SHA-256 digest of their UTF-8
+ * content. Parsing identical content under the same path returns the previously parsed instance,
+ * which is safe to share because {@link ProtoFile} and its elements are immutable. When the cache
+ * is full the least recently used file is evicted.
+ *
+ * <p>This class is safe for concurrent use. Concurrent misses for the same content may both parse
+ * it, but only one result is retained and returned to both callers.
+ */
+public final class ProtoFileCache {
+  private final int maxSize;
+  private final LinkedHashMap<Key, ProtoFile> map;
+  private int hitCount;
+  private int missCount;
+  private int evictionCount;
+
+  /** Create a cache which holds at most {@code maxSize} parsed files. */
+  public ProtoFileCache(final int maxSize) {
+    checkArgument(maxSize > 0, "maxSize <= 0: %s", maxSize);
+    this.maxSize = maxSize;
+    this.map = new LinkedHashMap<Key, ProtoFile>(16, 0.75f, true) {
+      private static final long serialVersionUID = 0L;
+
+      @Override protected boolean removeEldestEntry(Map.Entry<Key, ProtoFile> eldest) {
+        if (size() <= maxSize) return false;
+        evictionCount++;
+        return true;
+      }
+    };
+  }
+
+  /** Returns the parsed {@code .proto} file at {@code path}, parsing it only if it has changed. */
+  public ProtoFile parseUtf8(Path path) throws IOException {
+    return parseUtf8(path.toString(), Files.readAllBytes(path));
+  }
+
+  /** Returns the parsed schema for {@code name} and its UTF-8 encoded {@code data}. */
+  public ProtoFile parseUtf8(String name, byte[] data) {
+    Key key = new Key(checkNotNull(name, "name"), data);
+    ProtoFile result = get(key);
+    return result != null ? result : put(key, ProtoParser.parseUtf8(name, data));
+  }
+
+  /** Returns the parsed schema for {@code name} and {@code data}. */
+  public ProtoFile parse(String name, String data) {
+    Key key = new Key(checkNotNull(name, "name"), data.getBytes(UTF_8));
+    ProtoFile result = get(key);
+    return result != null ? result : put(key, ProtoParser.parse(name, data));
+  }
+
+  private synchronized ProtoFile get(Key key) {
+    ProtoFile result = map.get(key);
+    if (result != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return result;
+  }
+
+  private synchronized ProtoFile put(Key key, ProtoFile protoFile) {
+    ProtoFile previous = map.get(key);
+    if (previous != null) {
+      return previous; // Another thread parsed the same content first.
+    }
+    map.put(key, protoFile);
+    return protoFile;
+  }
+
+  /** Discards all cached files. Counts are not reset. */
+  public synchronized void evictAll() {
+    map.clear();
+  }
+
+  public int maxSize() {
+    return maxSize;
+  }
+
+  /** Returns the number of files currently in the cache. */
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /** Returns the number of times a parse was satisfied by the cache. */
+  public synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of times a parse was not in the cache and the content was parsed. */
+  public synchronized int missCount() {
+    return missCount;
+  }
+
+  /** Returns the number of files that have been evicted to stay within {@link #maxSize()}. */
+  public synchronized int evictionCount() {
+    return evictionCount;
+  }
+
+  @Override public synchronized String toString() {
+    return String.format("ProtoFileCache[maxSize=%d,hits=%d,misses=%d,evictions=%d]",
+        maxSize, hitCount, missCount, evictionCount);
+  }
+
+  private static final class Key {
+    private final String name;
+    /** A collision-resistant digest, so changed content is never mistaken for cached content. */
+    private final byte[] sha256;
+
+    Key(String name, byte[] data) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError(e); // Every Java platform supports SHA-256.
+      }
+      this.name = name;
+      this.sha256 = digest.digest(data);
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj == this) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return name.equals(other.name) && Arrays.equals(sha256, other.sha256);
+    }
+
+    @Override public int hashCode() {
+      return name.hashCode() * 37 + Arrays.hashCode(sha256);
+    }
+  }
+}
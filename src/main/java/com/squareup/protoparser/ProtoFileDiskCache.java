@@ -0,0 +1,108 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A persistent cache of parsed files. Each parsed file is stored in {@code directory} as a
+ * {@link ProtoFileSnapshot} named for the SHA-256 of the parser version and the file's path and
+ * content, so a later process that parses the same unchanged file with the same version of this
+ * library loads the snapshot instead of lexing the schema.
+ *
+ * <p>Snapshots are written to a temporary file and atomically renamed, so concurrent processes may
+ * share a cache directory. A snapshot that cannot be decoded is replaced by reparsing the file.
+ * Nothing is ever deleted from the directory.
+ */
+public final class ProtoFileDiskCache {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Path directory;
+  private final AtomicInteger hitCount = new AtomicInteger();
+  private final AtomicInteger missCount = new AtomicInteger();
+
+  /** Create a cache which stores snapshots in {@code directory}, creating it if necessary. */
+  public ProtoFileDiskCache(Path directory) throws IOException {
+    this.directory = Files.createDirectories(checkNotNull(directory, "directory"));
+  }
+
+  /** Returns the parsed {@code .proto} file at {@code path}. */
+  public ProtoFile parseUtf8(Path path) throws IOException {
+    return parseUtf8(path.toString(), Files.readAllBytes(path));
+  }
+
+  /** Returns the parsed schema for {@code name} and its UTF-8 encoded {@code data}. */
+  public ProtoFile parseUtf8(String name, byte[] data) throws IOException {
+    checkNotNull(name, "name");
+    checkNotNull(data, "data");
+
+    Path snapshotPath = directory.resolve(key(name, data) + ".snapshot");
+    try {
+      ProtoFile result = ProtoFileSnapshot.decode(Files.readAllBytes(snapshotPath));
+      hitCount.incrementAndGet();
+      return result;
+    } catch (NoSuchFileException e) {
+      // Not yet cached.
+    } catch (IOException | RuntimeException e) {
+      // Truncated, corrupt, or from another version. Replace it below.
+    }
+
+    missCount.incrementAndGet();
+    ProtoFile result = ProtoParser.parseUtf8(name, data);
+    Path temp = Files.createTempFile(directory, "protoparser", ".tmp");
+    try {
+      Files.write(temp, ProtoFileSnapshot.encode(result));
+      Files.move(temp, snapshotPath, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return result;
+  }
+
+  public Path directory() {
+    return directory;
+  }
+
+  /** Returns the number of parses satisfied by loading a snapshot. */
+  public int hitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of parses that lexed the schema and stored a new snapshot. */
+  public int missCount() {
+    return missCount.get();
+  }
+
+  private static String key(String name, byte[] data) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e); // Every Java platform supports SHA-256.
+    }
+    // Snapshots written by another version of the parser may not match what it parses today.
+    digest.update(ByteBuffer.allocate(4).putInt(ProtoParser.VERSION).array());
+    digest.update(name.getBytes(UTF_8));
+    digest.update((byte) 0);
+    digest.update(data);
+
+    byte[] hash = digest.digest();
+    char[] result = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+      result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+    }
+    return new String(result);
+  }
+}
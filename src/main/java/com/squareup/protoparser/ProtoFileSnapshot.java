@@ -0,0 +1,482 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.MapType;
+import com.squareup.protoparser.DataType.NamedType;
+import com.squareup.protoparser.DataType.ScalarType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact binary encoding of a {@link ProtoFile} and its elements. Decoding a snapshot rebuilds
+ * an equal {@code ProtoFile} without lexing the original schema.
+ */
+public final class ProtoFileSnapshot {
+  private static final int MAGIC = 0x50524f54; // "PROT"
+  private static final int VERSION = 1;
+
+  private static final byte TYPE_MESSAGE = 1;
+  private static final byte TYPE_ENUM = 2;
+
+  private static final byte DATA_TYPE_SCALAR = 1;
+  private static final byte DATA_TYPE_MAP = 2;
+  private static final byte DATA_TYPE_NAMED = 3;
+
+  private static final byte VALUE_STRING = 1;
+  private static final byte VALUE_OPTION = 2;
+  private static final byte VALUE_LIST = 3;
+  private static final byte VALUE_MAP = 4;
+
+  /** Returns the snapshot encoding of {@code protoFile}. */
+  public static byte[] encode(ProtoFile protoFile) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      new Writer(new DataOutputStream(bytes)).writeProtoFile(protoFile);
+    } catch (IOException e) {
+      throw new AssertionError(e); // Writes to a byte array cannot fail.
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a snapshot produced by {@link #encode}.
+   *
+   * @throws IOException if {@code snapshot} is truncated, corrupt, or from an incompatible version.
+   */
+  public static ProtoFile decode(byte[] snapshot) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+    ProtoFile result = new Reader(in).readProtoFile();
+    if (in.read() != -1) throw new IOException("trailing data in snapshot");
+    return result;
+  }
+
+  private ProtoFileSnapshot() {
+    throw new AssertionError("No instances.");
+  }
+
+  private static final class Writer {
+    private final DataOutputStream out;
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void writeProtoFile(ProtoFile protoFile) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(protoFile.filePath());
+      writeString(protoFile.packageName());
+      out.writeByte(protoFile.syntax() != null ? protoFile.syntax().ordinal() : -1);
+      writeStrings(protoFile.dependencies());
+      writeStrings(protoFile.publicDependencies());
+      writeTypes(protoFile.typeElements());
+      out.writeInt(protoFile.services().size());
+      for (ServiceElement service : protoFile.services()) {
+        writeService(service);
+      }
+      out.writeInt(protoFile.extendDeclarations().size());
+      for (ExtendElement extend : protoFile.extendDeclarations()) {
+        writeExtend(extend);
+      }
+      writeOptions(protoFile.options());
+    }
+
+    private void writeTypes(List<TypeElement> types) throws IOException {
+      out.writeInt(types.size());
+      for (TypeElement type : types) {
+        if (type instanceof MessageElement) {
+          out.writeByte(TYPE_MESSAGE);
+          writeMessage((MessageElement) type);
+        } else if (type instanceof EnumElement) {
+          out.writeByte(TYPE_ENUM);
+          writeEnum((EnumElement) type);
+        } else {
+          throw new IllegalArgumentException("Unsupported type element: " + type.getClass());
+        }
+      }
+    }
+
+    private void writeMessage(MessageElement message) throws IOException {
+      writeString(message.name());
+      writeString(message.qualifiedName());
+      writeString(message.documentation());
+      writeFields(message.fields());
+      out.writeInt(message.oneOfs().size());
+      for (OneOfElement oneOf : message.oneOfs()) {
+        writeString(oneOf.name());
+        writeString(oneOf.documentation());
+        writeFields(oneOf.fields());
+      }
+      writeTypes(message.nestedElements());
+      out.writeInt(message.extensions().size());
+      for (ExtensionsElement extensions : message.extensions()) {
+        writeString(extensions.documentation());
+        out.writeInt(extensions.start());
+        out.writeInt(extensions.end());
+      }
+      writeOptions(message.options());
+    }
+
+    private void writeEnum(EnumElement enumElement) throws IOException {
+      writeString(enumElement.name());
+      writeString(enumElement.qualifiedName());
+      writeString(enumElement.documentation());
+      out.writeInt(enumElement.constants().size());
+      for (EnumConstantElement constant : enumElement.constants()) {
+        writeString(constant.name());
+        out.writeInt(constant.tag());
+        writeString(constant.documentation());
+        writeOptions(constant.options());
+      }
+      writeOptions(enumElement.options());
+    }
+
+    private void writeService(ServiceElement service) throws IOException {
+      writeString(service.name());
+      writeString(service.qualifiedName());
+      writeString(service.documentation());
+      out.writeInt(service.rpcs().size());
+      for (RpcElement rpc : service.rpcs()) {
+        writeString(rpc.name());
+        writeString(rpc.documentation());
+        writeString(rpc.requestType().name());
+        writeString(rpc.responseType().name());
+        writeOptions(rpc.options());
+      }
+      writeOptions(service.options());
+    }
+
+    private void writeExtend(ExtendElement extend) throws IOException {
+      writeString(extend.name());
+      writeString(extend.qualifiedName());
+      writeString(extend.documentation());
+      writeFields(extend.fields());
+    }
+
+    private void writeFields(List<FieldElement> fields) throws IOException {
+      out.writeInt(fields.size());
+      for (FieldElement field : fields) {
+        out.writeByte(field.label().ordinal());
+        writeDataType(field.type());
+        writeString(field.name());
+        out.writeInt(field.tag());
+        writeString(field.documentation());
+        writeOptions(field.options());
+      }
+    }
+
+    private void writeDataType(DataType type) throws IOException {
+      switch (type.kind()) {
+        case SCALAR:
+          out.writeByte(DATA_TYPE_SCALAR);
+          out.writeByte(((ScalarType) type).ordinal());
+          break;
+        case MAP:
+          out.writeByte(DATA_TYPE_MAP);
+          writeDataType(((MapType) type).keyType());
+          writeDataType(((MapType) type).valueType());
+          break;
+        case NAMED:
+          out.writeByte(DATA_TYPE_NAMED);
+          writeString(((NamedType) type).name());
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+
+    private void writeOptions(List<OptionElement> options) throws IOException {
+      out.writeInt(options.size());
+      for (OptionElement option : options) {
+        writeOption(option);
+      }
+    }
+
+    private void writeOption(OptionElement option) throws IOException {
+      writeString(option.name());
+      out.writeByte(option.kind().ordinal());
+      writeValue(option.value());
+      out.writeBoolean(option.isParenthesized());
+    }
+
+    private void writeValue(Object value) throws IOException {
+      if (value instanceof String) {
+        out.writeByte(VALUE_STRING);
+        writeString((String) value);
+      } else if (value instanceof OptionElement) {
+        out.writeByte(VALUE_OPTION);
+        writeOption((OptionElement) value);
+      } else if (value instanceof List) {
+        out.writeByte(VALUE_LIST);
+        List<?> list = (List<?>) value;
+        out.writeInt(list.size());
+        for (Object element : list) {
+          writeValue(element);
+        }
+      } else if (value instanceof Map) {
+        out.writeByte(VALUE_MAP);
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeString((String) entry.getKey());
+          writeValue(entry.getValue());
+        }
+      } else {
+        throw new IllegalArgumentException("Unsupported option value: " + value);
+      }
+    }
+
+    private void writeStrings(List<String> strings) throws IOException {
+      out.writeInt(strings.size());
+      for (String string : strings) {
+        writeString(string);
+      }
+    }
+
+    /** Writes a length-prefixed UTF-8 string. Unlike {@code writeUTF} this has no length limit. */
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        out.writeInt(-1);
+        return;
+      }
+      byte[] bytes = string.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final class Reader {
+    private final DataInputStream in;
+    private byte[] buffer = new byte[64];
+
+    Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    ProtoFile readProtoFile() throws IOException {
+      if (in.readInt() != MAGIC) throw new IOException("not a snapshot");
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+
+      ProtoFile.Builder builder = ProtoFile.builder(readString());
+      String packageName = readString();
+      if (packageName != null) builder.packageName(packageName);
+      int syntax = in.readByte();
+      if (syntax != -1) builder.syntax(readEnum(ProtoFile.Syntax.values(), syntax));
+      builder.addDependencies(readStrings());
+      builder.addPublicDependencies(readStrings());
+      builder.addTypes(readTypes());
+      for (int i = 0, count = readCount(); i < count; i++) {
+        builder.addService(readService());
+      }
+      for (int i = 0, count = readCount(); i < count; i++) {
+        builder.addExtendDeclaration(readExtend());
+      }
+      return builder.addOptions(readOptions()).build();
+    }
+
+    private List<TypeElement> readTypes() throws IOException {
+      int count = readCount();
+      List<TypeElement> result = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        byte type = in.readByte();
+        if (type == TYPE_MESSAGE) {
+          result.add(readMessage());
+        } else if (type == TYPE_ENUM) {
+          result.add(readEnumElement());
+        } else {
+          throw new IOException("unexpected type element " + type);
+        }
+      }
+      return result;
+    }
+
+    private MessageElement readMessage() throws IOException {
+      MessageElement.Builder builder = MessageElement.builder()
+          .name(readString())
+          .qualifiedName(readString())
+          .documentation(readString())
+          .addFields(readFields());
+      for (int i = 0, count = readCount(); i < count; i++) {
+        builder.addOneOf(OneOfElement.builder()
+            .name(readString())
+            .documentation(readString())
+            .addFields(readFields())
+            .build());
+      }
+      builder.addTypes(readTypes());
+      for (int i = 0, count = readCount(); i < count; i++) {
+        String documentation = readString();
+        int start = in.readInt();
+        int end = in.readInt();
+        builder.addExtensions(ExtensionsElement.create(start, end, documentation));
+      }
+      return builder.addOptions(readOptions()).build();
+    }
+
+    private EnumElement readEnumElement() throws IOException {
+      EnumElement.Builder builder = EnumElement.builder()
+          .name(readString())
+          .qualifiedName(readString())
+          .documentation(readString());
+      for (int i = 0, count = readCount(); i < count; i++) {
+        EnumConstantElement.Builder constant = EnumConstantElement.builder()
+            .name(readString())
+            .tag(in.readInt())
+            .documentation(readString());
+        for (OptionElement option : readOptions()) {
+          constant.addOption(option);
+        }
+        builder.addConstant(constant.build());
+      }
+      return builder.addOptions(readOptions()).build();
+    }
+
+    private ServiceElement readService() throws IOException {
+      ServiceElement.Builder builder = ServiceElement.builder()
+          .name(readString())
+          .qualifiedName(readString())
+          .documentation(readString());
+      for (int i = 0, count = readCount(); i < count; i++) {
+        builder.addRpc(RpcElement.builder()
+            .name(readString())
+            .documentation(readString())
+            .requestType(NamedType.create(readString()))
+            .responseType(NamedType.create(readString()))
+            .addOptions(readOptions())
+            .build());
+      }
+      return builder.addOptions(readOptions()).build();
+    }
+
+    private ExtendElement readExtend() throws IOException {
+      return ExtendElement.builder()
+          .name(readString())
+          .qualifiedName(readString())
+          .documentation(readString())
+          .addFields(readFields())
+          .build();
+    }
+
+    private List<FieldElement> readFields() throws IOException {
+      int count = readCount();
+      List<FieldElement> result = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        result.add(FieldElement.builder()
+            .label(readEnum(FieldElement.Label.values(), in.readByte()))
+            .type(readDataType())
+            .name(readString())
+            .tag(in.readInt())
+            .documentation(readString())
+            .addOptions(readOptions())
+            .build());
+      }
+      return result;
+    }
+
+    private DataType readDataType() throws IOException {
+      byte kind = in.readByte();
+      switch (kind) {
+        case DATA_TYPE_SCALAR:
+          return readEnum(ScalarType.values(), in.readByte());
+        case DATA_TYPE_MAP:
+          DataType keyType = readDataType();
+          return MapType.create(keyType, readDataType());
+        case DATA_TYPE_NAMED:
+          return NamedType.create(readString());
+        default:
+          throw new IOException("unexpected data type " + kind);
+      }
+    }
+
+    private List<OptionElement> readOptions() throws IOException {
+      int count = readCount();
+      List<OptionElement> result = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        result.add(readOption());
+      }
+      return result;
+    }
+
+    private OptionElement readOption() throws IOException {
+      String name = readString();
+      OptionElement.Kind kind = readEnum(OptionElement.Kind.values(), in.readByte());
+      Object value = readValue();
+      return OptionElement.create(name, kind, value, in.readBoolean());
+    }
+
+    private Object readValue() throws IOException {
+      byte type = in.readByte();
+      switch (type) {
+        case VALUE_STRING:
+          return readString();
+        case VALUE_OPTION:
+          return readOption();
+        case VALUE_LIST: {
+          int count = readCount();
+          List<Object> list = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            list.add(readValue());
+          }
+          return list;
+        }
+        case VALUE_MAP: {
+          int count = readCount();
+          Map<String, Object> map = new LinkedHashMap<>();
+          for (int i = 0; i < count; i++) {
+            String key = readString();
+            map.put(key, readValue());
+          }
+          return map;
+        }
+        default:
+          throw new IOException("unexpected option value " + type);
+      }
+    }
+
+    private List<String> readStrings() throws IOException {
+      int count = readCount();
+      List<String> result = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        result.add(readString());
+      }
+      return result;
+    }
+
+    private String readString() throws IOException {
+      int length = in.readInt();
+      if (length == -1) return null;
+      if (length < 0 || length > in.available()) {
+        throw new IOException("unexpected string length " + length);
+      }
+      if (buffer.length < length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      in.readFully(buffer, 0, length);
+      return new String(buffer, 0, length, UTF_8);
+    }
+
+    private int readCount() throws IOException {
+      int count = in.readInt();
+      // Every element occupies at least one byte, which bounds the count of a valid snapshot.
+      if (count < 0 || count > in.available()) throw new IOException("unexpected count " + count);
+      return count;
+    }
+
+    private static <E extends Enum<E>> E readEnum(E[] values, int ordinal) throws IOException {
+      if (ordinal < 0 || ordinal >= values.length) {
+        throw new IOException("unexpected ordinal " + ordinal);
+      }
+      return values[ordinal];
+    }
+  }
+}
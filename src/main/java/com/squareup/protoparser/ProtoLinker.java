@@ -0,0 +1,215 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.google.auto.value.AutoValue;
+import com.squareup.protoparser.DataType.MapType;
+import com.squareup.protoparser.DataType.NamedType;
+import com.squareup.protoparser.Utils.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Resolves {@link NamedType} references across a set of parsed files. Every type declared in the
+ * files is indexed by its qualified name, so each reference resolves with one hash lookup per
+ * enclosing scope.
+ *
+ * <p>Names are resolved with protobuf's scoping rules: a name starting with {@code .} is fully
+ * qualified; otherwise the first component of the name is looked up in the innermost scope, then
+ * in each enclosing scope out to the root, and the rest of the name is resolved within the first
+ * scope that defines it. All of the files share a single namespace; imports are not checked.
+ */
+public final class ProtoLinker {
+  private final List<ProtoFile> protoFiles;
+  private final Map<String, TypeElement> types = new HashMap<>();
+  private final Map<String, String> typeFilePaths = new HashMap<>();
+  private final Set<String> packages = new HashSet<>();
+
+  /**
+   * Index the types declared in {@code protoFiles}.
+   *
+   * @throws IllegalStateException if two types have the same qualified name.
+   */
+  public ProtoLinker(Collection<ProtoFile> protoFiles) {
+    this.protoFiles = new ArrayList<>(checkNotNull(protoFiles, "protoFiles"));
+    for (ProtoFile protoFile : this.protoFiles) {
+      checkNotNull(protoFile, "protoFile");
+      String packageName = protoFile.packageName();
+      if (packageName != null) {
+        int dot = -1;
+        while ((dot = packageName.indexOf('.', dot + 1)) != -1) {
+          packages.add(packageName.substring(0, dot));
+        }
+        packages.add(packageName);
+      }
+      index(protoFile);
+    }
+  }
+
+  private void index(final ProtoFile protoFile) {
+    ProtoVisitor indexer = new ProtoVisitor() {
+      @Override public boolean visitMessage(MessageElement message) {
+        index(protoFile.filePath(), message);
+        return true;
+      }
+
+      @Override public boolean visitEnum(EnumElement enumElement) {
+        index(protoFile.filePath(), enumElement);
+        return false;
+      }
+
+      @Override public boolean visitType(TypeElement type) {
+        index(protoFile.filePath(), type);
+        return true;
+      }
+
+      @Override public boolean visitExtend(ExtendElement extend) {
+        return false;
+      }
+
+      @Override public boolean visitService(ServiceElement service) {
+        return false;
+      }
+    };
+    indexer.walk(protoFile);
+  }
+
+  private void index(String filePath, TypeElement type) {
+    String qualifiedName = type.qualifiedName();
+    String previousFilePath = typeFilePaths.put(qualifiedName, filePath);
+    if (previousFilePath != null) {
+      throw new IllegalStateException("Duplicate type " + qualifiedName + " defined in "
+          + previousFilePath + " and " + filePath);
+    }
+    types.put(qualifiedName, type);
+  }
+
+  /** Returns the type whose qualified name is {@code qualifiedName}, or null if there is none. */
+  @Nullable public TypeElement get(String qualifiedName) {
+    return types.get(checkNotNull(qualifiedName, "qualifiedName"));
+  }
+
+  /**
+   * Returns the type that {@code type} refers to when used within {@code scope}, or null if it
+   * doesn't resolve. The scope is the qualified name of the enclosing message, or the package name
+   * for references outside of any message. Use an empty scope for files without a package.
+   */
+  @Nullable public TypeElement resolve(String scope, NamedType type) {
+    checkNotNull(scope, "scope");
+    String name = checkNotNull(type, "type").name();
+    if (name.startsWith(".")) {
+      return types.get(name.substring(1));
+    }
+
+    int dot = name.indexOf('.');
+    String first = dot == -1 ? name : name.substring(0, dot);
+    while (true) {
+      String prefix = scope.isEmpty() ? "" : scope + ".";
+      String candidate = prefix + first;
+      if (types.containsKey(candidate) || packages.contains(candidate)) {
+        return dot == -1 ? types.get(candidate) : types.get(prefix + name);
+      }
+      if (scope.isEmpty()) {
+        return null;
+      }
+      int lastDot = scope.lastIndexOf('.');
+      scope = lastDot == -1 ? "" : scope.substring(0, lastDot);
+    }
+  }
+
+  /**
+   * Resolves every type reference in the files: field types (including map values), extended
+   * types, and RPC request and response types. Returns the references which don't resolve, in
+   * the order they were declared, or an empty list if every reference resolves.
+   */
+  public List<UnresolvedReference> unresolvedReferences() {
+    final List<UnresolvedReference> result = new ArrayList<>();
+    for (ProtoFile protoFile : protoFiles) {
+      final String filePath = protoFile.filePath();
+      final String packageName = protoFile.packageName() != null ? protoFile.packageName() : "";
+      ProtoVisitor checker = new ProtoVisitor() {
+        @Override public boolean visitMessage(MessageElement message) {
+          String scope = message.qualifiedName();
+          check(filePath, scope, scope, message.fields(), result);
+          for (OneOfElement oneOf : message.oneOfs()) {
+            check(filePath, scope, scope, oneOf.fields(), result);
+          }
+          return true;
+        }
+
+        @Override public boolean visitEnum(EnumElement enumElement) {
+          return false;
+        }
+
+        @Override public boolean visitExtend(ExtendElement extend) {
+          check(filePath, packageName, extend.qualifiedName(), NamedType.create(extend.name()),
+              result);
+          check(filePath, packageName, extend.qualifiedName(), extend.fields(), result);
+          return false;
+        }
+
+        @Override public boolean visitService(ServiceElement service) {
+          for (RpcElement rpc : service.rpcs()) {
+            String referrer = service.qualifiedName() + "." + rpc.name();
+            check(filePath, packageName, referrer, rpc.requestType(), result);
+            check(filePath, packageName, referrer, rpc.responseType(), result);
+          }
+          return false;
+        }
+      };
+      checker.walk(protoFile);
+    }
+    return unmodifiableList(result);
+  }
+
+  private void check(String filePath, String scope, String referrerScope,
+      List<FieldElement> fields, List<UnresolvedReference> result) {
+    for (FieldElement field : fields) {
+      check(filePath, scope, referrerScope + "." + field.name(), field.type(), result);
+    }
+  }
+
+  private void check(String filePath, String scope, String referrer, DataType type,
+      List<UnresolvedReference> result) {
+    switch (type.kind()) {
+      case NAMED:
+        if (resolve(scope, (NamedType) type) == null) {
+          result.add(UnresolvedReference.create(filePath, referrer, (NamedType) type));
+        }
+        break;
+      case MAP:
+        check(filePath, scope, referrer, ((MapType) type).keyType(), result);
+        check(filePath, scope, referrer, ((MapType) type).valueType(), result);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** A type reference which doesn't resolve to any type in the linked files. */
+  @AutoValue
+  public abstract static class UnresolvedReference {
+    static UnresolvedReference create(String filePath, String referrer, NamedType type) {
+      return new AutoValue_ProtoLinker_UnresolvedReference(filePath, referrer, type);
+    }
+
+    UnresolvedReference() {
+    }
+
+    public abstract String filePath();
+    /** The qualified name of the field, extend declaration, or RPC containing the reference. */
+    public abstract String referrer();
+    public abstract NamedType type();
+
+    @Override public final String toString() {
+      return String.format("%s: unable to resolve %s in %s", filePath(), type(), referrer());
+    }
+  }
+}
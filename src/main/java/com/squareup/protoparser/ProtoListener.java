@@ -0,0 +1,125 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.NamedType;
+import java.util.List;
+
+/**
+ * Receives the declarations of a {@code .proto} file as they are parsed. Use this with
+ * {@link ProtoParser#parse(String, String, ParseOptions, ProtoListener)} to scan schemas without
+ * building a {@link ProtoFile}; the parser builds {@code ProtoFile} instances with a listener of
+ * its own.
+ *
+ * <p>Declarations with a body are reported by a start method, the events of their contents, and
+ * an end method. Every method does nothing by default; override the ones of interest. Use
+ * {@link ParseOptions.DocumentationMode#SKIP} if documentation isn't needed.
+ */
+public abstract class ProtoListener {
+  public void onPackage(String packageName) {
+  }
+
+  public void onSyntax(ProtoFile.Syntax syntax) {
+  }
+
+  public void onImport(String dependency, boolean isPublic) {
+  }
+
+  /**
+   * An option declaration, like {@code option java_package = "com.example";}, in the file or in
+   * the innermost declaration that has started but not ended. Options in the brackets of a field
+   * or enum constant are reported with that field or constant instead.
+   */
+  public void onOption(OptionElement option) {
+  }
+
+  public void onMessageStart(String name, String qualifiedName, String documentation) {
+  }
+
+  public void onMessageEnd() {
+  }
+
+  /** A field of a message, oneof, or extend declaration. */
+  public void onField(FieldElement.Label label, DataType type, String name, int tag,
+      String documentation, List<OptionElement> options) {
+  }
+
+  public void onOneOfStart(String name, String documentation) {
+  }
+
+  public void onOneOfEnd() {
+  }
+
+  public void onExtensions(int start, int end, String documentation) {
+  }
+
+  public void onEnumStart(String name, String qualifiedName, String documentation) {
+  }
+
+  public void onEnumConstant(String name, int tag, String documentation,
+      List<OptionElement> options) {
+  }
+
+  public void onEnumEnd() {
+  }
+
+  public void onExtendStart(String name, String qualifiedName, String documentation) {
+  }
+
+  public void onExtendEnd() {
+  }
+
+  public void onServiceStart(String name, String qualifiedName, String documentation) {
+  }
+
+  public void onServiceEnd() {
+  }
+
+  public void onRpcStart(String name, NamedType requestType, NamedType responseType,
+      String documentation) {
+  }
+
+  public void onRpcEnd() {
+  }
+
+  // The parser reports documentation through these methods so that the tree builder can keep it
+  // undecoded. Listeners outside of this package receive its text.
+
+  void messageStart(String name, String qualifiedName, Documentation documentation) {
+    onMessageStart(name, qualifiedName, documentation.text());
+  }
+
+  void field(FieldElement.Label label, DataType type, String name, int tag,
+      Documentation documentation, List<OptionElement> options) {
+    onField(label, type, name, tag, documentation.text(), options);
+  }
+
+  void oneOfStart(String name, Documentation documentation) {
+    onOneOfStart(name, documentation.text());
+  }
+
+  void extensions(int start, int end, Documentation documentation) {
+    onExtensions(start, end, documentation.text());
+  }
+
+  void enumStart(String name, String qualifiedName, Documentation documentation) {
+    onEnumStart(name, qualifiedName, documentation.text());
+  }
+
+  void enumConstant(String name, int tag, Documentation documentation,
+      List<OptionElement> options) {
+    onEnumConstant(name, tag, documentation.text(), options);
+  }
+
+  void extendStart(String name, String qualifiedName, Documentation documentation) {
+    onExtendStart(name, qualifiedName, documentation.text());
+  }
+
+  void serviceStart(String name, String qualifiedName, Documentation documentation) {
+    onServiceStart(name, qualifiedName, documentation.text());
+  }
+
+  void rpcStart(String name, NamedType requestType, NamedType responseType,
+      Documentation documentation) {
+    onRpcStart(name, requestType, responseType, documentation.text());
+  }
+}
@@ -0,0 +1,197 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static com.squareup.protoparser.Utils.immutableCopyOf;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Loads {@code .proto} files along with everything they import. Import strings are resolved
+ * against an ordered list of include paths, the same way {@code protoc} resolves them. Each file in
+ * the transitive closure is parsed exactly once, and a file's imports are scheduled as soon as
+ * that file has been parsed so independent subtrees load concurrently.
+ */
+public final class ProtoLoader {
+  /**
+   * Load {@code roots} and their transitive imports on a pool with one thread per available
+   * processor.
+   */
+  public static Map<String, ProtoFile> loadAll(List<Path> includePaths, Collection<String> roots)
+      throws IOException, InterruptedException {
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      return new ProtoLoader(pool, includePaths).load(roots);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private final ExecutorService executor;
+  private final List<Path> includePaths;
+
+  /** Create a loader which resolves imports against {@code includePaths}, in order. */
+  public ProtoLoader(ExecutorService executor, List<Path> includePaths) {
+    this.executor = checkNotNull(executor, "executor");
+    this.includePaths = immutableCopyOf(checkNotNull(includePaths, "includePaths"));
+  }
+
+  /**
+   * Load {@code roots}, which are import strings like {@code "squareup/geology/period.proto"}, and
+   * every file they import directly or transitively. The returned map is keyed by import string
+   * and ordered so that each file follows all of the files it imports.
+   *
+   * @throws FileNotFoundException if an import cannot be found on any include path.
+   * @throws IllegalStateException if a file cannot be parsed or the imports form a cycle.
+   */
+  public Map<String, ProtoFile> load(Collection<String> roots)
+      throws IOException, InterruptedException {
+    checkNotNull(roots, "roots");
+
+    CompletionService<Object> completionService = new ExecutorCompletionService<>(executor);
+    Map<Future<Object>, String> pending = new HashMap<>();
+    Set<String> scheduled = new HashSet<>();
+    Map<String, ProtoFile> loaded = new HashMap<>();
+
+    try {
+      for (String root : roots) {
+        checkNotNull(root, "root");
+        if (scheduled.add(root)) {
+          pending.put(completionService.submit(newLoadTask(root, null)), root);
+        }
+      }
+
+      while (!pending.isEmpty()) {
+        Future<Object> future = completionService.take();
+        String importString = pending.remove(future);
+        Object result;
+        try {
+          result = future.get();
+        } catch (ExecutionException e) {
+          // Load failures are returned, not thrown, so the cause can only be an Error.
+          throw (Error) e.getCause();
+        }
+        if (result instanceof IOException) throw (IOException) result;
+        if (result instanceof RuntimeException) throw (RuntimeException) result;
+        ProtoFile protoFile = (ProtoFile) result;
+        loaded.put(importString, protoFile);
+
+        for (String dependency : imports(protoFile)) {
+          if (scheduled.add(dependency)) {
+            Future<Object> dependencyFuture =
+                completionService.submit(newLoadTask(dependency, protoFile.filePath()));
+            pending.put(dependencyFuture, dependency);
+          }
+        }
+      }
+    } finally {
+      // If loading failed or was interrupted, don't leave tasks running on the caller's executor.
+      for (Future<Object> future : pending.keySet()) {
+        future.cancel(true);
+      }
+    }
+
+    return sortDependenciesFirst(roots, loaded);
+  }
+
+  /**
+   * Returns a task that parses {@code importString}. Failures are returned rather than thrown, as
+   * some executors rewrap exceptions thrown by their tasks.
+   */
+  private Callable<Object> newLoadTask(final String importString, final String importer) {
+    return new Callable<Object>() {
+      @Override public Object call() {
+        try {
+          return ProtoParser.parseUtf8(resolve(importString, importer));
+        } catch (IOException | RuntimeException e) {
+          return e;
+        }
+      }
+    };
+  }
+
+  /** Returns the first file named {@code importString} on the include paths. */
+  private Path resolve(String importString, String importer) throws FileNotFoundException {
+    for (Path includePath : includePaths) {
+      Path candidate = includePath.resolve(importString);
+      if (Files.isRegularFile(candidate)) {
+        return candidate;
+      }
+    }
+    throw new FileNotFoundException("Failed to resolve import \"" + importString + "\""
+        + (importer != null ? " in " + importer : "")
+        + " against include paths " + includePaths);
+  }
+
+  private static List<String> imports(ProtoFile protoFile) {
+    List<String> result = new ArrayList<>(protoFile.dependencies());
+    result.addAll(protoFile.publicDependencies());
+    return result;
+  }
+
+  /**
+   * Returns {@code loaded} ordered by a depth-first walk of the import graph from {@code roots},
+   * with each file placed after its imports.
+   *
+   * @throws IllegalStateException if the imports form a cycle.
+   */
+  private static Map<String, ProtoFile> sortDependenciesFirst(Collection<String> roots,
+      Map<String, ProtoFile> loaded) {
+    Map<String, ProtoFile> result = new LinkedHashMap<>();
+    List<String> path = new ArrayList<>();
+    for (String root : roots) {
+      visit(root, loaded, path, new HashSet<String>(), result);
+    }
+    return unmodifiableMap(result);
+  }
+
+  private static void visit(String importString, Map<String, ProtoFile> loaded, List<String> path,
+      Set<String> onPath, Map<String, ProtoFile> result) {
+    if (result.containsKey(importString)) {
+      return;
+    }
+    if (onPath.contains(importString)) {
+      List<String> cycle = new ArrayList<>(path.subList(path.indexOf(importString), path.size()));
+      cycle.add(importString);
+      throw new IllegalStateException("Import cycle: " + join(cycle, " -> "));
+    }
+
+    ProtoFile protoFile = loaded.get(importString);
+    path.add(importString);
+    onPath.add(importString);
+    for (String dependency : imports(protoFile)) {
+      visit(dependency, loaded, path, onPath, result);
+    }
+    path.remove(path.size() - 1);
+    onPath.remove(importString);
+    result.put(importString, protoFile);
+  }
+
+  private static String join(List<String> parts, String separator) {
+    StringBuilder result = new StringBuilder();
+    for (String part : parts) {
+      if (result.length() > 0) result.append(separator);
+      result.append(part);
+    }
+    return result.toString();
+  }
+}
@@ -4,45 +4,113 @@ package com.squareup.protoparser;
 import com.google.auto.value.AutoValue;
 import com.squareup.protoparser.DataType.MapType;
 import com.squareup.protoparser.DataType.NamedType;
-import com.squareup.protoparser.DataType.ScalarType;
+import com.squareup.protoparser.ParseOptions.DocumentationMode;
 import java.io.CharArrayWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import static com.squareup.protoparser.ProtoFile.Syntax.PROTO_2;
 import static com.squareup.protoparser.ProtoFile.Syntax.PROTO_3;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static com.squareup.protoparser.Utils.checkNotNull;
+import static com.squareup.protoparser.Utils.immutableCopyOf;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
 
 /** Basic parser for {@code .proto} schema declarations. */
 public final class ProtoParser {
-  /** Parse a {@code .proto} definition file. */
+  /**
+   * The version of the trees this parser produces. Increment it with every change that parses
+   * some input differently, so that {@link ProtoFileDiskCache} doesn't load stale snapshots.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Parse a {@code .proto} definition file. The file is mapped into memory and its UTF-8 bytes are
+   * lexed in place; only names, strings, and comments are decoded.
+   */
   public static ProtoFile parseUtf8(File file) throws IOException {
-    try (InputStream is = new FileInputStream(file)) {
-      return parseUtf8(file.getPath(), is);
-    }
+    return parseUtf8(file.getPath(), file.toPath(), ParseOptions.DEFAULT);
   }
 
-  /** Parse a {@code .proto} definition file. */
+  /**
+   * Parse a {@code .proto} definition file. The file is mapped into memory and its UTF-8 bytes are
+   * lexed in place; only names, strings, and comments are decoded.
+   */
   public static ProtoFile parseUtf8(Path path) throws IOException {
-    try (Reader reader = Files.newBufferedReader(path, UTF_8)) {
-      return parse(path.toString(), reader);
+    return parseUtf8(path.toString(), path, ParseOptions.DEFAULT);
+  }
+
+  /**
+   * Parse a {@code .proto} definition file with {@code options}. The file is mapped into memory,
+   * unless documentation is {@linkplain DocumentationMode#LAZY lazy}, in which case it is read.
+   */
+  public static ProtoFile parseUtf8(Path path, ParseOptions options) throws IOException {
+    return parseUtf8(path.toString(), path, checkNotNull(options, "options"));
+  }
+
+  private static ProtoFile parseUtf8(String name, Path path, ParseOptions options)
+      throws IOException {
+    if (options.documentationMode() == DocumentationMode.LAZY) {
+      // Unread documentation would keep a mapping alive, which fails if the file is truncated and
+      // prevents deleting it on Windows. Keep a copy of its bytes instead.
+      Source source = Source.utf8(Files.readAllBytes(path));
+      return new ProtoParser(name, source, options, false).readProtoFile();
+    }
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer data = channel.map(READ_ONLY, 0, channel.size());
+      return new ProtoParser(name, Source.utf8(data), options, false).readProtoFile();
     }
   }
 
-  /** Parse a named {@code .proto} schema. The {@code InputStream} is not closed. */
+  /**
+   * Parse a named {@code .proto} schema from its UTF-8 bytes. The {@code InputStream} is not
+   * closed.
+   */
   public static ProtoFile parseUtf8(String name, InputStream is) throws IOException {
-    return parse(name, new InputStreamReader(is, UTF_8));
+    byte[] data = new byte[8192];
+    int size = 0;
+    int count;
+    while ((count = is.read(data, size, data.length - size)) != -1) {
+      size += count;
+      if (size == data.length) {
+        data = Arrays.copyOf(data, data.length * 2);
+      }
+    }
+    return new ProtoParser(name, Source.utf8(ByteBuffer.wrap(data, 0, size))).readProtoFile();
+  }
+
+  /**
+   * Parse a named {@code .proto} schema from its UTF-8 bytes. The bytes are lexed directly; only
+   * names, strings, and comments are decoded.
+   */
+  public static ProtoFile parseUtf8(String name, byte[] data) {
+    return new ProtoParser(name, Source.utf8(data)).readProtoFile();
+  }
+
+  /** Parse a named {@code .proto} schema from its UTF-8 bytes with {@code options}. */
+  public static ProtoFile parseUtf8(String name, byte[] data, ParseOptions options) {
+    checkNotNull(options, "options");
+    return new ProtoParser(name, Source.utf8(data), options, false).readProtoFile();
+  }
+
+  /**
+   * Parse a named {@code .proto} schema from the UTF-8 bytes between {@code data}'s position and
+   * limit. The buffer's position is not changed.
+   */
+  public static ProtoFile parseUtf8(String name, ByteBuffer data) {
+    return new ProtoParser(name, Source.utf8(data)).readProtoFile();
   }
 
   /** Parse a named {@code .proto} schema. The {@code Reader} is not closed. */
@@ -53,19 +121,100 @@ public final class ProtoParser {
     while ((count = reader.read(buffer)) != -1) {
       writer.write(buffer, 0, count);
     }
-    return new ProtoParser(name, writer.toCharArray()).readProtoFile();
+    return new ProtoParser(name, Source.of(writer.toCharArray())).readProtoFile();
   }
 
   /** Parse a named {@code .proto} schema. */
   public static ProtoFile parse(String name, String data) {
-    return new ProtoParser(name, data.toCharArray()).readProtoFile();
+    return new ProtoParser(name, Source.of(data.toCharArray())).readProtoFile();
   }
 
-  private final String filePath;
-  private final char[] data;
-  private final ProtoFile.Builder fileBuilder;
+  /** Parse a named {@code .proto} schema with {@code options}. */
+  public static ProtoFile parse(String name, String data, ParseOptions options) {
+    checkNotNull(options, "options");
+    return new ProtoParser(name, Source.of(data.toCharArray()), options, false).readProtoFile();
+  }
+
+  /**
+   * Parse a {@code .proto} definition file with {@code options}, reporting its declarations to
+   * {@code listener} rather than building a {@link ProtoFile}.
+   */
+  public static void parseUtf8(Path path, ParseOptions options, ProtoListener listener)
+      throws IOException {
+    checkNotNull(options, "options");
+    checkNotNull(listener, "listener");
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer data = channel.map(READ_ONLY, 0, channel.size());
+      new ProtoParser(path.toString(), Source.utf8(data), options, listener).readDeclarations();
+    }
+  }
+
+  /**
+   * Parse a named {@code .proto} schema from its UTF-8 bytes with {@code options}, reporting its
+   * declarations to {@code listener} rather than building a {@link ProtoFile}.
+   */
+  public static void parseUtf8(String name, byte[] data, ParseOptions options,
+      ProtoListener listener) {
+    checkNotNull(options, "options");
+    checkNotNull(listener, "listener");
+    new ProtoParser(name, Source.utf8(data), options, listener).readDeclarations();
+  }
+
+  /**
+   * Parse a named {@code .proto} schema with {@code options}, reporting its declarations to
+   * {@code listener} rather than building a {@link ProtoFile}.
+   */
+  public static void parse(String name, String data, ParseOptions options,
+      ProtoListener listener) {
+    checkNotNull(options, "options");
+    checkNotNull(listener, "listener");
+    new ProtoParser(name, Source.of(data.toCharArray()), options, listener).readDeclarations();
+  }
 
-  /** Our cursor within the document. {@code data[pos]} is the next character to be read. */
+  /**
+   * Parse a {@code .proto} definition file, continuing past errors. See
+   * {@link #parseRecovering(String, String)}.
+   */
+  public static Result parseUtf8Recovering(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      ByteBuffer data = channel.map(READ_ONLY, 0, channel.size());
+      return new ProtoParser(path.toString(), Source.utf8(data), ParseOptions.DEFAULT, true)
+          .readResult();
+    }
+  }
+
+  /**
+   * Parse a named {@code .proto} schema from its UTF-8 bytes, continuing past errors. See
+   * {@link #parseRecovering(String, String)}.
+   */
+  public static Result parseUtf8Recovering(String name, byte[] data) {
+    return new ProtoParser(name, Source.utf8(data), ParseOptions.DEFAULT, true).readResult();
+  }
+
+  /**
+   * Parse a named {@code .proto} schema, continuing past errors. Rather than throwing on the first
+   * error, each is recorded as a {@link Diagnostic} and the parser skips to the end of the
+   * offending declaration: past its {@code ;} or its {@code {...}} block, or up to the {@code }}
+   * that closes the enclosing block. The returned file contains every declaration that could be
+   * parsed.
+   */
+  public static Result parseRecovering(String name, String data) {
+    return new ProtoParser(name, Source.of(data.toCharArray()), ParseOptions.DEFAULT, true)
+        .readResult();
+  }
+
+  private final String filePath;
+  private final Source data;
+  private final SymbolPool symbols;
+  private final DocumentationMode documentationMode;
+  /** Receives the declarations as they are read. */
+  private final ProtoListener listener;
+  /** The listener which builds a {@link ProtoFile}, or null if declarations are only reported. */
+  private final ProtoTreeBuilder treeBuilder;
+  /** Errors recovered from so far, or null if this parser throws on the first error. */
+  private final List<Diagnostic> diagnostics;
+
+  /** Our cursor within the document. {@code data.charAt(pos)} is the next unit to be read. */
   private int pos;
   /** The number of newline characters encountered thus far. */
   private int line;
@@ -77,110 +226,214 @@ public final class ProtoParser {
   /** The current package name + nested type names, separated by dots. */
   private String prefix = "";
 
-  ProtoParser(String filePath, char[] data) {
+  /** The span of the declaration whose event is being reported. */
+  private int spanStart;
+  private int spanEnd;
+
+  ProtoParser(String filePath, Source data) {
+    this(filePath, data, ParseOptions.DEFAULT, false);
+  }
+
+  ProtoParser(String filePath, Source data, ParseOptions options, boolean recovering) {
     this.filePath = filePath;
     this.data = data;
-    this.fileBuilder = ProtoFile.builder(filePath);
+    this.symbols = options.symbolPoolForParse();
+    this.documentationMode = options.documentationMode();
+    this.treeBuilder = new ProtoTreeBuilder(this, filePath, options.sourceMap());
+    this.listener = treeBuilder;
+    this.diagnostics = recovering ? new ArrayList<Diagnostic>() : null;
+  }
+
+  ProtoParser(String filePath, Source data, ParseOptions options, ProtoListener listener) {
+    this.filePath = filePath;
+    this.data = data;
+    this.symbols = options.symbolPoolForParse();
+    this.documentationMode = options.documentationMode();
+    this.treeBuilder = null;
+    this.listener = listener;
+    this.diagnostics = null;
+  }
+
+  private Result readResult() {
+    ProtoFile protoFile = readProtoFile();
+    return Result.create(protoFile, diagnostics);
   }
 
   ProtoFile readProtoFile() {
-    while (true) {
-      String documentation = readDocumentation();
-      if (pos == data.length) {
-        return fileBuilder.build();
+    while (pos < data.length()) {
+      try {
+        readFileDeclaration();
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        recover(e, false);
       }
-      Object declaration = readDeclaration(documentation, Context.FILE);
-      if (declaration instanceof TypeElement) {
-        fileBuilder.addType((TypeElement) declaration);
-      } else if (declaration instanceof ServiceElement) {
-        fileBuilder.addService((ServiceElement) declaration);
-      } else if (declaration instanceof OptionElement) {
-        fileBuilder.addOption((OptionElement) declaration);
-      } else if (declaration instanceof ExtendElement) {
-        fileBuilder.addExtendDeclaration((ExtendElement) declaration);
+      treeBuilder.addToFile();
+    }
+    return treeBuilder.build(data);
+  }
+
+  /** Reports every declaration to the listener. */
+  private void readDeclarations() {
+    while (pos < data.length()) {
+      readFileDeclaration();
+    }
+  }
+
+  /** Reads a top-level declaration and its documentation, if any remain. */
+  void readFileDeclaration() {
+    Documentation documentation = readDocumentation();
+    if (pos == data.length()) {
+      return;
+    }
+    readDeclaration(documentation, Context.FILE);
+  }
+
+  /**
+   * Moves this parser to {@code pos}, as though it had just read the declarations before it.
+   * {@code packageName} is the package declared before {@code pos}, or null if there is none.
+   */
+  void seek(int pos, String packageName) {
+    this.line = 0;
+    this.lineStart = 0;
+    for (int i = 0; i < pos; i++) {
+      if (data.charAt(i) == '\n') {
+        line++;
+        lineStart = i + 1;
       }
     }
+    this.pos = pos;
+    this.packageName = packageName;
+    this.prefix = packageName != null ? packageName + "." : "";
+  }
+
+  int pos() {
+    return pos;
+  }
+
+  /** Returns the listener which builds this parser's {@link ProtoFile}. */
+  ProtoTreeBuilder treeBuilder() {
+    return treeBuilder;
+  }
+
+  String filePath() {
+    return filePath;
   }
 
-  private Object readDeclaration(String documentation, Context context) {
+  /** Returns the offset of the first character of the declaration being reported. */
+  int spanStart() {
+    return spanStart;
+  }
+
+  /** Returns the offset past the last character of the declaration being reported. */
+  int spanEnd() {
+    return spanEnd;
+  }
+
+  private void readDeclaration(Documentation documentation, Context context) {
     // Skip unnecessary semicolons, occasionally used after a nested message declaration.
     if (peekChar() == ';') {
       pos++;
-      return null;
+      return;
     }
 
-    String label = readWord();
-
-    if (label.equals("package")) {
-      if (!context.permitsPackage()) throw unexpected("'package' in " + context);
-      if (packageName != null) throw unexpected("too many package names");
-      packageName = readName();
-      fileBuilder.packageName(packageName);
-      prefix = packageName + ".";
-      if (readChar() != ';') throw unexpected("expected ';'");
-      return null;
-    } else if (label.equals("import")) {
-      if (!context.permitsImport()) throw unexpected("'import' in " + context);
-      String importString = readString();
-      if ("public".equals(importString)) {
-        fileBuilder.addPublicDependency(readString());
-      } else {
-        fileBuilder.addDependency(importString);
-      }
-      if (readChar() != ';') throw unexpected("expected ';'");
-      return null;
-    } else if (label.equals("syntax")) {
-      if (!context.permitsSyntax()) throw unexpected("'syntax' in " + context);
-      if (readChar() != '=') throw unexpected("expected '='");
-      String syntax = readQuotedString();
-      switch (syntax) {
-        case "proto2":
-          fileBuilder.syntax(PROTO_2);
-          break;
-        case "proto3":
-          fileBuilder.syntax(PROTO_3);
-          break;
+    int labelStart = readWordStart();
+    int labelEnd = pos;
+    Keyword keyword = Keyword.match(data, labelStart, labelEnd);
+    if (keyword != null) {
+      switch (keyword) {
+        case PACKAGE:
+          if (!context.permitsPackage()) throw unexpected("'package' in " + context);
+          if (packageName != null) throw unexpected("too many package names");
+          packageName = readName();
+          prefix = packageName + ".";
+          if (readChar() != ';') throw unexpected("expected ';'");
+          listener.onPackage(packageName);
+          return;
+        case IMPORT:
+          if (!context.permitsImport()) throw unexpected("'import' in " + context);
+          String importString = readString();
+          boolean isPublic = "public".equals(importString);
+          if (isPublic) {
+            importString = readString();
+          }
+          if (readChar() != ';') throw unexpected("expected ';'");
+          listener.onImport(importString, isPublic);
+          return;
+        case SYNTAX:
+          if (!context.permitsSyntax()) throw unexpected("'syntax' in " + context);
+          if (readChar() != '=') throw unexpected("expected '='");
+          String syntax = readQuotedString();
+          ProtoFile.Syntax syntaxValue;
+          switch (syntax) {
+            case "proto2":
+              syntaxValue = PROTO_2;
+              break;
+            case "proto3":
+              syntaxValue = PROTO_3;
+              break;
+            default:
+              throw unexpected("'syntax' must be 'proto2' or 'proto3'. Found: " + syntax);
+          }
+          if (readChar() != ';') throw unexpected("expected ';'");
+          listener.onSyntax(syntaxValue);
+          return;
+        case OPTION:
+          OptionElement result = symbols.intern(readOption('='));
+          if (readChar() != ';') throw unexpected("expected ';'");
+          listener.onOption(result);
+          return;
+        case MESSAGE:
+          readMessage(documentation, labelStart);
+          return;
+        case ENUM:
+          readEnumElement(documentation, labelStart);
+          return;
+        case SERVICE:
+          readService(documentation, labelStart);
+          return;
+        case EXTEND:
+          readExtend(documentation, labelStart);
+          return;
+        case RPC:
+          if (!context.permitsRpc()) throw unexpected("'rpc' in " + context);
+          readRpc(documentation, labelStart);
+          return;
+        case REQUIRED:
+          if (!context.permitsField()) throw unexpected("fields must be nested");
+          readField(documentation, labelStart, FieldElement.Label.REQUIRED);
+          return;
+        case OPTIONAL:
+          if (!context.permitsField()) throw unexpected("fields must be nested");
+          readField(documentation, labelStart, FieldElement.Label.OPTIONAL);
+          return;
+        case REPEATED:
+          if (!context.permitsField()) throw unexpected("fields must be nested");
+          readField(documentation, labelStart, FieldElement.Label.REPEATED);
+          return;
+        case ONEOF:
+          if (!context.permitsOneOf()) throw unexpected("'oneof' must be nested in message");
+          readOneOf(documentation, labelStart);
+          return;
+        case EXTENSIONS:
+          if (!context.permitsExtensions()) throw unexpected("'extensions' must be nested");
+          readExtensions(documentation, labelStart);
+          return;
         default:
-          throw unexpected("'syntax' must be 'proto2' or 'proto3'. Found: " + syntax);
+          // Other keywords are identifiers in this position.
+          break;
       }
-      if (readChar() != ';') throw unexpected("expected ';'");
-      return null;
-    } else if (label.equals("option")) {
-      OptionElement result = readOption('=');
-      if (readChar() != ';') throw unexpected("expected ';'");
-      return result;
-    } else if (label.equals("message")) {
-      return readMessage(documentation);
-    } else if (label.equals("enum")) {
-      return readEnumElement(documentation);
-    } else if (label.equals("service")) {
-      return readService(documentation);
-    } else if (label.equals("extend")) {
-      return readExtend(documentation);
-    } else if (label.equals("rpc")) {
-      if (!context.permitsRpc()) throw unexpected("'rpc' in " + context);
-      return readRpc(documentation);
-    } else if (label.equals("required") || label.equals("optional") || label.equals("repeated")) {
-      if (!context.permitsField()) throw unexpected("fields must be nested");
-      FieldElement.Label labelEnum = FieldElement.Label.valueOf(label.toUpperCase(Locale.US));
-      return readField(documentation, labelEnum);
-    } else if (label.equals("oneof")) {
-      if (!context.permitsOneOf()) throw unexpected("'oneof' must be nested in message");
-      return readOneOf(documentation);
-    } else if (label.equals("extensions")) {
-      if (!context.permitsExtensions()) throw unexpected("'extensions' must be nested");
-      return readExtensions(documentation);
-    } else if (context == Context.ENUM) {
-      if (readChar() != '=') throw unexpected("expected '='");
+    }
 
-      EnumConstantElement.Builder builder = EnumConstantElement.builder()
-          .name(label)
-          .tag(readInt());
+    String label = symbols.intern(data, labelStart, labelEnd);
+    if (context == Context.ENUM) {
+      if (readChar() != '=') throw unexpected("expected '='");
+      int tag = readInt();
 
+      List<OptionElement> options = Collections.emptyList();
       if (peekChar() == '[') {
         readChar();
+        options = new ArrayList<>();
         while (true) {
-          builder.addOption(readOption('='));
+          options.add(symbols.intern(readOption('=')));
           char c = readChar();
           if (c == ']') {
             break;
@@ -191,146 +444,103 @@ public final class ProtoParser {
         }
       }
       if (readChar() != ';') throw unexpected("expected ';'");
+      int end = pos;
       documentation = tryAppendTrailingDocumentation(documentation);
-      return builder.documentation(documentation).build();
+      span(labelStart, end);
+      listener.enumConstant(label, tag, documentation, options);
     } else {
       throw unexpected("unexpected label: " + label);
     }
   }
 
   /** Reads a message declaration. */
-  private MessageElement readMessage(String documentation) {
+  private void readMessage(Documentation documentation, int start) {
     String name = readName();
-    MessageElement.Builder builder = MessageElement.builder()
-        .name(name)
-        .qualifiedName(prefix + name)
-        .documentation(documentation);
+    if (readChar() != '{') throw unexpected("expected '{'");
+    span(start, pos);
+    listener.messageStart(name, prefix + name, documentation);
 
     String previousPrefix = prefix;
     prefix = prefix + name + ".";
-
-    if (readChar() != '{') throw unexpected("expected '{'");
-    while (true) {
-      String nestedDocumentation = readDocumentation();
-      if (peekChar() == '}') {
-        pos++;
-        break;
-      }
-      Object declared = readDeclaration(nestedDocumentation, Context.MESSAGE);
-      if (declared instanceof FieldElement) {
-        builder.addField((FieldElement) declared);
-      } else if (declared instanceof OneOfElement) {
-        builder.addOneOf((OneOfElement) declared);
-      } else if (declared instanceof TypeElement) {
-        builder.addType((TypeElement) declared);
-      } else if (declared instanceof ExtensionsElement) {
-        builder.addExtensions((ExtensionsElement) declared);
-      } else if (declared instanceof OptionElement) {
-        builder.addOption((OptionElement) declared);
-      } else if (declared instanceof ExtendElement) {
-        // Extend declarations always add in a global scope regardless of nesting.
-        fileBuilder.addExtendDeclaration((ExtendElement) declared);
-      }
-    }
+    readBlock(Context.MESSAGE);
     prefix = previousPrefix;
 
-    return builder.build();
+    span(start, pos);
+    listener.onMessageEnd();
   }
 
   /** Reads an extend declaration. */
-  private ExtendElement readExtend(String documentation) {
+  private void readExtend(Documentation documentation, int start) {
     String name = readName();
     String qualifiedName = name;
     if (!name.contains(".") && packageName != null) {
       qualifiedName = packageName + "." + name;
     }
-    ExtendElement.Builder builder = ExtendElement.builder()
-        .name(name)
-        .qualifiedName(qualifiedName)
-        .documentation(documentation);
-
     if (readChar() != '{') throw unexpected("expected '{'");
-    while (true) {
-      String nestedDocumentation = readDocumentation();
-      if (peekChar() == '}') {
-        pos++;
-        break;
-      }
-      Object declared = readDeclaration(nestedDocumentation, Context.EXTEND);
-      if (declared instanceof FieldElement) {
-        builder.addField((FieldElement) declared);
-      }
-    }
-    return builder.build();
+    span(start, pos);
+    listener.extendStart(name, qualifiedName, documentation);
+
+    readBlock(Context.EXTEND);
+    span(start, pos);
+    listener.onExtendEnd();
   }
 
-  /** Reads a service declaration and returns it. */
-  private ServiceElement readService(String documentation) {
+  /** Reads a service declaration. */
+  private void readService(Documentation documentation, int start) {
     String name = readName();
-    ServiceElement.Builder builder = ServiceElement.builder()
-        .name(name)
-        .qualifiedName(prefix + name)
-        .documentation(documentation);
-
     if (readChar() != '{') throw unexpected("expected '{'");
-    while (true) {
-      String rpcDocumentation = readDocumentation();
-      if (peekChar() == '}') {
-        pos++;
-        break;
-      }
-      Object declared = readDeclaration(rpcDocumentation, Context.SERVICE);
-      if (declared instanceof RpcElement) {
-        builder.addRpc((RpcElement) declared);
-      } else if (declared instanceof OptionElement) {
-        builder.addOption((OptionElement) declared);
-      }
-    }
-    return builder.build();
+    span(start, pos);
+    listener.serviceStart(name, prefix + name, documentation);
+
+    readBlock(Context.SERVICE);
+    span(start, pos);
+    listener.onServiceEnd();
   }
 
-  /** Reads an enumerated type declaration and returns it. */
-  private EnumElement readEnumElement(String documentation) {
+  /** Reads an enumerated type declaration. */
+  private void readEnumElement(Documentation documentation, int start) {
     String name = readName();
-    EnumElement.Builder builder = EnumElement.builder()
-        .name(name)
-        .qualifiedName(prefix + name)
-        .documentation(documentation);
-
     if (readChar() != '{') throw unexpected("expected '{'");
+    span(start, pos);
+    listener.enumStart(name, prefix + name, documentation);
+
+    readBlock(Context.ENUM);
+    span(start, pos);
+    listener.onEnumEnd();
+  }
+
+  /**
+   * Reads the declarations in a block up to and including its closing '}'. The opening '{' has
+   * already been read.
+   */
+  private void readBlock(Context context) {
     while (true) {
-      String valueDocumentation = readDocumentation();
-      if (peekChar() == '}') {
-        pos++;
-        break;
-      }
-      Object declared = readDeclaration(valueDocumentation, Context.ENUM);
-      if (declared instanceof EnumConstantElement) {
-        builder.addConstant((EnumConstantElement) declared);
-      } else if (declared instanceof OptionElement) {
-        builder.addOption((OptionElement) declared);
+      try {
+        Documentation nestedDocumentation = readDocumentation();
+        if (peekChar() == '}') {
+          pos++;
+          break;
+        }
+        readDeclaration(nestedDocumentation, context);
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        if (!recover(e, true)) break;
       }
     }
-    return builder.build();
   }
 
-  /** Reads an field declaration and returns it. */
-  private FieldElement readField(String documentation, FieldElement.Label label) {
+  /** Reads an field declaration. */
+  private void readField(Documentation documentation, int start, FieldElement.Label label) {
     DataType type = readDataType();
     String name = readName();
     if (readChar() != '=') throw unexpected("expected '='");
     int tag = readInt();
 
-    FieldElement.Builder builder = FieldElement.builder()
-        .label(label)
-        .type(type)
-        .name(name)
-        .tag(tag);
-
+    List<OptionElement> options = Collections.emptyList();
     if (peekChar() == '[') {
       pos++;
+      options = new ArrayList<>();
       while (true) {
-        builder.addOption(readOption('='));
+        options.add(symbols.intern(readOption('=')));
 
         // Check for optional ',' or closing ']'
         char c = peekChar();
@@ -345,42 +555,53 @@ public final class ProtoParser {
     if (readChar() != ';') {
       throw unexpected("expected ';'");
     }
+    int end = pos;
     documentation = tryAppendTrailingDocumentation(documentation);
-    return builder.documentation(documentation).build();
+    span(start, end);
+    listener.field(label, type, name, tag, documentation, options);
   }
 
-  private OneOfElement readOneOf(String documentation) {
-    OneOfElement.Builder builder = OneOfElement.builder()
-        .name(readName())
-        .documentation(documentation);
-
+  private void readOneOf(Documentation documentation, int start) {
+    String name = readName();
     if (readChar() != '{') throw unexpected("expected '{'");
+    span(start, pos);
+    listener.oneOfStart(name, documentation);
+
     while (true) {
-      String nestedDocumentation = readDocumentation();
-      if (peekChar() == '}') {
-        pos++;
-        break;
+      try {
+        Documentation nestedDocumentation = readDocumentation();
+        if (peekChar() == '}') {
+          pos++;
+          break;
+        }
+        readField(nestedDocumentation, pos, FieldElement.Label.ONE_OF);
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        if (!recover(e, true)) break;
       }
-      builder.addField(readField(nestedDocumentation, FieldElement.Label.ONE_OF));
     }
-    return builder.build();
+    span(start, pos);
+    listener.onOneOfEnd();
   }
 
   /** Reads extensions like "extensions 101;" or "extensions 101 to max;". */
-  private ExtensionsElement readExtensions(String documentation) {
+  private void readExtensions(Documentation documentation, int declarationStart) {
     int start = readInt(); // Range start.
     int end = start;
     if (peekChar() != ';') {
-      if (!"to".equals(readWord())) throw unexpected("expected ';' or 'to'");
-      String s = readWord(); // Range end.
-      if (s.equals("max")) {
+      int toStart = readWordStart();
+      if (Keyword.match(data, toStart, pos) != Keyword.TO) {
+        throw unexpected("expected ';' or 'to'");
+      }
+      int endStart = readWordStart(); // Range end.
+      if (Keyword.match(data, endStart, pos) == Keyword.MAX) {
         end = ProtoFile.MAX_TAG_VALUE;
       } else {
-        end = Integer.parseInt(s);
+        end = parseInt(endStart);
       }
     }
     if (readChar() != ';') throw unexpected("expected ';'");
-    return ExtensionsElement.create(start, end, documentation);
+    span(declarationStart, pos);
+    listener.extensions(start, end, documentation);
   }
 
   /** Reads a option containing a name, an '=' or ':', and a value. */
@@ -534,46 +755,47 @@ public final class ProtoParser {
     }
   }
 
-  /** Reads an rpc and returns it. */
-  private RpcElement readRpc(String documentation) {
-    RpcElement.Builder builder = RpcElement.builder()
-        .name(readName())
-        .documentation(documentation);
+  /** Reads an rpc. */
+  private void readRpc(Documentation documentation, int start) {
+    String name = readName();
 
     if (readChar() != '(') throw unexpected("expected '('");
     DataType requestType = readDataType();
     if (!(requestType instanceof NamedType)) {
       throw unexpected("expected message but was " + requestType);
     }
-    builder.requestType((NamedType) requestType);
     if (readChar() != ')') throw unexpected("expected ')'");
 
-    if (!readWord().equals("returns")) throw unexpected("expected 'returns'");
+    int returnsStart = readWordStart();
+    if (Keyword.match(data, returnsStart, pos) != Keyword.RETURNS) {
+      throw unexpected("expected 'returns'");
+    }
 
     if (readChar() != '(') throw unexpected("expected '('");
     DataType responseType = readDataType();
     if (!(responseType instanceof NamedType)) {
       throw unexpected("expected message but was " + responseType);
     }
-    builder.responseType((NamedType) responseType);
     if (readChar() != ')') throw unexpected("expected ')'");
 
     if (peekChar() == '{') {
       pos++;
-      while (true) {
-        String rpcDocumentation = readDocumentation();
-        if (peekChar() == '}') {
-          pos++;
-          break;
-        }
-        Object declared = readDeclaration(rpcDocumentation, Context.RPC);
-        if (declared instanceof OptionElement) {
-          builder.addOption((OptionElement) declared);
-        }
-      }
-    } else if (readChar() != ';') throw unexpected("expected ';'");
+      span(start, pos);
+      listener.rpcStart(name, (NamedType) requestType, (NamedType) responseType, documentation);
+      readBlock(Context.RPC);
+    } else {
+      if (readChar() != ';') throw unexpected("expected ';'");
+      span(start, pos);
+      listener.rpcStart(name, (NamedType) requestType, (NamedType) responseType, documentation);
+    }
+    span(start, pos);
+    listener.onRpcEnd();
+  }
 
-    return builder.build();
+  /** Sets the span of the declaration whose event is reported next. */
+  private void span(int start, int end) {
+    spanStart = start;
+    spanEnd = end;
   }
 
   /** Reads a non-whitespace character and returns it. */
@@ -589,8 +811,8 @@ public final class ProtoParser {
    */
   private char peekChar() {
     skipWhitespace(true);
-    if (pos == data.length) throw unexpected("unexpected end of file");
-    return data[pos];
+    if (pos == data.length()) throw unexpected("unexpected end of file");
+    return data.charAt(pos);
   }
 
   /** Reads a quoted or unquoted string and returns it. */
@@ -601,45 +823,62 @@ public final class ProtoParser {
 
   private String readQuotedString() {
     if (readChar() != '"') throw new AssertionError();
-    StringBuilder result = new StringBuilder();
-    while (pos < data.length) {
-      char c = data[pos++];
-      if (c == '"') return result.toString();
-
-      if (c == '\\') {
-        if (pos == data.length) throw unexpected("unexpected end of file");
-        c = data[pos++];
-        switch (c) {
-          case 'a': c = 0x7; break;
-          case 'b': c = '\b'; break;
-          case 'f': c = '\f'; break;
-          case 'n': c = '\n'; break;
-          case 'r': c = '\r'; break;
-          case 't': c = '\t'; break;
-          case 'v': c = 0xb; break;
-          case 'x':case 'X':
-            c = readNumericEscape(16, 2);
-            break;
-          case '0':case '1':case '2':case '3':case '4':case '5':case '6':case '7':
-            --pos;
-            c = readNumericEscape(8, 3);
-            break;
-          default:
-            // use char as-is
-            break;
-        }
+    StringBuilder result = null;
+    int runStart = pos;
+    while (pos < data.length()) {
+      char c = data.charAt(pos);
+      if (c == '"') {
+        String run = data.substring(runStart, pos++);
+        return result != null ? result.append(run).toString() : run;
+      }
+
+      if (c != '\\') {
+        pos++;
+        if (c == '\n') newline();
+        continue;
       }
 
+      // Flush the unescaped run so that only it, and not the escape sequence, is decoded.
+      if (result == null) result = new StringBuilder();
+      result.append(data.substring(runStart, pos++));
+      if (pos == data.length()) throw unexpected("unexpected end of file");
+      c = data.charAt(pos++);
+      switch (c) {
+        case 'a': c = 0x7; break;
+        case 'b': c = '\b'; break;
+        case 'f': c = '\f'; break;
+        case 'n': c = '\n'; break;
+        case 'r': c = '\r'; break;
+        case 't': c = '\t'; break;
+        case 'v': c = 0xb; break;
+        case 'x':case 'X':
+          c = readNumericEscape(16, 2);
+          break;
+        case '0':case '1':case '2':case '3':case '4':case '5':case '6':case '7':
+          --pos;
+          c = readNumericEscape(8, 3);
+          break;
+        default:
+          if (c >= 0x80) {
+            // A multi-byte sequence escapes as itself. Leave it to be decoded with the next run.
+            --pos;
+            runStart = pos;
+            continue;
+          }
+          // use char as-is
+          break;
+      }
       result.append(c);
       if (c == '\n') newline();
+      runStart = pos;
     }
     throw unexpected("unterminated string");
   }
 
   private char readNumericEscape(int radix, int len) {
     int value = -1;
-    for (int endPos = Math.min(pos + len, data.length); pos < endPos; pos++) {
-      int digit = hexDigit(data[pos]);
+    for (int endPos = Math.min(pos + len, data.length()); pos < endPos; pos++) {
+      int digit = hexDigit(data.charAt(pos));
       if (digit == -1 || digit >= radix) break;
       if (value < 0) {
         value = digit;
@@ -651,7 +890,7 @@ public final class ProtoParser {
     return (char) value;
   }
 
-  private int hexDigit(char c) {
+  static int hexDigit(char c) {
     if (c >= '0' && c <= '9') return c - '0';
     else if (c >= 'a' && c <= 'f') return c - 'a' + 10;
     else if (c >= 'A' && c <= 'F') return c - 'A' + 10;
@@ -678,58 +917,37 @@ public final class ProtoParser {
 
   /** Reads a scalar, map, or type name. */
   private DataType readDataType() {
-    String name = readWord();
-    switch (name) {
-      case "map":
-        if (readChar() != '<') throw unexpected("expected '<'");
-        DataType keyType = readDataType();
-        if (readChar() != ',') throw unexpected("expected ','");
-        DataType valueType = readDataType();
-        if (readChar() != '>') throw unexpected("expected '>'");
-        return MapType.create(keyType, valueType);
-      case "any":
-        return ScalarType.ANY;
-      case "bool":
-        return ScalarType.BOOL;
-      case "bytes":
-        return ScalarType.BYTES;
-      case "double":
-        return ScalarType.DOUBLE;
-      case "float":
-        return ScalarType.FLOAT;
-      case "fixed32":
-        return ScalarType.FIXED32;
-      case "fixed64":
-        return ScalarType.FIXED64;
-      case "int32":
-        return ScalarType.INT32;
-      case "int64":
-        return ScalarType.INT64;
-      case "sfixed32":
-        return ScalarType.SFIXED32;
-      case "sfixed64":
-        return ScalarType.SFIXED64;
-      case "sint32":
-        return ScalarType.SINT32;
-      case "sint64":
-        return ScalarType.SINT64;
-      case "string":
-        return ScalarType.STRING;
-      case "uint32":
-        return ScalarType.UINT32;
-      case "uint64":
-        return ScalarType.UINT64;
-      default:
-        return NamedType.create(name);
+    int start = readWordStart();
+    Keyword keyword = Keyword.match(data, start, pos);
+    if (keyword == Keyword.MAP) {
+      if (readChar() != '<') throw unexpected("expected '<'");
+      DataType keyType = readDataType();
+      if (readChar() != ',') throw unexpected("expected ','");
+      DataType valueType = readDataType();
+      if (readChar() != '>') throw unexpected("expected '>'");
+      return MapType.create(keyType, valueType);
     }
+    if (keyword != null && keyword.scalarType != null) {
+      return keyword.scalarType;
+    }
+    return NamedType.create(symbols.intern(data, start, pos));
   }
 
   /** Reads a non-empty word and returns it. */
   private String readWord() {
+    int start = readWordStart();
+    return symbols.intern(data, start, pos);
+  }
+
+  /**
+   * Reads a non-empty word without decoding it, and returns the offset where it starts. The word
+   * ends at {@code pos}.
+   */
+  private int readWordStart() {
     skipWhitespace(true);
     int start = pos;
-    while (pos < data.length) {
-      char c = data[pos];
+    while (pos < data.length()) {
+      char c = data.charAt(pos);
       if ((c >= 'a' && c <= 'z')
           || (c >= 'A' && c <= 'Z')
           || (c >= '0' && c <= '9')
@@ -742,22 +960,46 @@ public final class ProtoParser {
       }
     }
     if (start == pos) throw unexpected("expected a word");
-    return new String(data, start, pos - start);
+    return start;
   }
 
   /** Reads an integer and returns it. */
   private int readInt() {
-    String tag = readWord();
-    try {
-      int radix = 10;
-      if (tag.startsWith("0x") || tag.startsWith("0X")) {
-        tag = tag.substring("0x".length());
+    return parseInt(readWordStart());
+  }
+
+  /**
+   * Parses the word in {@code [start, pos)} as a decimal, hexadecimal ({@code 0x}), or octal
+   * ({@code 0}) integer, which may be negative. The digits are read in place.
+   */
+  private int parseInt(int start) {
+    int end = pos;
+    int i = start;
+    boolean negative = data.charAt(i) == '-';
+    if (negative) i++;
+    int radix = 10;
+    if (end - i > 1 && data.charAt(i) == '0') {
+      char c = data.charAt(i + 1);
+      if (c == 'x' || c == 'X') {
         radix = 16;
+        i += 2;
+      } else {
+        radix = 8;
+        i++;
       }
-      return Integer.valueOf(tag, radix);
-    } catch (Exception e) {
-      throw unexpected("expected an integer but was " + tag);
     }
+    long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+    long value = 0;
+    boolean valid = i < end;
+    for (; valid && i < end; i++) {
+      int digit = hexDigit(data.charAt(i));
+      value = value * radix + digit;
+      valid = digit != -1 && digit < radix && value <= limit;
+    }
+    if (!valid) {
+      throw unexpected("expected an integer but was " + data.substring(start, end));
+    }
+    return (int) (negative ? -value : value);
   }
 
   /**
@@ -765,72 +1007,66 @@ public final class ProtoParser {
    * comment text. By convention, comments before a declaration document that
    * declaration.
    */
-  private String readDocumentation() {
-    String result = null;
+  private Documentation readDocumentation() {
+    if (documentationMode == DocumentationMode.SKIP) {
+      skipWhitespace(true);
+      return Documentation.EMPTY;
+    }
+    int start = -1;
+    int end = -1;
     while (true) {
       skipWhitespace(false);
-      if (pos == data.length || data[pos] != '/') {
-        return result != null ? result : "";
-      }
-      String comment = readComment();
-      result = (result == null) ? comment : (result + "\n" + comment);
+      if (pos == data.length() || data.charAt(pos) != '/') break;
+      if (start == -1) start = pos;
+      skipComment();
+      end = pos;
+    }
+    if (start == -1) {
+      return Documentation.EMPTY;
+    }
+    if (documentationMode == DocumentationMode.LAZY) {
+      return Documentation.lazy(data, start, end, end, end);
     }
+    return Documentation.of(Documentation.commentText(data, start, end));
   }
 
-  /** Reads a comment and returns its body. */
-  private String readComment() {
-    if (pos == data.length || data[pos] != '/') throw new AssertionError();
+  /** Skips a comment, which is either a line comment or a block comment. */
+  private void skipComment() {
+    if (pos == data.length() || data.charAt(pos) != '/') throw new AssertionError();
     pos++;
-    int commentType = pos < data.length ? data[pos++] : -1;
+    int commentType = pos < data.length() ? data.charAt(pos++) : -1;
     if (commentType == '*') {
-      StringBuilder result = new StringBuilder();
-      boolean startOfLine = true;
-
-      for (; pos + 1 < data.length; pos++) {
-        char c = data[pos];
-        if (c == '*' && data[pos + 1] == '/') {
+      for (; pos + 1 < data.length(); pos++) {
+        char c = data.charAt(pos);
+        if (c == '*' && data.charAt(pos + 1) == '/') {
           pos += 2;
-          return result.toString().trim();
+          return;
         }
         if (c == '\n') {
-          result.append('\n');
           newline();
-          startOfLine = true;
-        } else if (!startOfLine) {
-          result.append(c);
-        } else if (c == '*') {
-          if (data[pos + 1] == ' ') {
-            pos += 1; // Skip a single leading space, if present.
-          }
-          startOfLine = false;
-        } else if (!Character.isWhitespace(c)) {
-          result.append(c);
-          startOfLine = false;
         }
       }
       throw unexpected("unterminated comment");
     } else if (commentType == '/') {
-      if (pos < data.length && data[pos] == ' ') {
-        pos += 1; // Skip a single leading space, if present.
-      }
-      int start = pos;
-      while (pos < data.length) {
-        char c = data[pos++];
+      while (pos < data.length()) {
+        char c = data.charAt(pos++);
         if (c == '\n') {
           newline();
           break;
         }
       }
-      return new String(data, start, pos - 1 - start);
     } else {
       throw unexpected("unexpected '/'");
     }
   }
 
-  private String tryAppendTrailingDocumentation(String documentation) {
+  private Documentation tryAppendTrailingDocumentation(Documentation documentation) {
+    // Skipped trailing comments are consumed as whitespace before the next declaration.
+    if (documentationMode == DocumentationMode.SKIP) return documentation;
+
     // Search for a '/' character ignoring spaces and tabs.
-    while (pos < data.length) {
-      char c = data[pos];
+    while (pos < data.length()) {
+      char c = data.charAt(pos);
       if (c == ' ' || c == '\t') {
         pos++;
       } else if (c == '/') {
@@ -842,14 +1078,14 @@ public final class ProtoParser {
       }
     }
 
-    if (pos == data.length || (data[pos] != '/' && data[pos] != '*')) {
+    if (pos == data.length() || (data.charAt(pos) != '/' && data.charAt(pos) != '*')) {
       pos--; // Backtrack to start of comment.
       throw unexpected("expected '//' or '/*'");
     }
-    boolean isStar = data[pos] == '*';
+    boolean isStar = data.charAt(pos) == '*';
     pos++;
 
-    if (pos < data.length && data[pos] == ' ') {
+    if (pos < data.length() && data.charAt(pos) == ' ') {
       pos++; // Skip a single leading space, if present.
     }
 
@@ -859,10 +1095,10 @@ public final class ProtoParser {
     if (isStar) {
       // Consume star comment until it closes on the same line.
       while (true) {
-        if (pos == data.length || data[pos] == '\n') {
+        if (pos == data.length() || data.charAt(pos) == '\n') {
           throw unexpected("trailing comment must be closed on the same line");
         }
-        if (data[pos] == '*' && pos + 1 < data.length && data[pos + 1] == '/') {
+        if (data.charAt(pos) == '*' && pos + 1 < data.length() && data.charAt(pos + 1) == '/') {
           end = pos - 1; // The character before '*'.
           pos += 2; // Skip to the character after '/'.
           break;
@@ -870,8 +1106,8 @@ public final class ProtoParser {
         pos++;
       }
       // Ensure nothing follows a trailing star comment.
-      while (pos < data.length) {
-        char c = data[pos++];
+      while (pos < data.length()) {
+        char c = data.charAt(pos++);
         if (c == '\n') {
           newline();
           break;
@@ -883,11 +1119,11 @@ public final class ProtoParser {
     } else {
       // Consume comment until newline.
       while (true) {
-        if (pos == data.length) {
+        if (pos == data.length()) {
           end = pos - 1;
           break;
         }
-        char c = data[pos++];
+        char c = data.charAt(pos++);
         if (c == '\n') {
           newline();
           end = pos - 2; // Account for stepping past the newline.
@@ -897,32 +1133,35 @@ public final class ProtoParser {
     }
 
     // Remove trailing whitespace.
-    while (end > start && (data[end] == ' ' || data[end] == '\t')) {
+    while (end > start && (data.charAt(end) == ' ' || data.charAt(end) == '\t')) {
       end--;
     }
 
     if (end == start) {
       return documentation;
     }
-    String trailingDocumentation = new String(data, start, end - start + 1);
-    if (documentation.isEmpty()) {
-      return trailingDocumentation;
+    if (documentationMode == DocumentationMode.LAZY) {
+      return documentation.withTrailing(data, start, end + 1);
     }
-    return documentation + '\n' + trailingDocumentation;
+    String trailingDocumentation = data.substring(start, end + 1);
+    String text = documentation.text();
+    return Documentation.of(text.isEmpty()
+        ? trailingDocumentation
+        : text + '\n' + trailingDocumentation);
   }
 
   /**
    * Skips whitespace characters and optionally comments. When this returns,
-   * either {@code pos == data.length} or a non-whitespace character.
+   * either {@code pos == data.length()} or a non-whitespace character.
    */
   private void skipWhitespace(boolean skipComments) {
-    while (pos < data.length) {
-      char c = data[pos];
+    while (pos < data.length()) {
+      char c = data.charAt(pos);
       if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
         pos++;
         if (c == '\n') newline();
       } else if (skipComments && c == '/') {
-        readComment();
+        skipComment();
       } else {
         break;
       }
@@ -944,8 +1183,121 @@ public final class ProtoParser {
   }
 
   private RuntimeException unexpected(String message) {
-    throw new IllegalStateException(
-        String.format("Syntax error in %s at %d:%d: %s", filePath, line(), column(), message));
+    throw new SyntaxException(filePath, line(), column(), message);
+  }
+
+  /**
+   * Records {@code e} and skips to the end of the declaration that caused it, or rethrows it if
+   * this parser is not recovering from errors. Returns false if the end of the file was reached.
+   */
+  private boolean recover(RuntimeException e, boolean inBlock) {
+    if (diagnostics == null) throw e;
+
+    if (!(e instanceof SyntaxException)) {
+      // A complete declaration failed validation. There is nothing to skip.
+      diagnostics.add(Diagnostic.create(filePath, line(), column(), e.getMessage()));
+      return pos < data.length();
+    }
+
+    SyntaxException syntaxException = (SyntaxException) e;
+    Diagnostic diagnostic = Diagnostic.create(filePath, syntaxException.line,
+        syntaxException.column, syntaxException.detail);
+    // Each block enclosing an unexpected end of file reports it. Keep only the first.
+    if (diagnostics.isEmpty() || !diagnostics.get(diagnostics.size() - 1).equals(diagnostic)) {
+      diagnostics.add(diagnostic);
+    }
+
+    // A failed readChar() consumes the unexpected character. Let the skip see it if it delimits.
+    if (pos > 0) {
+      char previous = data.charAt(pos - 1);
+      if (previous == ';' || previous == '{' || previous == '}') pos--;
+    }
+    skipDeclaration(inBlock);
+    return pos < data.length();
+  }
+
+  /**
+   * Skips past the next {@code ;} or balanced {@code {...}} block, or up to the {@code }} that
+   * closes the enclosing block. Outside of a block, a stray {@code }} is skipped.
+   */
+  private void skipDeclaration(boolean inBlock) {
+    int depth = 0;
+    while (pos < data.length()) {
+      char c = data.charAt(pos);
+      if (c == '\n') {
+        pos++;
+        newline();
+      } else if (c == '"') {
+        skipQuotedString();
+      } else if (c == '/' && pos + 1 < data.length()
+          && (data.charAt(pos + 1) == '/' || data.charAt(pos + 1) == '*')) {
+        try {
+          skipComment();
+        } catch (SyntaxException e) {
+          pos = data.length(); // Unterminated comment.
+        }
+      } else if (c == '{') {
+        pos++;
+        depth++;
+      } else if (c == '}') {
+        if (depth == 0 && inBlock) return;
+        pos++;
+        if (depth <= 1) return;
+        depth--;
+      } else if (c == ';') {
+        pos++;
+        if (depth == 0) return;
+      } else {
+        pos++;
+      }
+    }
+  }
+
+  private void skipQuotedString() {
+    for (pos++; pos < data.length(); pos++) {
+      char c = data.charAt(pos);
+      if (c == '"') {
+        pos++;
+        return;
+      } else if (c == '\\') {
+        pos++;
+      } else if (c == '\n') {
+        newline();
+      }
+    }
+  }
+
+  /** A syntax error. Its position is retained for {@link Diagnostic diagnostics}. */
+  private static final class SyntaxException extends IllegalStateException {
+    private static final long serialVersionUID = 0L;
+
+    final int line;
+    final int column;
+    final String detail;
+
+    SyntaxException(String filePath, int line, int column, String detail) {
+      super(String.format("Syntax error in %s at %d:%d: %s", filePath, line, column, detail));
+      this.line = line;
+      this.column = column;
+      this.detail = detail;
+    }
+  }
+
+  /** A parsed file and the errors that were recovered from while parsing it. */
+  @AutoValue
+  public abstract static class Result {
+    static Result create(ProtoFile protoFile, List<Diagnostic> diagnostics) {
+      return new AutoValue_ProtoParser_Result(protoFile, immutableCopyOf(diagnostics));
+    }
+
+    Result() {
+    }
+
+    /** The declarations that could be parsed. Complete if there are no diagnostics. */
+    public abstract ProtoFile protoFile();
+
+    /** Errors in the order they were encountered. */
+    public abstract List<Diagnostic> diagnostics();
   }
 
   enum Context {
@@ -0,0 +1,335 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.NamedType;
+import com.squareup.protoparser.Utils.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the elements of a {@link ProtoFile} from the events of a {@link ProtoParser}. Each
+ * completed element is added to the builder of the declaration enclosing it; elements which
+ * can't appear there are dropped.
+ */
+final class ProtoTreeBuilder extends ProtoListener {
+  private final ProtoParser parser;
+  private final ProtoFile.Builder fileBuilder;
+  /** Collects the span of each element, or null if spans aren't recorded. */
+  private final SourceMap.Builder sourceMap;
+  /** The builders of the declarations which have started but not ended, innermost last. */
+  private final List<Frame> frames = new ArrayList<>();
+  /** Extend declarations nested in messages, which belong to the file. */
+  private final List<ExtendElement> nestedExtends = new ArrayList<>();
+  /** The most recently completed top-level declaration. */
+  private Object declaration;
+
+  ProtoTreeBuilder(ProtoParser parser, String filePath, boolean sourceMap) {
+    this.parser = parser;
+    this.fileBuilder = ProtoFile.builder(filePath);
+    this.sourceMap = sourceMap ? new SourceMap.Builder() : null;
+  }
+
+  /**
+   * Returns the top-level declaration completed since the last call, or null if there is none.
+   * Package, import, and syntax declarations are returned as opaque values which can be passed to
+   * {@link #addDeclaration} and {@link #declaredPackage}.
+   */
+  @Nullable Object takeDeclaration() {
+    Object result = declaration;
+    declaration = null;
+    return result;
+  }
+
+  /**
+   * Returns the extend declarations nested in messages since the last call, and forgets them.
+   * These are part of the file rather than of their enclosing message.
+   */
+  List<ExtendElement> takeNestedExtends() {
+    if (nestedExtends.isEmpty()) return Collections.emptyList();
+    List<ExtendElement> result = new ArrayList<>(nestedExtends);
+    nestedExtends.clear();
+    return result;
+  }
+
+  /** Adds the declarations completed since the last call to the file. */
+  void addToFile() {
+    for (ExtendElement extend : takeNestedExtends()) {
+      fileBuilder.addExtendDeclaration(extend);
+    }
+    addDeclaration(fileBuilder, takeDeclaration());
+  }
+
+  /** Returns the spans recorded so far, or null if spans aren't recorded. */
+  @Nullable SourceMap.Builder sourceMapBuilder() {
+    return sourceMap;
+  }
+
+  ProtoFile build(Source data) {
+    if (sourceMap != null) {
+      fileBuilder.sourceMap(sourceMap.build(parser.filePath(), data));
+    }
+    return fileBuilder.build();
+  }
+
+  /** Adds a declaration returned by {@link #takeDeclaration} to {@code builder}. */
+  static void addDeclaration(ProtoFile.Builder builder, @Nullable Object declaration) {
+    if (declaration instanceof TypeElement) {
+      builder.addType((TypeElement) declaration);
+    } else if (declaration instanceof ServiceElement) {
+      builder.addService((ServiceElement) declaration);
+    } else if (declaration instanceof OptionElement) {
+      builder.addOption((OptionElement) declaration);
+    } else if (declaration instanceof ExtendElement) {
+      builder.addExtendDeclaration((ExtendElement) declaration);
+    } else if (declaration instanceof FileDirective) {
+      ((FileDirective) declaration).applyTo(builder);
+    }
+  }
+
+  /**
+   * Returns the package name if {@code declaration} is a {@code package} declaration, or null if
+   * it is not.
+   */
+  @Nullable static String declaredPackage(@Nullable Object declaration) {
+    if (declaration instanceof FileDirective
+        && ((FileDirective) declaration).kind == FileDirective.Kind.PACKAGE) {
+      return (String) ((FileDirective) declaration).value;
+    }
+    return null;
+  }
+
+  @Override public void onPackage(String packageName) {
+    add(new FileDirective(FileDirective.Kind.PACKAGE, packageName));
+  }
+
+  @Override public void onSyntax(ProtoFile.Syntax syntax) {
+    add(new FileDirective(FileDirective.Kind.SYNTAX, syntax));
+  }
+
+  @Override public void onImport(String dependency, boolean isPublic) {
+    add(new FileDirective(
+        isPublic ? FileDirective.Kind.PUBLIC_IMPORT : FileDirective.Kind.IMPORT, dependency));
+  }
+
+  @Override public void onOption(OptionElement option) {
+    add(option);
+  }
+
+  @Override void messageStart(String name, String qualifiedName, Documentation documentation) {
+    push(MessageElement.builder()
+        .name(name)
+        .qualifiedName(qualifiedName)
+        .docs(documentation));
+  }
+
+  @Override public void onMessageEnd() {
+    Frame frame = pop();
+    add(span(((MessageElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  @Override void field(FieldElement.Label label, DataType type, String name, int tag,
+      Documentation documentation, List<OptionElement> options) {
+    FieldElement field = FieldElement.builder()
+        .label(label)
+        .type(type)
+        .name(name)
+        .tag(tag)
+        .docs(documentation)
+        .addOptions(options)
+        .build();
+    add(span(field, parser.spanStart()));
+  }
+
+  @Override void oneOfStart(String name, Documentation documentation) {
+    push(OneOfElement.builder()
+        .name(name)
+        .docs(documentation));
+  }
+
+  @Override public void onOneOfEnd() {
+    Frame frame = pop();
+    add(span(((OneOfElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  @Override void extensions(int start, int end, Documentation documentation) {
+    add(span(ExtensionsElement.create(start, end, documentation), parser.spanStart()));
+  }
+
+  @Override void enumStart(String name, String qualifiedName, Documentation documentation) {
+    push(EnumElement.builder()
+        .name(name)
+        .qualifiedName(qualifiedName)
+        .docs(documentation));
+  }
+
+  @Override void enumConstant(String name, int tag, Documentation documentation,
+      List<OptionElement> options) {
+    EnumConstantElement.Builder builder = EnumConstantElement.builder()
+        .name(name)
+        .tag(tag)
+        .docs(documentation);
+    for (OptionElement option : options) {
+      builder.addOption(option);
+    }
+    add(span(builder.build(), parser.spanStart()));
+  }
+
+  @Override public void onEnumEnd() {
+    Frame frame = pop();
+    add(span(((EnumElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  @Override void extendStart(String name, String qualifiedName, Documentation documentation) {
+    push(ExtendElement.builder()
+        .name(name)
+        .qualifiedName(qualifiedName)
+        .docs(documentation));
+  }
+
+  @Override public void onExtendEnd() {
+    Frame frame = pop();
+    add(span(((ExtendElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  @Override void serviceStart(String name, String qualifiedName, Documentation documentation) {
+    push(ServiceElement.builder()
+        .name(name)
+        .qualifiedName(qualifiedName)
+        .docs(documentation));
+  }
+
+  @Override public void onServiceEnd() {
+    Frame frame = pop();
+    add(span(((ServiceElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  @Override void rpcStart(String name, NamedType requestType, NamedType responseType,
+      Documentation documentation) {
+    push(RpcElement.builder()
+        .name(name)
+        .requestType(requestType)
+        .responseType(responseType)
+        .docs(documentation));
+  }
+
+  @Override public void onRpcEnd() {
+    Frame frame = pop();
+    add(span(((RpcElement.Builder) frame.builder).build(), frame.start));
+  }
+
+  private void push(Object builder) {
+    frames.add(new Frame(builder, parser.spanStart()));
+  }
+
+  /** Removes the innermost frame before its element is built, in case building it fails. */
+  private Frame pop() {
+    return frames.remove(frames.size() - 1);
+  }
+
+  /** Records that {@code element} spans from {@code start} to the parser's span end. */
+  private <T> T span(T element, int start) {
+    if (sourceMap != null) sourceMap.add(element, start, parser.spanEnd());
+    return element;
+  }
+
+  /** Adds {@code element} to the innermost enclosing declaration. */
+  private void add(Object element) {
+    if (frames.isEmpty()) {
+      declaration = element;
+      return;
+    }
+    Object parent = frames.get(frames.size() - 1).builder;
+    if (parent instanceof MessageElement.Builder) {
+      MessageElement.Builder builder = (MessageElement.Builder) parent;
+      if (element instanceof FieldElement) {
+        builder.addField((FieldElement) element);
+      } else if (element instanceof OneOfElement) {
+        builder.addOneOf((OneOfElement) element);
+      } else if (element instanceof TypeElement) {
+        builder.addType((TypeElement) element);
+      } else if (element instanceof ExtensionsElement) {
+        builder.addExtensions((ExtensionsElement) element);
+      } else if (element instanceof OptionElement) {
+        builder.addOption((OptionElement) element);
+      } else if (element instanceof ExtendElement) {
+        // Extend declarations always add in a global scope regardless of nesting.
+        nestedExtends.add((ExtendElement) element);
+      }
+    } else if (parent instanceof EnumElement.Builder) {
+      EnumElement.Builder builder = (EnumElement.Builder) parent;
+      if (element instanceof EnumConstantElement) {
+        builder.addConstant((EnumConstantElement) element);
+      } else if (element instanceof OptionElement) {
+        builder.addOption((OptionElement) element);
+      }
+    } else if (parent instanceof OneOfElement.Builder) {
+      if (element instanceof FieldElement) {
+        ((OneOfElement.Builder) parent).addField((FieldElement) element);
+      }
+    } else if (parent instanceof ExtendElement.Builder) {
+      if (element instanceof FieldElement) {
+        ((ExtendElement.Builder) parent).addField((FieldElement) element);
+      }
+    } else if (parent instanceof ServiceElement.Builder) {
+      ServiceElement.Builder builder = (ServiceElement.Builder) parent;
+      if (element instanceof RpcElement) {
+        builder.addRpc((RpcElement) element);
+      } else if (element instanceof OptionElement) {
+        builder.addOption((OptionElement) element);
+      }
+    } else if (parent instanceof RpcElement.Builder) {
+      if (element instanceof OptionElement) {
+        ((RpcElement.Builder) parent).addOption((OptionElement) element);
+      }
+    }
+  }
+
+  /** The builder of a declaration which has started, and where it started. */
+  private static final class Frame {
+    final Object builder;
+    final int start;
+
+    Frame(Object builder, int start) {
+      this.builder = builder;
+      this.start = start;
+    }
+  }
+
+  /** A package, import, or syntax declaration, which sets a property of the file. */
+  private static final class FileDirective {
+    enum Kind {
+      PACKAGE,
+      IMPORT,
+      PUBLIC_IMPORT,
+      SYNTAX
+    }
+
+    final Kind kind;
+    final Object value;
+
+    FileDirective(Kind kind, Object value) {
+      this.kind = kind;
+      this.value = value;
+    }
+
+    void applyTo(ProtoFile.Builder builder) {
+      switch (kind) {
+        case PACKAGE:
+          builder.packageName((String) value);
+          break;
+        case IMPORT:
+          builder.addDependency((String) value);
+          break;
+        case PUBLIC_IMPORT:
+          builder.addPublicDependency((String) value);
+          break;
+        case SYNTAX:
+          builder.syntax((ProtoFile.Syntax) value);
+          break;
+        default:
+          throw new AssertionError(kind);
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/**
+ * Visits the elements of a {@link ProtoFile}. Override the methods for the elements of interest;
+ * each method that visits an element with children returns true to visit them as well, or false
+ * to skip them. By default every element is visited.
+ *
+ * <p>{@link #walk(ProtoFile)} visits elements in the order they are declared, parents before their
+ * children. It keeps pending elements on an explicit stack rather than recursing, so arbitrarily
+ * deep nesting doesn't overflow the call stack.
+ */
+public abstract class ProtoVisitor {
+  /**
+   * Returns true to visit the fields, oneofs, extension ranges, and nested types of
+   * {@code message}, in that order.
+   */
+  public boolean visitMessage(MessageElement message) {
+    return true;
+  }
+
+  /** Visits a field of a message, oneof, or extend declaration. */
+  public void visitField(FieldElement field) {
+  }
+
+  /** Returns true to visit the fields of {@code oneOf}. */
+  public boolean visitOneOf(OneOfElement oneOf) {
+    return true;
+  }
+
+  public void visitExtensions(ExtensionsElement extensions) {
+  }
+
+  /** Returns true to visit the constants of {@code enumElement}. */
+  public boolean visitEnum(EnumElement enumElement) {
+    return true;
+  }
+
+  public void visitEnumConstant(EnumConstantElement constant) {
+  }
+
+  /** Returns true to visit the fields of {@code extend}. */
+  public boolean visitExtend(ExtendElement extend) {
+    return true;
+  }
+
+  /** Returns true to visit the RPCs of {@code service}. */
+  public boolean visitService(ServiceElement service) {
+    return true;
+  }
+
+  public void visitRpc(RpcElement rpc) {
+  }
+
+  /**
+   * Returns true to visit the nested types of {@code type}, which is neither a message nor an
+   * enum.
+   */
+  public boolean visitType(TypeElement type) {
+    return true;
+  }
+
+  /** Visits the types, then the extend declarations, then the services of {@code protoFile}. */
+  public final void walk(ProtoFile protoFile) {
+    checkNotNull(protoFile, "protoFile");
+    List<Object> stack = new ArrayList<>();
+    pushAll(stack, protoFile.services());
+    pushAll(stack, protoFile.extendDeclarations());
+    pushAll(stack, protoFile.typeElements());
+    walk(stack);
+  }
+
+  /** Visits {@code type} and the elements it contains. */
+  public final void walk(TypeElement type) {
+    checkNotNull(type, "type");
+    List<Object> stack = new ArrayList<>();
+    stack.add(type);
+    walk(stack);
+  }
+
+  private void walk(List<Object> stack) {
+    while (!stack.isEmpty()) {
+      Object element = stack.remove(stack.size() - 1);
+      if (element instanceof FieldElement) {
+        visitField((FieldElement) element);
+      } else if (element instanceof MessageElement) {
+        MessageElement message = (MessageElement) element;
+        if (visitMessage(message)) {
+          pushAll(stack, message.nestedElements());
+          pushAll(stack, message.extensions());
+          pushAll(stack, message.oneOfs());
+          pushAll(stack, message.fields());
+        }
+      } else if (element instanceof EnumConstantElement) {
+        visitEnumConstant((EnumConstantElement) element);
+      } else if (element instanceof EnumElement) {
+        EnumElement enumElement = (EnumElement) element;
+        if (visitEnum(enumElement)) {
+          pushAll(stack, enumElement.constants());
+        }
+      } else if (element instanceof OneOfElement) {
+        OneOfElement oneOf = (OneOfElement) element;
+        if (visitOneOf(oneOf)) {
+          pushAll(stack, oneOf.fields());
+        }
+      } else if (element instanceof ExtensionsElement) {
+        visitExtensions((ExtensionsElement) element);
+      } else if (element instanceof RpcElement) {
+        visitRpc((RpcElement) element);
+      } else if (element instanceof ExtendElement) {
+        ExtendElement extend = (ExtendElement) element;
+        if (visitExtend(extend)) {
+          pushAll(stack, extend.fields());
+        }
+      } else if (element instanceof ServiceElement) {
+        ServiceElement service = (ServiceElement) element;
+        if (visitService(service)) {
+          pushAll(stack, service.rpcs());
+        }
+      } else {
+        TypeElement type = (TypeElement) element;
+        if (visitType(type)) {
+          pushAll(stack, type.nestedElements());
+        }
+      }
+    }
+  }
+
+  /** Pushes {@code elements} in reverse so that they are popped in order. */
+  private static void pushAll(List<Object> stack, List<?> elements) {
+    for (int i = elements.size() - 1; i >= 0; i--) {
+      stack.add(elements.get(i));
+    }
+  }
+}
@@ -7,10 +7,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
-import static com.squareup.protoparser.Utils.immutableCopyOf;
 
 @AutoValue
 public abstract class RpcElement {
@@ -22,15 +19,34 @@ public abstract class RpcElement {
   }
 
   public abstract String name();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract NamedType requestType();
   public abstract NamedType responseType();
   public abstract List<OptionElement> options();
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "RpcElement{"
+        + "name=" + name() + ", "
+        + "documentation=" + documentation() + ", "
+        + "requestType=" + requestType() + ", "
+        + "responseType=" + responseType() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("rpc ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("rpc ")
         .append(name())
         .append(" (")
         .append(requestType())
@@ -38,18 +54,18 @@ public abstract class RpcElement {
         .append(responseType())
         .append(')');
     if (!options().isEmpty()) {
-      builder.append(" {\n");
+      writer.append(" {\n").indent();
       for (OptionElement option : options()) {
-        appendIndented(builder, option.toSchemaDeclaration());
+        option.writeSchemaDeclaration(writer);
       }
-      builder.append("}");
+      writer.unindent().append('}');
     }
-    return builder.append(";\n").toString();
+    writer.append(";\n");
   }
 
   public static final class Builder {
     private String name;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private NamedType requestType;
     private NamedType responseType;
     private final List<OptionElement> options = new ArrayList<>();
@@ -63,7 +79,12 @@ public abstract class RpcElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -94,8 +115,8 @@ public abstract class RpcElement {
       checkNotNull(requestType, "requestType");
       checkNotNull(responseType, "responseType");
 
-      return new AutoValue_RpcElement(name, documentation, requestType, responseType,
-          immutableCopyOf(options));
+      return new AutoValue_RpcElement(name, docs, requestType, responseType,
+          OptionList.copyOf(options));
     }
   }
 }
@@ -0,0 +1,166 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.IOException;
+
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/**
+ * Writes schema text to an {@link Appendable}, indenting every line by two spaces per level of
+ * {@link #indent() indentation}. This produces the same output as building each nested element's
+ * schema as a string and then indenting it line by line: indented blank lines are written with
+ * their indentation, and blank lines at the end of an indented value are dropped when
+ * {@link #endLine()} is called.
+ *
+ * <p>I/O failures are rethrown as {@link WriteException} so that elements can write themselves
+ * without declaring {@link IOException}; {@link ProtoFile#writeSchema} unwraps them.
+ */
+final class SchemaWriter {
+  private static final String SPACES = "                                ";
+
+  private final Appendable out;
+  private int indent;
+  private boolean lineStart = true;
+  /** Indented blank lines which are written only if more content follows them. */
+  private int blankLines;
+  private int blankLineIndent;
+
+  SchemaWriter(Appendable out) {
+    this.out = checkNotNull(out, "out");
+  }
+
+  SchemaWriter indent() {
+    indent++;
+    return this;
+  }
+
+  SchemaWriter unindent() {
+    if (indent == 0) throw new IllegalStateException("unbalanced unindent()");
+    indent--;
+    return this;
+  }
+
+  SchemaWriter append(char c) {
+    try {
+      if (c == '\n') {
+        newline();
+      } else {
+        if (lineStart) startLine();
+        out.append(c);
+      }
+      return this;
+    } catch (IOException e) {
+      throw new WriteException(e);
+    }
+  }
+
+  SchemaWriter append(int value) {
+    return append(Integer.toString(value));
+  }
+
+  SchemaWriter append(Object value) {
+    return append(value.toString());
+  }
+
+  SchemaWriter append(CharSequence value) {
+    try {
+      int start = 0;
+      for (int i = 0, length = value.length(); i <= length; i++) {
+        if (i == length || value.charAt(i) == '\n') {
+          if (start < i) {
+            if (lineStart) startLine();
+            out.append(value, start, i);
+          }
+          if (i < length) newline();
+          start = i + 1;
+        }
+      }
+      return this;
+    } catch (IOException e) {
+      throw new WriteException(e);
+    }
+  }
+
+  /**
+   * Ends the current line if it has content, and drops any blank lines since the last line with
+   * content. Call this at the end of a value whose text may end with newlines.
+   */
+  SchemaWriter endLine() {
+    if (!lineStart) append('\n');
+    blankLines = 0;
+    return this;
+  }
+
+  /**
+   * Writes each line of {@code documentation} as a {@code //} comment. Like
+   * {@link String#split}, trailing empty lines are omitted.
+   */
+  SchemaWriter documentation(String documentation) {
+    int end = documentation.length();
+    while (end > 0 && documentation.charAt(end - 1) == '\n') {
+      end--;
+    }
+    int start = 0;
+    while (start < end) {
+      int newline = documentation.indexOf('\n', start);
+      if (newline == -1 || newline > end) newline = end;
+      append("// ").append(documentation.subSequence(start, newline)).append('\n');
+      start = newline + 1;
+    }
+    return this;
+  }
+
+  /** Writes {@code type}, which is typically a {@link MessageElement} or {@link EnumElement}. */
+  SchemaWriter type(TypeElement type) {
+    if (type instanceof MessageElement) {
+      ((MessageElement) type).writeSchema(this);
+    } else if (type instanceof EnumElement) {
+      ((EnumElement) type).writeSchema(this);
+    } else {
+      append(type.toSchema());
+    }
+    return this;
+  }
+
+  private void newline() throws IOException {
+    if (lineStart && indent > 0) {
+      if (blankLines++ == 0) blankLineIndent = indent;
+    } else {
+      if (lineStart) writeBlankLines();
+      out.append('\n');
+      lineStart = true;
+    }
+  }
+
+  private void startLine() throws IOException {
+    writeBlankLines();
+    writeIndent(indent);
+    lineStart = false;
+  }
+
+  private void writeBlankLines() throws IOException {
+    for (; blankLines > 0; blankLines--) {
+      writeIndent(blankLineIndent);
+      out.append('\n');
+    }
+  }
+
+  private void writeIndent(int indent) throws IOException {
+    for (int remaining = indent * 2; remaining > 0; remaining -= SPACES.length()) {
+      out.append(SPACES, 0, Math.min(remaining, SPACES.length()));
+    }
+  }
+
+  /** Thrown when the underlying {@link Appendable} fails. */
+  static final class WriteException extends RuntimeException {
+    private static final long serialVersionUID = 0L;
+
+    WriteException(IOException cause) {
+      super(cause);
+    }
+
+    @Override public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+}
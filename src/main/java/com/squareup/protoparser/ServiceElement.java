@@ -6,8 +6,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
 import static com.squareup.protoparser.Utils.checkNotNull;
 import static com.squareup.protoparser.Utils.immutableCopyOf;
 
@@ -19,38 +17,59 @@ public abstract class ServiceElement {
 
   public abstract String name();
   public abstract String qualifiedName();
-  public abstract String documentation();
+  abstract Documentation docs();
   public abstract List<RpcElement> rpcs();
   public abstract List<OptionElement> options();
 
   ServiceElement() {
   }
 
+  public final String documentation() {
+    return docs().text();
+  }
+
+  @Override public final String toString() {
+    return "ServiceElement{"
+        + "name=" + name() + ", "
+        + "qualifiedName=" + qualifiedName() + ", "
+        + "documentation=" + documentation() + ", "
+        + "rpcs=" + rpcs() + ", "
+        + "options=" + options()
+        + "}";
+  }
+
   public final String toSchema() {
     StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, documentation());
-    builder.append("service ")
+    writeSchema(new SchemaWriter(builder));
+    return builder.toString();
+  }
+
+  void writeSchema(SchemaWriter writer) {
+    writer.documentation(documentation())
+        .append("service ")
         .append(name())
         .append(" {");
     if (!options().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (OptionElement option : options()) {
-        appendIndented(builder, option.toSchemaDeclaration());
+        option.writeSchemaDeclaration(writer);
       }
+      writer.unindent();
     }
     if (!rpcs().isEmpty()) {
-      builder.append('\n');
+      writer.append('\n').indent();
       for (RpcElement rpc : rpcs()) {
-        appendIndented(builder, rpc.toSchema());
+        rpc.writeSchema(writer);
       }
+      writer.unindent();
     }
-    return builder.append("}\n").toString();
+    writer.append("}\n");
   }
 
   public static final class Builder {
     private String name;
     private String qualifiedName;
-    private String documentation = "";
+    private Documentation docs = Documentation.EMPTY;
     private final List<OptionElement> options = new ArrayList<>();
     private final List<RpcElement> rpcs = new ArrayList<>();
 
@@ -71,7 +90,12 @@ public abstract class ServiceElement {
     }
 
     public Builder documentation(String documentation) {
-      this.documentation = checkNotNull(documentation, "documentation");
+      this.docs = Documentation.of(checkNotNull(documentation, "documentation"));
+      return this;
+    }
+
+    Builder docs(Documentation docs) {
+      this.docs = checkNotNull(docs, "docs");
       return this;
     }
 
@@ -103,8 +127,8 @@ public abstract class ServiceElement {
       checkNotNull(name, "name");
       checkNotNull(qualifiedName, "qualifiedName");
 
-      return new AutoValue_ServiceElement(name, qualifiedName, documentation, immutableCopyOf(rpcs),
-          immutableCopyOf(options));
+      return new AutoValue_ServiceElement(name, qualifiedName, docs, immutableCopyOf(rpcs),
+          OptionList.copyOf(options));
     }
   }
 }
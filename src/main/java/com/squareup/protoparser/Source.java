@@ -0,0 +1,124 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The text of a {@code .proto} document as seen by the parser. Offsets index either UTF-16 chars or
+ * raw UTF-8 bytes, depending on the implementation. All {@code .proto} syntax is ASCII so the
+ * parser can walk either representation one unit at a time, decoding only the text it extracts.
+ */
+abstract class Source {
+  static Source of(char[] data) {
+    return new CharArraySource(data);
+  }
+
+  /** Returns a source that reads UTF-8 encoded bytes. Offsets and columns count bytes. */
+  static Source utf8(byte[] data) {
+    return new ByteArraySource(data, 0, data.length);
+  }
+
+  /**
+   * Returns a source that reads the UTF-8 encoded bytes between {@code data}'s position and limit.
+   * Offsets and columns count bytes rather than chars.
+   */
+  static Source utf8(ByteBuffer data) {
+    if (data.hasArray()) {
+      return new ByteArraySource(data.array(), data.arrayOffset() + data.position(),
+          data.remaining());
+    }
+    return new ByteBufferSource(data.slice());
+  }
+
+  /** The number of units in this source. */
+  abstract int length();
+
+  /**
+   * Returns the unit at {@code pos}. For UTF-8 sources every byte of a multi-byte sequence is
+   * returned as a char of at least {@code 0x80}, which never matches any syntax character.
+   */
+  abstract char charAt(int pos);
+
+  /** Decodes the units in {@code [start, end)}. */
+  abstract String substring(int start, int end);
+
+  static final class CharArraySource extends Source {
+    private final char[] data;
+
+    CharArraySource(char[] data) {
+      this.data = data;
+    }
+
+    @Override int length() {
+      return data.length;
+    }
+
+    @Override char charAt(int pos) {
+      return data[pos];
+    }
+
+    @Override String substring(int start, int end) {
+      return new String(data, start, end - start);
+    }
+  }
+
+  static final class ByteArraySource extends Source {
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    ByteArraySource(byte[] data, int offset, int length) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override int length() {
+      return length;
+    }
+
+    @Override char charAt(int pos) {
+      return (char) (data[offset + pos] & 0xff);
+    }
+
+    @Override String substring(int start, int end) {
+      return new String(data, offset + start, end - start, UTF_8);
+    }
+  }
+
+  static final class ByteBufferSource extends Source {
+    private final ByteBuffer data;
+    private final int length;
+    /**
+     * Reused to copy bytes out of {@code data} for decoding. Lazy documentation decodes from the
+     * source on whichever thread reads it first, so access is synchronized.
+     */
+    private byte[] scratch = new byte[64];
+
+    ByteBufferSource(ByteBuffer data) {
+      this.data = data;
+      this.length = data.remaining();
+    }
+
+    @Override int length() {
+      return length;
+    }
+
+    @Override char charAt(int pos) {
+      return (char) (data.get(pos) & 0xff);
+    }
+
+    @Override synchronized String substring(int start, int end) {
+      int count = end - start;
+      if (scratch.length < count) {
+        scratch = new byte[Math.max(count, scratch.length * 2)];
+      }
+      for (int i = 0; i < count; i++) {
+        scratch[i] = data.get(start + i);
+      }
+      return new String(scratch, 0, count, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.Arrays;
+
+import static com.squareup.protoparser.Utils.checkArgument;
+import static com.squareup.protoparser.Utils.checkNotNull;
+
+/**
+ * Where each element of a parsed file was declared. An element's span starts at its first token
+ * and ends after its closing {@code ;} or {@code }}, excluding its documentation. Offsets count
+ * the units of the parsed source: characters for text, and bytes for UTF-8 input.
+ *
+ * <p>Spans are recorded for messages, enums, enum constants, fields, oneofs, extension ranges,
+ * extend declarations, services, and RPCs, but not for options. Elements are looked up by
+ * identity, and each span is packed into a single {@code long}, so a map costs two array slots
+ * per element. Request one with {@link ParseOptions.Builder#sourceMap}.
+ */
+public final class SourceMap {
+  private final String filePath;
+  /** The offset of the first character of each line. */
+  private final int[] lineStarts;
+  /** Open-addressed by identity hash with linear probing. The length is a power of two. */
+  private final Object[] elements;
+  /** The span of the element in the same slot of {@code elements}: start in the high half. */
+  private final long[] spans;
+
+  private SourceMap(String filePath, int[] lineStarts, Object[] elements, long[] spans) {
+    this.filePath = filePath;
+    this.lineStarts = lineStarts;
+    this.elements = elements;
+    this.spans = spans;
+  }
+
+  public String filePath() {
+    return filePath;
+  }
+
+  /** Returns true if this map has the span of {@code element}. */
+  public boolean contains(Object element) {
+    return slot(checkNotNull(element, "element")) != -1;
+  }
+
+  /** Returns the offset of the first character of {@code element}. */
+  public int start(Object element) {
+    return (int) (span(element) >>> 32);
+  }
+
+  /** Returns the offset just past the last character of {@code element}. */
+  public int end(Object element) {
+    return (int) span(element);
+  }
+
+  /** Returns the 1-based line number containing {@code offset}. */
+  public int line(int offset) {
+    checkArgument(offset >= 0, "offset < 0: %s", offset);
+    int i = Arrays.binarySearch(lineStarts, offset);
+    return i >= 0 ? i + 1 : -i - 1;
+  }
+
+  /** Returns the 1-based column of {@code offset} within its line. */
+  public int column(int offset) {
+    return offset - lineStarts[line(offset) - 1] + 1;
+  }
+
+  /** Returns a diagnostic reporting {@code message} at the start of {@code element}. */
+  public Diagnostic diagnostic(Object element, String message) {
+    int start = start(element);
+    return Diagnostic.create(filePath, line(start), column(start), message);
+  }
+
+  private long span(Object element) {
+    int slot = slot(checkNotNull(element, "element"));
+    checkArgument(slot != -1, "no span for %s", element);
+    return spans[slot];
+  }
+
+  private int slot(Object element) {
+    int mask = elements.length - 1;
+    int i = System.identityHashCode(element) & mask;
+    while (true) {
+      Object candidate = elements[i];
+      if (candidate == null) return -1;
+      if (candidate == element) return i;
+      i = (i + 1) & mask;
+    }
+  }
+
+  /** Collects spans while a file is parsed. */
+  static final class Builder {
+    private Object[] elements = new Object[64];
+    private long[] spans = new long[64];
+    private int size;
+
+    void add(Object element, int start, int end) {
+      if (++size * 2 > elements.length) {
+        Object[] oldElements = elements;
+        long[] oldSpans = spans;
+        elements = new Object[oldElements.length * 2];
+        spans = new long[oldSpans.length * 2];
+        for (int i = 0; i < oldElements.length; i++) {
+          if (oldElements[i] != null) put(oldElements[i], oldSpans[i]);
+        }
+      }
+      put(element, ((long) start << 32) | (end & 0xffffffffL));
+    }
+
+    private void put(Object element, long span) {
+      int mask = elements.length - 1;
+      int i = System.identityHashCode(element) & mask;
+      while (elements[i] != null) {
+        i = (i + 1) & mask;
+      }
+      elements[i] = element;
+      spans[i] = span;
+    }
+
+    /**
+     * Adds the spans of {@code sourceMap} which start in {@code [start, end)}, moved by
+     * {@code delta}.
+     */
+    void addAll(SourceMap sourceMap, int start, int end, int delta) {
+      for (int i = 0; i < sourceMap.elements.length; i++) {
+        Object element = sourceMap.elements[i];
+        if (element == null) continue;
+        long span = sourceMap.spans[i];
+        int spanStart = (int) (span >>> 32);
+        if (spanStart >= start && spanStart < end) {
+          add(element, spanStart + delta, (int) span + delta);
+        }
+      }
+    }
+
+    /** Returns the spans collected so far. This builder must not be used afterwards. */
+    SourceMap build(String filePath, Source data) {
+      int lineCount = 1;
+      for (int i = 0, length = data.length(); i < length; i++) {
+        if (data.charAt(i) == '\n') lineCount++;
+      }
+      int[] lineStarts = new int[lineCount];
+      for (int i = 0, line = 1, length = data.length(); i < length; i++) {
+        if (data.charAt(i) == '\n') lineStarts[line++] = i + 1;
+      }
+      return new SourceMap(filePath, lineStarts, elements, spans);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of the identifiers read by the parser: labels, type names, field names,
+ * package names, and option names. The parser hashes each identifier in place and only decodes it
+ * the first time it is seen, so files parsed with the same pool share one {@code String} per
+ * distinct identifier.
+ *
+ * <p>The pool also holds canonical instances of simple options, whose value is a string, number,
+ * boolean, enum, or another simple option, like {@code deprecated = true}. Files parsed with the
+ * same pool share one {@link OptionElement} per distinct simple option. Options with a map or
+ * list value are not pooled.
+ *
+ * <p>By default each parse uses its own pool. Share a pool across a batch of files with
+ * {@link ParseOptions.Builder#symbolPool}. A pool retains every identifier it has seen and is safe
+ * for concurrent use: lookups of symbols already in the pool don't lock.
+ */
+public final class SymbolPool {
+  /**
+   * Open-addressed with linear probing. The length is a power of two. Readers probe without
+   * locking; inserts hold the lock and fill a slot in place, or publish a larger copy of the table.
+   * A reader that misses a concurrent insert finds an empty slot and retries under the lock.
+   */
+  private volatile String[] table = new String[64];
+  /** Guarded by this. */
+  private int size;
+  private final ConcurrentMap<OptionElement, OptionElement> options = new ConcurrentHashMap<>();
+
+  /** The number of distinct identifiers in this pool. */
+  public synchronized int size() {
+    return size;
+  }
+
+  /** The number of distinct simple options in this pool. */
+  public int optionCount() {
+    return options.size();
+  }
+
+  /**
+   * Returns the canonical instance of {@code option} if it is simple, or {@code option} itself if
+   * it is not.
+   */
+  OptionElement intern(OptionElement option) {
+    if (!isSimple(option)) return option;
+    OptionElement canonical = options.putIfAbsent(option, option);
+    return canonical != null ? canonical : option;
+  }
+
+  private static boolean isSimple(OptionElement option) {
+    Object value = option.value();
+    return value instanceof String
+        || value instanceof OptionElement && isSimple((OptionElement) value);
+  }
+
+  /** Returns the canonical instance of {@code symbol}. */
+  String intern(String symbol) {
+    String canonical = find(table, symbol);
+    if (canonical != null) return canonical;
+    synchronized (this) {
+      String[] table = this.table;
+      int mask = table.length - 1;
+      int i = symbol.hashCode() & mask;
+      while (true) {
+        String candidate = table[i];
+        if (candidate == null) {
+          return add(i, symbol);
+        }
+        if (candidate.equals(symbol)) {
+          return candidate;
+        }
+        i = (i + 1) & mask;
+      }
+    }
+  }
+
+  /** Returns the instance of {@code symbol} in {@code table}, or null if it isn't there. */
+  private static String find(String[] table, String symbol) {
+    int mask = table.length - 1;
+    int i = symbol.hashCode() & mask;
+    while (true) {
+      String candidate = table[i];
+      if (candidate == null || candidate.equals(symbol)) {
+        return candidate;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  /**
+   * Returns the canonical instance of the ASCII text in {@code [start, end)} of {@code source},
+   * decoding it only if it isn't already in the pool.
+   */
+  String intern(Source source, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + source.charAt(i);
+    }
+    String canonical = find(table, hash, source, start, end);
+    if (canonical != null) return canonical;
+    synchronized (this) {
+      String[] table = this.table;
+      int mask = table.length - 1;
+      int i = hash & mask;
+      while (true) {
+        String candidate = table[i];
+        if (candidate == null) {
+          return add(i, source.substring(start, end));
+        }
+        if (candidate.hashCode() == hash && regionMatches(candidate, source, start, end)) {
+          return candidate;
+        }
+        i = (i + 1) & mask;
+      }
+    }
+  }
+
+  /**
+   * Returns the instance of the text in {@code [start, end)} of {@code source} in {@code table},
+   * or null if it isn't there.
+   */
+  private static String find(String[] table, int hash, Source source, int start, int end) {
+    int mask = table.length - 1;
+    int i = hash & mask;
+    while (true) {
+      String candidate = table[i];
+      if (candidate == null
+          || candidate.hashCode() == hash && regionMatches(candidate, source, start, end)) {
+        return candidate;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  private static boolean regionMatches(String symbol, Source source, int start, int end) {
+    if (symbol.length() != end - start) return false;
+    for (int i = start; i < end; i++) {
+      if (symbol.charAt(i - start) != source.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /** Inserts {@code symbol} at {@code index} of the current table. Call while holding the lock. */
+  private String add(int index, String symbol) {
+    String[] table = this.table;
+    table[index] = symbol;
+    if (++size * 2 > table.length) {
+      String[] newTable = new String[table.length * 2];
+      int mask = newTable.length - 1;
+      for (String s : table) {
+        if (s == null) continue;
+        int i = s.hashCode() & mask;
+        while (newTable[i] != null) {
+          i = (i + 1) & mask;
+        }
+        newTable[i] = s;
+      }
+      this.table = newTable;
+    }
+    return symbol;
+  }
+}
@@ -1,30 +1,35 @@
 package com.squareup.protoparser;
 
 import java.lang.annotation.Retention;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 import static java.lang.annotation.RetentionPolicy.SOURCE;
-import static java.util.Collections.unmodifiableList;
 
 final class Utils {
-  static void appendDocumentation(StringBuilder builder, String documentation) {
-    if (documentation.isEmpty()) {
-      return;
-    }
-    for (String line : documentation.split("\n")) {
-      builder.append("// ").append(line).append('\n');
-    }
-  }
-
-  static void appendIndented(StringBuilder builder, String value) {
-    for (String line : value.split("\n")) {
-      builder.append("  ").append(line).append('\n');
-    }
-  }
+  private static final Class<?> SINGLETON_LIST_CLASS = Collections.singletonList(null).getClass();
 
+  /**
+   * Returns an immutable copy of {@code list}. Empty lists share a single instance, lists of one
+   * element are a singleton list, and longer lists wrap an array of exactly their size. Lists
+   * returned by this method are returned as-is.
+   */
   static <T> List<T> immutableCopyOf(List<T> list) {
-    return unmodifiableList(new ArrayList<>(list));
+    if (list instanceof ImmutableList
+        || list == Collections.EMPTY_LIST
+        || list.getClass() == SINGLETON_LIST_CLASS) {
+      return list;
+    }
+    switch (list.size()) {
+      case 0:
+        return Collections.emptyList();
+      case 1:
+        return Collections.singletonList(list.get(0));
+      default:
+        return new ImmutableList<>(list.toArray());
+    }
   }
 
   static <T> T checkNotNull(T value, String name) {
@@ -43,6 +48,24 @@ final class Utils {
     }
   }
 
+  /** An unmodifiable list backed by an array which no other object references. */
+  private static final class ImmutableList<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] elements;
+
+    ImmutableList(Object[] elements) {
+      this.elements = elements;
+    }
+
+    @SuppressWarnings("unchecked") // Only a List<T> is copied into elements.
+    @Override public T get(int index) {
+      return (T) elements[index];
+    }
+
+    @Override public int size() {
+      return elements.length;
+    }
+  }
+
   @Retention(SOURCE)
   @interface Nullable {
   }
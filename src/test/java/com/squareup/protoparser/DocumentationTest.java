@@ -0,0 +1,176 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DocumentationTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void commentText() {
+    String text = ""
+        + "// Line one.\n"
+        + "//No space.\n"
+        + "\n"
+        + "  /*\n"
+        + "   * Block\n"
+        + "   * comment.\n"
+        + "   */\n"
+        + "//\n"
+        + "/**/";
+    assertThat(Documentation.commentText(Source.of(text.toCharArray()), 0, text.length()))
+        .isEqualTo("Line one.\nNo space.\nBlock\ncomment.\n\n");
+    assertThat(Documentation.commentText(Source.of(text.toCharArray()), 13, 25))
+        .isEqualTo("No space.");
+    assertThat(Documentation.commentText(Source.of(text.toCharArray()), 25, 28)).isEmpty();
+  }
+
+  @Test public void lazyDecodesOnceOnDemand() {
+    CountingSource source = new CountingSource("// Leading.\nmessage A {} // Trailing.\n");
+    Documentation documentation = Documentation.lazy(source, 0, 12, 28, 37);
+    assertThat(source.substringCount).isEqualTo(0);
+    assertThat(documentation.text()).isEqualTo("Leading.\nTrailing.");
+    assertThat(documentation.text()).isEqualTo("Leading.\nTrailing.");
+    assertThat(source.substringCount).isEqualTo(2);
+  }
+
+  @Test public void withTrailing() {
+    Source source = Source.utf8("// Leading.\nA // Trailing.\n".getBytes(UTF_8));
+    assertThat(Documentation.EMPTY.withTrailing(source, 17, 26).text()).isEqualTo("Trailing.");
+    assertThat(Documentation.of("Text.").withTrailing(source, 17, 26).text())
+        .isEqualTo("Text.\nTrailing.");
+    assertThat(Documentation.lazy(source, 0, 12, 12, 12).withTrailing(source, 17, 26).text())
+        .isEqualTo("Leading.\nTrailing.");
+  }
+
+  @Test public void equalityUsesText() {
+    Source source = Source.of("// Text.\n".toCharArray());
+    Documentation lazy = Documentation.lazy(source, 0, 9, 9, 9);
+    Documentation text = Documentation.of("Text.");
+    assertThat(lazy).isEqualTo(text);
+    assertThat(text).isEqualTo(lazy);
+    assertThat(lazy.hashCode()).isEqualTo(text.hashCode());
+    assertThat(lazy.toString()).isEqualTo("Text.");
+    assertThat(Documentation.of("")).isSameAs(Documentation.EMPTY);
+  }
+
+  @Test public void lazyParseMatchesEagerParse() {
+    String schema = ProtoFileGenerator.builder()
+        .seed(16)
+        .maxDocumentationLines(20)
+        .build()
+        .generateSchema("documented.proto");
+    ParseOptions lazy = ParseOptions.builder()
+        .documentationMode(ParseOptions.DocumentationMode.LAZY)
+        .build();
+    assertThat(ProtoParser.parse("documented.proto", schema, lazy))
+        .isEqualTo(ProtoParser.parse("documented.proto", schema));
+  }
+
+  @Test public void lazyDocumentationOutlivesFileContents() throws Exception {
+    String schema = "// Documented.\nmessage A {}\n";
+    File file = temporaryFolder.newFile("documented.proto");
+    Files.write(file.toPath(), schema.getBytes(UTF_8));
+    ParseOptions lazy = ParseOptions.builder()
+        .documentationMode(ParseOptions.DocumentationMode.LAZY)
+        .build();
+    ProtoFile protoFile = ProtoParser.parseUtf8(file.toPath(), lazy);
+    Files.write(file.toPath(), new byte[0]);
+    assertThat(protoFile.typeElements().get(0).documentation()).isEqualTo("Documented.");
+  }
+
+  @Test public void toStringNamesDocumentation() {
+    assertThat(ExtensionsElement.create(1, 2, "Hi").toString())
+        .isEqualTo("ExtensionsElement{documentation=Hi, start=1, end=2}");
+  }
+
+  @Test public void lazyDocumentationFromFileIsThreadSafe() throws Exception {
+    String schema = ProtoFileGenerator.builder()
+        .seed(17)
+        .messageCount(40)
+        .maxDocumentationLines(20)
+        .build()
+        .generateSchema("documented.proto");
+    File file = temporaryFolder.newFile("documented.proto");
+    Files.write(file.toPath(), schema.getBytes(UTF_8));
+    ParseOptions lazy = ParseOptions.builder()
+        .documentationMode(ParseOptions.DocumentationMode.LAZY)
+        .build();
+    final List<FieldElement> lazyFields = fields(ProtoParser.parseUtf8(file.toPath(), lazy));
+    final List<FieldElement> eagerFields = fields(ProtoParser.parse("documented.proto", schema));
+    assertThat(lazyFields).hasSameSizeAs(eagerFields);
+
+    int threadCount = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < threadCount; t++) {
+        final int offset = t * lazyFields.size() / threadCount;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override public Void call() throws Exception {
+            start.await();
+            for (int i = 0; i < lazyFields.size(); i++) {
+              int index = (offset + i) % lazyFields.size();
+              assertThat(lazyFields.get(index).documentation())
+                  .isEqualTo(eagerFields.get(index).documentation());
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static List<FieldElement> fields(ProtoFile protoFile) {
+    final List<FieldElement> result = new ArrayList<>();
+    ProtoVisitor collector = new ProtoVisitor() {
+      @Override public void visitField(FieldElement field) {
+        result.add(field);
+      }
+    };
+    collector.walk(protoFile);
+    return result;
+  }
+
+  static final class CountingSource extends Source {
+    private final String data;
+    int substringCount;
+
+    CountingSource(String data) {
+      this.data = data;
+    }
+
+    @Override int length() {
+      return data.length();
+    }
+
+    @Override char charAt(int pos) {
+      return data.charAt(pos);
+    }
+
+    @Override String substring(int start, int end) {
+      substringCount++;
+      return data.substring(start, end);
+    }
+  }
+}
@@ -13,6 +13,23 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 public final class FieldElementTest {
+  @Test public void childListsAreCompact() {
+    FieldElement.Builder builder = FieldElement.builder()
+        .label(OPTIONAL)
+        .type(STRING)
+        .name("name")
+        .tag(1);
+    assertThat(builder.build().options()).isSameAs(Collections.emptyList());
+
+    OptionElement option = OptionElement.create("deprecated", Kind.BOOLEAN, "true");
+    FieldElement field = builder.addOption(option).build();
+    assertThat(field.options()).isEqualTo(Collections.singletonList(option));
+    assertThat(field.options().getClass())
+        .isSameAs(Collections.singletonList(option).getClass());
+    // Copying a list which is already compact returns it rather than wrapping it again.
+    assertThat(Utils.immutableCopyOf(field.options())).isSameAs(field.options());
+  }
+
   @Test public void field() {
     FieldElement field = FieldElement.builder()
         .label(OPTIONAL)
@@ -0,0 +1,44 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.ScalarType;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class KeywordTest {
+  @Test public void matchesEveryKeyword() {
+    for (Keyword keyword : Keyword.values()) {
+      String text = " " + keyword.text + ";";
+      assertThat(match(text, 1, text.length() - 1)).isSameAs(keyword);
+      assertThat(Keyword.match(Source.utf8(text.getBytes(UTF_8)), 1, text.length() - 1))
+          .isSameAs(keyword);
+    }
+  }
+
+  @Test public void scalarTypes() {
+    for (ScalarType scalarType : ScalarType.values()) {
+      String text = scalarType.toString();
+      assertThat(match(text, 0, text.length()).scalarType).isSameAs(scalarType);
+    }
+    assertThat(Keyword.MESSAGE.scalarType).isNull();
+    assertThat(Keyword.MAP.scalarType).isNull();
+  }
+
+  @Test public void identifiers() {
+    assertThat(match("messages", 0, 8)).isNull();
+    assertThat(match("messages", 0, 7)).isSameAs(Keyword.MESSAGE);
+    assertThat(match("Message", 0, 7)).isNull();
+    assertThat(match("int16", 0, 5)).isNull();
+    assertThat(match("int", 0, 3)).isNull();
+    assertThat(match("_map", 0, 4)).isNull();
+    assertThat(match("zebra", 0, 5)).isNull();
+    assertThat(match("42", 0, 2)).isNull();
+    assertThat(match("a.message", 2, 9)).isSameAs(Keyword.MESSAGE);
+  }
+
+  private static Keyword match(String text, int start, int end) {
+    return Keyword.match(Source.of(text.toCharArray()), start, end);
+  }
+}
@@ -5,8 +5,10 @@ import java.util.Map;
 import org.junit.Test;
 
 import static com.squareup.protoparser.OptionElement.Kind.BOOLEAN;
+import static com.squareup.protoparser.OptionElement.Kind.ENUM;
 import static com.squareup.protoparser.OptionElement.Kind.LIST;
 import static com.squareup.protoparser.OptionElement.Kind.MAP;
+import static com.squareup.protoparser.OptionElement.Kind.NUMBER;
 import static com.squareup.protoparser.OptionElement.Kind.OPTION;
 import static com.squareup.protoparser.OptionElement.Kind.STRING;
 import static com.squareup.protoparser.TestUtils.list;
@@ -141,4 +143,137 @@ public class OptionElementTest {
       assertThat(e).hasMessage("Multiple options match name: one");
     }
   }
+
+  @Test public void typedValues() {
+    String proto = ""
+        + "message Message {\n"
+        + "  optional int32 a = 1 [\n"
+        + "    deprecated = true,\n"
+        + "    default = -12,\n"
+        + "    (hex) = 0x1F,\n"
+        + "    (octal) = 017,\n"
+        + "    (ratio) = 1.5e3,\n"
+        + "    (name) = \"hello\",\n"
+        + "    (kind) = FOO,\n"
+        + "    (foo).bar = false,\n"
+        + "    (map) = { a: \"b\" },\n"
+        + "    (list) = [1, 2]\n"
+        + "  ];\n"
+        + "}\n";
+    ProtoFile protoFile = ProtoParser.parse("test.proto", proto);
+    List<OptionElement> options =
+        ((MessageElement) protoFile.typeElements().get(0)).fields().get(0).options();
+    assertThat(options.get(0).booleanValue()).isTrue();
+    assertThat(options.get(1).longValue()).isEqualTo(-12L);
+    assertThat(options.get(1).doubleValue()).isEqualTo(-12.0);
+    assertThat(options.get(2).longValue()).isEqualTo(31L);
+    assertThat(options.get(3).longValue()).isEqualTo(15L);
+    assertThat(options.get(4).doubleValue()).isEqualTo(1500.0);
+    assertThat(options.get(5).stringValue()).isEqualTo("hello");
+    assertThat(options.get(6).enumValue()).isEqualTo("FOO");
+    assertThat(options.get(7).optionValue().name()).isEqualTo("bar");
+    assertThat(options.get(7).optionValue().booleanValue()).isFalse();
+    assertThat(options.get(8).mapValue()).containsEntry("a", "b");
+    assertThat(options.get(9).listValue()).containsExactly("1", "2");
+    // The raw values are unchanged.
+    assertThat(options.get(0).value()).isEqualTo("true");
+    assertThat(options.get(2).value()).isEqualTo("0x1F");
+  }
+
+  @Test public void numberValues() {
+    assertThat(OptionElement.create("a", NUMBER, "9223372036854775807").longValue())
+        .isEqualTo(Long.MAX_VALUE);
+    assertThat(OptionElement.create("a", NUMBER, "-9223372036854775808").longValue())
+        .isEqualTo(Long.MIN_VALUE);
+    assertThat(OptionElement.create("a", NUMBER, "18446744073709551615").longValue())
+        .isEqualTo(-1L);
+    assertThat(OptionElement.create("a", NUMBER, "0xFFFFFFFFFFFFFFFF").longValue())
+        .isEqualTo(-1L);
+    assertThat(OptionElement.create("a", NUMBER, "01777777777777777777777").longValue())
+        .isEqualTo(-1L);
+    assertThat(OptionElement.create("a", NUMBER, "-0x10").longValue()).isEqualTo(-16L);
+    assertThat(OptionElement.create("a", NUMBER, "0").longValue()).isEqualTo(0L);
+    assertThat(OptionElement.create("a", NUMBER, "0.5").doubleValue()).isEqualTo(0.5);
+    assertThat(OptionElement.create("a", NUMBER, "-inf").doubleValue())
+        .isEqualTo(Double.NEGATIVE_INFINITY);
+    assertThat(OptionElement.create("a", NUMBER, "nan").doubleValue()).isNaN();
+    assertThat(OptionElement.create("a", NUMBER, "1e400").doubleValue())
+        .isEqualTo(Double.POSITIVE_INFINITY);
+  }
+
+  @Test public void nonProtoNumberSyntaxIsRejected() {
+    String[] literals = {
+        "1d", "1f", "0x1p3", " 1 ", "1_000", "+1", "--1", "-+1", "1.5.5", "1e", ".", "0x",
+        "Infinity", "NaN", "-nan1", "08"
+    };
+    for (String literal : literals) {
+      try {
+        OptionElement.create("a", NUMBER, literal).doubleValue();
+        fail(literal);
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessage("a = " + literal + " is not a number");
+      }
+    }
+    assertThat(OptionElement.create("a", NUMBER, "1.").doubleValue()).isEqualTo(1.0);
+    assertThat(OptionElement.create("a", NUMBER, ".5").doubleValue()).isEqualTo(0.5);
+    assertThat(OptionElement.create("a", NUMBER, "-2E+2").doubleValue()).isEqualTo(-200.0);
+    assertThat(OptionElement.create("a", NUMBER, "5e-1").doubleValue()).isEqualTo(0.5);
+  }
+
+  @Test public void integersOutside64BitsAreRejected() {
+    String[] literals = {
+        "18446744073709551616", "0x10000000000000000", "02000000000000000000000",
+        "-9223372036854775809", "-18446744073709551615"
+    };
+    for (String literal : literals) {
+      try {
+        OptionElement.create("a", NUMBER, literal).longValue();
+        fail(literal);
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessage("a = " + literal + " is not an integer");
+      }
+    }
+  }
+
+  @Test public void nonIntegerLongValueThrows() {
+    try {
+      OptionElement.create("a", NUMBER, "1.5").longValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("a = 1.5 is not an integer");
+    }
+    try {
+      OptionElement.create("a", NUMBER, "99999999999999999999").longValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("a = 99999999999999999999 is not an integer");
+    }
+    try {
+      OptionElement.create("a", NUMBER, "09").doubleValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("a = 09 is not a number");
+    }
+    try {
+      OptionElement.create("a", BOOLEAN, "yes").booleanValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("a = yes is not a boolean");
+    }
+  }
+
+  @Test public void wrongKindThrows() {
+    try {
+      OptionElement.create("a", STRING, "true").booleanValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Expected a BOOLEAN option but was a = \"true\"");
+    }
+    try {
+      OptionElement.create("a", ENUM, "FOO").stringValue();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Expected a STRING option but was a = FOO");
+    }
+  }
 }
@@ -0,0 +1,91 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static com.squareup.protoparser.OptionElement.Kind.BOOLEAN;
+import static com.squareup.protoparser.OptionElement.Kind.NUMBER;
+import static com.squareup.protoparser.OptionElement.Kind.STRING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class OptionListTest {
+  @Test public void shortListsAreNotIndexed() {
+    OptionElement deprecated = OptionElement.create("deprecated", BOOLEAN, "true");
+    assertThat(OptionList.copyOf(new ArrayList<OptionElement>()))
+        .isSameAs(Collections.<OptionElement>emptyList());
+    List<OptionElement> single = OptionList.copyOf(Arrays.asList(deprecated));
+    assertThat(single).isNotInstanceOf(OptionList.class).containsExactly(deprecated);
+    assertThat(OptionList.isSet(single, OptionList.DEPRECATED)).isTrue();
+    assertThat(OptionList.isSet(single, OptionList.PACKED)).isFalse();
+  }
+
+  @Test public void findByName() {
+    List<OptionElement> original = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      original.add(OptionElement.create("option" + i, NUMBER, Integer.toString(i)));
+    }
+    List<OptionElement> options = OptionList.copyOf(original);
+    assertThat(options).isInstanceOf(OptionList.class);
+    assertThat(options).isEqualTo(original);
+    assertThat(options.hashCode()).isEqualTo(original.hashCode());
+    assertThat(OptionList.copyOf(options)).isSameAs(options);
+    for (int i = 0; i < 100; i++) {
+      assertThat(OptionElement.findByName(options, "option" + i)).isSameAs(original.get(i));
+    }
+    assertThat(OptionElement.findByName(options, "option100")).isNull();
+  }
+
+  @Test public void duplicatesThrowOnlyWhenFound() {
+    OptionElement one = OptionElement.create("one", STRING, "1");
+    OptionElement two = OptionElement.create("two", STRING, "2");
+    List<OptionElement> options = OptionList.copyOf(Arrays.asList(one, two, one));
+    assertThat(OptionElement.findByName(options, "two")).isSameAs(two);
+    try {
+      OptionElement.findByName(options, "one");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Multiple options match name: one");
+    }
+  }
+
+  @Test public void flags() {
+    List<OptionElement> options = OptionList.copyOf(Arrays.asList(
+        OptionElement.create("deprecated", BOOLEAN, "true"),
+        OptionElement.create("packed", BOOLEAN, "false"),
+        OptionElement.create("allow_alias", STRING, "true")));
+    assertThat(OptionList.isSet(options, OptionList.DEPRECATED)).isTrue();
+    assertThat(OptionList.isSet(options, OptionList.PACKED)).isFalse();
+    assertThat(OptionList.isSet(options, OptionList.ALLOW_ALIAS)).isTrue();
+
+    List<OptionElement> absent = OptionList.copyOf(Arrays.asList(
+        OptionElement.create("default", NUMBER, "1"),
+        OptionElement.create("(custom)", BOOLEAN, "true", true)));
+    assertThat(OptionList.isSet(absent, OptionList.DEPRECATED)).isFalse();
+    assertThat(OptionList.isSet(absent, OptionList.PACKED)).isFalse();
+    assertThat(OptionList.isSet(absent, OptionList.ALLOW_ALIAS)).isFalse();
+  }
+
+  @Test public void duplicateFlagThrows() {
+    FieldElement field = FieldElement.builder()
+        .label(FieldElement.Label.OPTIONAL)
+        .type(DataType.ScalarType.INT32)
+        .name("a")
+        .tag(1)
+        .addOption(OptionElement.create("packed", BOOLEAN, "true"))
+        .addOption(OptionElement.create("deprecated", BOOLEAN, "true"))
+        .addOption(OptionElement.create("deprecated", BOOLEAN, "false"))
+        .build();
+    assertThat(field.isPacked()).isTrue();
+    try {
+      field.isDeprecated();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Multiple options match name: deprecated");
+    }
+  }
+}
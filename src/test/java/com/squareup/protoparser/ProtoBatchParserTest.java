@@ -0,0 +1,144 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoBatchParserTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void parseTree() throws Exception {
+    Path a = write("a.proto", "message A {}\n");
+    Path b = write("nested/b.proto", "package nested;\nmessage B {}\n");
+    Path c = write("nested/deeper/c.proto", "enum C { X = 1; }\n");
+    write("nested/README.md", "message NotAProto {}\n");
+
+    ProtoBatchParser.Result result =
+        ProtoBatchParser.parseAll(temporaryFolder.getRoot().toPath());
+    assertThat(result.errors()).isEmpty();
+    assertThat(result.files().keySet())
+        .containsExactly(a.toString(), b.toString(), c.toString());
+    assertThat(result.files().get(b.toString())).isEqualTo(ProtoParser.parseUtf8(b));
+  }
+
+  @Test public void syntaxErrorsAreCollectedPerFile() throws Exception {
+    Path good = write("good.proto", "message Good {}\n");
+    Path bad = write("bad.proto", "message Bad {\n  optional string = 1;\n}\n");
+    Path worse = write("worse.proto", "message Worse\n");
+    Path missing = temporaryFolder.getRoot().toPath().resolve("missing.proto");
+
+    List<Path> paths = new ArrayList<>();
+    paths.add(good);
+    paths.add(bad);
+    paths.add(worse);
+    paths.add(missing);
+    ProtoBatchParser.Result result = ProtoBatchParser.parseAll(paths);
+
+    assertThat(result.files().keySet()).containsExactly(good.toString());
+    assertThat(result.errors().keySet())
+        .containsExactly(bad.toString(), worse.toString(), missing.toString());
+    assertThat(result.errors().get(bad.toString())).isInstanceOf(IllegalStateException.class)
+        .hasMessage("Syntax error in " + bad + " at 2:19: expected a word");
+    assertThat(result.errors().get(worse.toString())).isInstanceOf(IllegalStateException.class)
+        .hasMessage("Syntax error in " + worse + " at 2:1: unexpected end of file");
+    assertThat(result.errors().get(missing.toString())).isInstanceOf(IOException.class);
+  }
+
+  @Test public void suppliedExecutor() throws Exception {
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      paths.add(write("m" + i + ".proto", "message M" + i + " { optional int32 f = " + i + "; }\n"));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ProtoBatchParser.Result result = new ProtoBatchParser(executor).parse(paths);
+      assertThat(result.files()).hasSize(99);
+      assertThat(result.errors().keySet()).containsExactly(paths.get(0).toString());
+      assertThat(result.errors().get(paths.get(0).toString()))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessage("Illegal tag value: 0");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void sharedSymbolPool() throws Exception {
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      paths.add(write("m" + i + ".proto", "message M" + i + " { optional int32 f = 1; }\n"));
+    }
+    SymbolPool symbolPool = new SymbolPool();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ProtoBatchParser.Result result =
+          new ProtoBatchParser(executor, ParseOptions.builder().symbolPool(symbolPool).build())
+              .parse(paths);
+      assertThat(result.files()).hasSize(10);
+      String fieldName = symbolPool.intern("f");
+      for (ProtoFile protoFile : result.files().values()) {
+        MessageElement message = (MessageElement) protoFile.typeElements().get(0);
+        assertThat(message.fields().get(0).name()).isSameAs(fieldName);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void interruptCancelsPendingParses() throws Exception {
+    List<Path> paths = new ArrayList<>();
+    paths.add(write("a.proto", "message A {}\n"));
+    paths.add(write("b.proto", "message B {}\n"));
+
+    // Occupy the executor's only thread so that the parses stay queued.
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(1, 1, 0, SECONDS, new LinkedBlockingQueue<Runnable>());
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException ignored) {
+        }
+      }
+    });
+    try {
+      Thread.currentThread().interrupt();
+      new ProtoBatchParser(executor).parse(paths);
+      fail();
+    } catch (InterruptedException expected) {
+      assertThat(Thread.interrupted()).isFalse();
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+    assertThat(executor.getQueue()).hasSize(2);
+    for (Runnable task : executor.getQueue()) {
+      assertThat(((Future<?>) task).isCancelled()).isTrue();
+    }
+  }
+
+  private Path write(String name, String content) throws IOException {
+    File file = new File(temporaryFolder.getRoot(), name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    return file.toPath();
+  }
+}
@@ -0,0 +1,207 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoDocumentTest {
+  private static final String PROTO = ""
+      + "package example;\n"
+      + "\n"
+      + "// A message.\n"
+      + "message A {\n"
+      + "  optional string a = 1;\n"
+      + "}\n"
+      + "message B {\n"
+      + "  optional A a = 1;\n"
+      + "  extend A {\n"
+      + "    optional int32 b = 2;\n"
+      + "  }\n"
+      + "}\n"
+      + "enum C {\n"
+      + "  ONE = 1;\n"
+      + "}\n"
+      + "service D {\n"
+      + "  rpc Call (A) returns (B);\n"
+      + "}\n";
+
+  @Test public void parse() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    assertThat(document.data()).isEqualTo(PROTO);
+    assertThat(document.protoFile()).isEqualTo(ProtoParser.parse("test.proto", PROTO));
+  }
+
+  @Test public void editInsideMessageReusesOtherDeclarations() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int offset = PROTO.indexOf("optional string a");
+    ProtoDocument edited = document.edit(offset, "optional string".length(), "repeated int64");
+
+    assertEquivalentToFullParse(edited);
+    ProtoFile before = document.protoFile();
+    ProtoFile after = edited.protoFile();
+    assertThat(after.typeElements().get(0)).isNotEqualTo(before.typeElements().get(0));
+    assertThat(after.typeElements().get(1)).isSameAs(before.typeElements().get(1));
+    assertThat(after.typeElements().get(2)).isSameAs(before.typeElements().get(2));
+    assertThat(after.services().get(0)).isSameAs(before.services().get(0));
+    assertThat(after.extendDeclarations().get(0))
+        .isSameAs(before.extendDeclarations().get(0));
+  }
+
+  @Test public void editDocumentation() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int offset = PROTO.indexOf("A message.");
+    ProtoDocument edited = document.edit(offset, 0, "The first ");
+    assertEquivalentToFullParse(edited);
+    assertThat(((MessageElement) edited.protoFile().typeElements().get(0)).documentation())
+        .isEqualTo("The first A message.");
+    assertThat(edited.protoFile().typeElements().get(1))
+        .isSameAs(document.protoFile().typeElements().get(1));
+  }
+
+  @Test public void trailingCommentAfterDeclaration() {
+    String proto = ""
+        + "message A {\n"
+        + "  optional string a = 1;\n"
+        + "}\n";
+    ProtoDocument document = ProtoDocument.parse("test.proto", proto);
+    int offset = proto.indexOf(";") + 1;
+    assertEquivalentToFullParse(document.edit(offset, 0, " // Trailing."));
+  }
+
+  @Test public void deletingClosingBraceNestsFollowingDeclarations() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int start = PROTO.indexOf("}\nmessage B");
+    int end = PROTO.indexOf("}\nenum C") + 1;
+    String replacement = PROTO.substring(start + 1, end) + "}";
+    ProtoDocument restored = document.edit(start, end - start, replacement);
+    assertEquivalentToFullParse(restored);
+    assertThat(restored.protoFile().typeElements()).hasSize(2);
+    assertThat(restored.protoFile().typeElements().get(0).nestedElements()).hasSize(1);
+    assertThat(restored.protoFile().typeElements().get(1))
+        .isSameAs(document.protoFile().typeElements().get(2));
+  }
+
+  @Test public void editsAcrossDeclarations() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int start = PROTO.indexOf("  optional A a");
+    int end = PROTO.indexOf("  ONE");
+    ProtoDocument edited = document.edit(start, end - start, "}\nenum E {\n");
+    assertEquivalentToFullParse(edited);
+    assertThat(edited.protoFile().typeElements()).hasSize(3);
+    assertThat(edited.protoFile().extendDeclarations()).isEmpty();
+  }
+
+  @Test public void appendAndTruncate() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    ProtoDocument appended = document.edit(PROTO.length(), 0, "message E {}\n");
+    assertEquivalentToFullParse(appended);
+    assertThat(appended.protoFile().typeElements()).hasSize(4);
+
+    ProtoDocument truncated = appended.edit(0, appended.data().length(), "");
+    assertEquivalentToFullParse(truncated);
+    assertEquivalentToFullParse(truncated.edit(0, 0, PROTO));
+  }
+
+  @Test public void editPackageReparsesEverything() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    ProtoDocument edited = document.edit(PROTO.indexOf("example"), "example".length(), "other");
+    assertEquivalentToFullParse(edited);
+    assertThat(edited.protoFile().typeElements().get(2).qualifiedName()).isEqualTo("other.C");
+
+    ProtoDocument removed = document.edit(0, "package example;\n".length(), "");
+    assertEquivalentToFullParse(removed);
+    assertThat(removed.protoFile().typeElements().get(2).qualifiedName()).isEqualTo("C");
+
+    ProtoDocument restored = removed.edit(0, 0, "package other;\n");
+    assertEquivalentToFullParse(restored);
+    assertThat(restored.protoFile().typeElements().get(2).qualifiedName()).isEqualTo("other.C");
+
+    try {
+      document.edit(PROTO.length(), 0, "package other;\n");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Syntax error in test.proto at 19:8: too many package names");
+    }
+  }
+
+  @Test public void editsAfterPackageUsePackage() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int offset = PROTO.indexOf("enum C");
+    ProtoDocument edited = document.edit(offset, 0, "message E {}\n");
+    assertEquivalentToFullParse(edited);
+    assertThat(edited.protoFile().typeElements().get(2).qualifiedName()).isEqualTo("example.E");
+  }
+
+  @Test public void syntaxErrorReportsEditedPosition() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    int offset = PROTO.indexOf("ONE = 1");
+    try {
+      document.edit(offset + "ONE = ".length(), 1, "x");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage(
+          "Syntax error in test.proto at 14:10: expected an integer but was x");
+    }
+    // The original document is unaffected.
+    assertEquivalentToFullParse(document);
+  }
+
+  @Test public void editOutOfRange() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    try {
+      document.edit(PROTO.length() + 1, 0, "");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("offset out of range: " + (PROTO.length() + 1));
+    }
+    try {
+      document.edit(PROTO.length() - 1, 2, "");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("removedLength out of range: 2");
+    }
+  }
+
+  @Test public void replaceEveryCharacterWithItself() {
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO);
+    for (int i = 0; i < PROTO.length(); i++) {
+      ProtoDocument edited = document.edit(i, 1, PROTO.substring(i, i + 1));
+      assertThat(edited.data()).isEqualTo(PROTO);
+      assertThat(edited.protoFile()).isEqualTo(document.protoFile());
+    }
+  }
+
+  @Test public void sourceMapMovesReusedSpans() {
+    ParseOptions options = ParseOptions.builder().sourceMap(true).build();
+    ProtoDocument document = ProtoDocument.parse("test.proto", PROTO, options);
+    int offset = PROTO.indexOf("optional string a");
+    ProtoDocument edited = document.edit(offset, 0, "optional int32 z = 3;\n  ");
+
+    ProtoFile protoFile = edited.protoFile();
+    ProtoFile expected = ProtoParser.parse("test.proto", edited.data(), options);
+    SourceMap sourceMap = protoFile.sourceMap();
+    SourceMap expectedSourceMap = expected.sourceMap();
+    for (int i = 0; i < 3; i++) {
+      TypeElement type = protoFile.typeElements().get(i);
+      TypeElement expectedType = expected.typeElements().get(i);
+      assertThat(sourceMap.start(type)).isEqualTo(expectedSourceMap.start(expectedType));
+      assertThat(sourceMap.end(type)).isEqualTo(expectedSourceMap.end(expectedType));
+      assertThat(sourceMap.line(sourceMap.start(type)))
+          .isEqualTo(expectedSourceMap.line(expectedSourceMap.start(expectedType)));
+    }
+    FieldElement b = ((MessageElement) protoFile.typeElements().get(1)).fields().get(0);
+    assertThat(sourceMap.diagnostic(b, "error"))
+        .isEqualTo(Diagnostic.create("test.proto", 9, 3, "error"));
+    ExtendElement extend = protoFile.extendDeclarations().get(0);
+    assertThat(sourceMap.start(extend)).isEqualTo(edited.data().indexOf("extend A"));
+    ServiceElement service = protoFile.services().get(0);
+    assertThat(sourceMap.end(service)).isEqualTo(edited.data().length() - 1);
+  }
+
+  private static void assertEquivalentToFullParse(ProtoDocument document) {
+    assertThat(document.protoFile())
+        .isEqualTo(ProtoParser.parse(document.filePath(), document.data()));
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoFileCacheTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ProtoFileCache cache = new ProtoFileCache(2);
+
+  @Test public void identicalContentIsShared() {
+    ProtoFile first = cache.parse("a.proto", "message A {}");
+    ProtoFile second = cache.parse("a.proto", "message A {}");
+    ProtoFile third = cache.parseUtf8("a.proto", "message A {}".getBytes(UTF_8));
+    assertThat(second).isSameAs(first);
+    assertThat(third).isSameAs(first);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(2);
+  }
+
+  @Test public void changedContentIsReparsed() {
+    ProtoFile first = cache.parse("a.proto", "message A {}");
+    ProtoFile second = cache.parse("a.proto", "message B {}");
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.typeElements().get(0).name()).isEqualTo("B");
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(0);
+  }
+
+  @Test public void changedContentWithSameLengthAndCrc32IsReparsed() {
+    // These have the same length and CRC32 checksum.
+    ProtoFile first = cache.parse("a.proto", "message MerAswFl {}\n");
+    ProtoFile second = cache.parse("a.proto", "message MghNWDPO {}\n");
+    assertThat(first.typeElements().get(0).name()).isEqualTo("MerAswFl");
+    assertThat(second.typeElements().get(0).name()).isEqualTo("MghNWDPO");
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(0);
+  }
+
+  @Test public void sameContentUnderDifferentNamesIsNotShared() {
+    ProtoFile a = cache.parse("a.proto", "message A {}");
+    ProtoFile b = cache.parse("b.proto", "message A {}");
+    assertThat(a.filePath()).isEqualTo("a.proto");
+    assertThat(b.filePath()).isEqualTo("b.proto");
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test public void leastRecentlyUsedIsEvicted() {
+    ProtoFile a = cache.parse("a.proto", "message A {}");
+    cache.parse("b.proto", "message B {}");
+    assertThat(cache.parse("a.proto", "message A {}")).isSameAs(a);
+    cache.parse("c.proto", "message C {}");
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.evictionCount()).isEqualTo(1);
+
+    assertThat(cache.parse("a.proto", "message A {}")).isSameAs(a);
+    cache.parse("b.proto", "message B {}");
+    assertThat(cache.evictionCount()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(2);
+    assertThat(cache.missCount()).isEqualTo(4);
+  }
+
+  @Test public void evictAll() {
+    ProtoFile a = cache.parse("a.proto", "message A {}");
+    cache.evictAll();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.parse("a.proto", "message A {}")).isNotSameAs(a).isEqualTo(a);
+  }
+
+  @Test public void parseFile() throws Exception {
+    File file = temporaryFolder.newFile("a.proto");
+    Files.write(file.toPath(), "message A {}".getBytes(UTF_8));
+    ProtoFile first = cache.parseUtf8(file.toPath());
+    assertThat(cache.parseUtf8(file.toPath())).isSameAs(first);
+
+    Files.write(file.toPath(), "message B {}".getBytes(UTF_8));
+    assertThat(cache.parseUtf8(file.toPath())).isEqualTo(ProtoParser.parseUtf8(file));
+  }
+
+  @Test public void syntaxErrorsAreNotCached() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.parse("a.proto", "message A {");
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test public void maxSizeMustBePositive() {
+    try {
+      new ProtoFileCache(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("maxSize <= 0: 0");
+    }
+  }
+}
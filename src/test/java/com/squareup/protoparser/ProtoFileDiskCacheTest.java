@@ -0,0 +1,81 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.File;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ProtoFileDiskCacheTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void snapshotsPersistAcrossInstances() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath().resolve("cache");
+    byte[] data = ProtoFileSnapshotTest.PROTO.getBytes(UTF_8);
+    ProtoFile expected = ProtoParser.parseUtf8("snapshot.proto", data);
+
+    ProtoFileDiskCache cold = new ProtoFileDiskCache(directory);
+    assertThat(cold.parseUtf8("snapshot.proto", data)).isEqualTo(expected);
+    assertThat(cold.missCount()).isEqualTo(1);
+    assertThat(cold.hitCount()).isEqualTo(0);
+
+    ProtoFileDiskCache warm = new ProtoFileDiskCache(directory);
+    assertThat(warm.parseUtf8("snapshot.proto", data)).isEqualTo(expected);
+    assertThat(warm.missCount()).isEqualTo(0);
+    assertThat(warm.hitCount()).isEqualTo(1);
+    assertThat(snapshots(directory)).isEqualTo(1);
+  }
+
+  @Test public void changedContentOrNameMisses() throws Exception {
+    ProtoFileDiskCache cache = new ProtoFileDiskCache(temporaryFolder.getRoot().toPath());
+    cache.parseUtf8("a.proto", "message A {}".getBytes(UTF_8));
+    ProtoFile renamed = cache.parseUtf8("b.proto", "message A {}".getBytes(UTF_8));
+    ProtoFile changed = cache.parseUtf8("a.proto", "message B {}".getBytes(UTF_8));
+    assertThat(renamed.filePath()).isEqualTo("b.proto");
+    assertThat(changed.typeElements().get(0).name()).isEqualTo("B");
+    assertThat(cache.missCount()).isEqualTo(3);
+    assertThat(snapshots(cache.directory())).isEqualTo(3);
+  }
+
+  @Test public void corruptSnapshotIsReplaced() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ProtoFileDiskCache cache = new ProtoFileDiskCache(directory);
+    ProtoFile expected = cache.parseUtf8("a.proto", "message A {}".getBytes(UTF_8));
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.snapshot")) {
+      for (Path snapshot : stream) {
+        Files.write(snapshot, new byte[] {1, 2, 3});
+      }
+    }
+
+    assertThat(cache.parseUtf8("a.proto", "message A {}".getBytes(UTF_8))).isEqualTo(expected);
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(cache.parseUtf8("a.proto", "message A {}".getBytes(UTF_8))).isEqualTo(expected);
+    assertThat(cache.hitCount()).isEqualTo(1);
+  }
+
+  @Test public void parseFile() throws Exception {
+    File file = temporaryFolder.newFile("a.proto");
+    Files.write(file.toPath(), "message A {}".getBytes(UTF_8));
+    ProtoFileDiskCache cache = new ProtoFileDiskCache(temporaryFolder.newFolder().toPath());
+    assertThat(cache.parseUtf8(file.toPath())).isEqualTo(ProtoParser.parseUtf8(file));
+    assertThat(cache.parseUtf8(file.toPath())).isEqualTo(ProtoParser.parseUtf8(file));
+    assertThat(cache.hitCount()).isEqualTo(1);
+  }
+
+  private static int snapshots(Path directory) throws Exception {
+    int count = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        assertThat(path.getFileName().toString()).matches("[0-9a-f]{64}\\.snapshot");
+        count++;
+      }
+    }
+    return count;
+  }
+}
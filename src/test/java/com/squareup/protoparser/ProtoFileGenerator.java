@@ -0,0 +1,444 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.MapType;
+import com.squareup.protoparser.DataType.NamedType;
+import com.squareup.protoparser.DataType.ScalarType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static com.squareup.protoparser.Utils.checkArgument;
+
+/**
+ * Generates synthetic {@link ProtoFile} trees for stress tests and benchmarks. Output is
+ * deterministic for a given seed and shape, and every generated file survives a round trip through
+ * {@link ProtoFile#toSchema()} and {@link ProtoParser}: parsing the schema yields an equal file.
+ *
+ * <pre>{@code
+ * ProtoFileGenerator generator = ProtoFileGenerator.builder()
+ *     .seed(42)
+ *     .messageCount(5000)
+ *     .maxNestingDepth(4)
+ *     .build();
+ * String schema = generator.generateSchema("huge.proto");
+ * }</pre>
+ */
+public final class ProtoFileGenerator {
+  private static final ScalarType[] SCALAR_TYPES = {
+      ScalarType.BOOL, ScalarType.BYTES, ScalarType.DOUBLE, ScalarType.FLOAT, ScalarType.FIXED32,
+      ScalarType.FIXED64, ScalarType.INT32, ScalarType.INT64, ScalarType.SFIXED32,
+      ScalarType.SFIXED64, ScalarType.SINT32, ScalarType.SINT64, ScalarType.STRING,
+      ScalarType.UINT32, ScalarType.UINT64
+  };
+  private static final ScalarType[] MAP_KEY_TYPES = {
+      ScalarType.INT32, ScalarType.INT64, ScalarType.STRING, ScalarType.UINT32
+  };
+  private static final FieldElement.Label[] LABELS = {
+      FieldElement.Label.OPTIONAL, FieldElement.Label.REQUIRED, FieldElement.Label.REPEATED
+  };
+  private static final String[] WORDS = {
+      "the", "amount", "of", "money", "merchant", "payment", "is", "returned", "when", "a",
+      "refund", "card", "tender", "server", "client", "identifier", "stable", "for", "life",
+      "ledger", "currency", "created", "at", "in", "milliseconds", "since", "epoch", "optional"
+  };
+  /** First tag of each message's extension range. Field tags are always below it. */
+  private static final int EXTENSIONS_START = 1000;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final long seed;
+  private final int messageCount;
+  private final int maxFields;
+  private final int maxNestingDepth;
+  private final int enumCount;
+  private final int maxEnumConstants;
+  private final int maxOptions;
+  private final int maxOptionDepth;
+  private final int maxDocumentationLines;
+  private final int serviceCount;
+  private final int maxRpcs;
+
+  /** State of the file being generated. */
+  private Random random;
+  private String packageName;
+  private List<String> messageNames;
+  private int nameCount;
+
+  private ProtoFileGenerator(Builder builder) {
+    this.seed = builder.seed;
+    this.messageCount = builder.messageCount;
+    this.maxFields = builder.maxFields;
+    this.maxNestingDepth = builder.maxNestingDepth;
+    this.enumCount = builder.enumCount;
+    this.maxEnumConstants = builder.maxEnumConstants;
+    this.maxOptions = builder.maxOptions;
+    this.maxOptionDepth = builder.maxOptionDepth;
+    this.maxDocumentationLines = builder.maxDocumentationLines;
+    this.serviceCount = builder.serviceCount;
+    this.maxRpcs = builder.maxRpcs;
+  }
+
+  /** Returns the schema text of {@link #generate}. */
+  public String generateSchema(String filePath) {
+    return generate(filePath).toSchema();
+  }
+
+  /** Returns a new file. Calls with the same {@code filePath} return equal files. */
+  public synchronized ProtoFile generate(String filePath) {
+    random = new Random(seed * 31 + filePath.hashCode());
+    packageName = "squareup.generated";
+    messageNames = new ArrayList<>();
+    nameCount = 0;
+
+    ProtoFile.Builder builder = ProtoFile.builder(filePath)
+        .packageName(packageName)
+        .addDependency("squareup/options.proto");
+    builder.addOption(OptionElement.create("java_package", OptionElement.Kind.STRING,
+        "com.squareup.generated"));
+    builder.addOptions(options(false));
+
+    for (int i = 0; i < messageCount; i++) {
+      builder.addType(message(packageName + ".", 0));
+    }
+    for (int i = 0; i < enumCount; i++) {
+      builder.addType(enumElement(packageName + "."));
+    }
+    if (!messageNames.isEmpty()) {
+      for (int i = 0, count = Math.min(2, messageCount); i < count; i++) {
+        builder.addExtendDeclaration(extend(i));
+      }
+    }
+    for (int i = 0; i < serviceCount; i++) {
+      builder.addService(service());
+    }
+    ProtoFile result = builder.build();
+    random = null;
+    messageNames = null;
+    return result;
+  }
+
+  private MessageElement message(String prefix, int depth) {
+    String name = "Message" + nameCount++;
+    String qualifiedName = prefix + name;
+    MessageElement.Builder builder = MessageElement.builder()
+        .name(name)
+        .qualifiedName(qualifiedName)
+        .documentation(documentation())
+        .addOptions(options(false));
+
+    int tag = 1;
+    for (int i = 0, count = random.nextInt(maxFields + 1); i < count; i++) {
+      builder.addField(field(LABELS[random.nextInt(LABELS.length)], "field_" + i, tag++));
+    }
+    if (maxFields > 0 && random.nextInt(4) == 0) {
+      OneOfElement.Builder oneOf = OneOfElement.builder()
+          .name("choice")
+          .documentation(documentation());
+      for (int i = 0, count = 1 + random.nextInt(3); i < count; i++) {
+        oneOf.addField(field(FieldElement.Label.ONE_OF, "choice_" + i, tag++));
+      }
+      builder.addOneOf(oneOf.build());
+    }
+    if (random.nextInt(3) == 0) {
+      builder.addExtensions(ExtensionsElement.create(EXTENSIONS_START, ProtoFile.MAX_TAG_VALUE,
+          documentation()));
+    }
+    if (depth < maxNestingDepth) {
+      for (int i = 0, count = random.nextInt(3); i < count; i++) {
+        builder.addType(message(qualifiedName + ".", depth + 1));
+      }
+    }
+    if (enumCount > 0 && random.nextInt(3) == 0) {
+      builder.addType(enumElement(qualifiedName + "."));
+    }
+
+    // Register after nested types so that fields only refer to messages which already exist.
+    messageNames.add(qualifiedName);
+    return builder.build();
+  }
+
+  private FieldElement field(FieldElement.Label label, String name, int tag) {
+    return FieldElement.builder()
+        .label(label)
+        .type(dataType(label != FieldElement.Label.ONE_OF))
+        .name(name)
+        .tag(tag)
+        .documentation(documentation())
+        .addOptions(options(true))
+        .build();
+  }
+
+  private DataType dataType(boolean permitMap) {
+    int choice = random.nextInt(10);
+    if (choice < 3 && !messageNames.isEmpty()) {
+      return NamedType.create(messageNames.get(random.nextInt(messageNames.size())));
+    }
+    if (choice == 3 && permitMap) {
+      return MapType.create(MAP_KEY_TYPES[random.nextInt(MAP_KEY_TYPES.length)], dataType(false));
+    }
+    return SCALAR_TYPES[random.nextInt(SCALAR_TYPES.length)];
+  }
+
+  /** Returns an enum whose constant names are unique in the file, as C++ scoping requires. */
+  private EnumElement enumElement(String prefix) {
+    String name = "Enum" + nameCount++;
+    EnumElement.Builder builder = EnumElement.builder()
+        .name(name)
+        .qualifiedName(prefix + name)
+        .documentation(documentation())
+        .addOptions(options(false));
+    String constantPrefix = name.toUpperCase(Locale.US) + "_";
+    for (int i = 0, count = 1 + random.nextInt(Math.max(1, maxEnumConstants)); i < count; i++) {
+      EnumConstantElement.Builder constant = EnumConstantElement.builder()
+          .name(constantPrefix + i)
+          .tag(i)
+          .documentation(documentation());
+      for (OptionElement option : options(false)) {
+        constant.addOption(option);
+      }
+      builder.addConstant(constant.build());
+    }
+    return builder.build();
+  }
+
+  private ExtendElement extend(int index) {
+    String target = messageNames.get(random.nextInt(messageNames.size()));
+    ExtendElement.Builder builder = ExtendElement.builder()
+        .name(target)
+        .qualifiedName(target)
+        .documentation(documentation());
+    for (int i = 0, count = 1 + random.nextInt(3); i < count; i++) {
+      int tag = EXTENSIONS_START + index * 100 + i;
+      builder.addField(field(FieldElement.Label.OPTIONAL, "extension_" + index + "_" + i, tag));
+    }
+    return builder.build();
+  }
+
+  private ServiceElement service() {
+    String name = "Service" + nameCount++;
+    ServiceElement.Builder builder = ServiceElement.builder()
+        .name(name)
+        .qualifiedName(packageName + "." + name)
+        .documentation(documentation())
+        .addOptions(options(false));
+    if (!messageNames.isEmpty()) {
+      for (int i = 0, count = random.nextInt(maxRpcs + 1); i < count; i++) {
+        builder.addRpc(RpcElement.builder()
+            .name("Call" + i)
+            .documentation(documentation())
+            .requestType(NamedType.create(messageNames.get(random.nextInt(messageNames.size()))))
+            .responseType(NamedType.create(messageNames.get(random.nextInt(messageNames.size()))))
+            .addOptions(options(false))
+            .build());
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns up to {@link Builder#maxOptions} options. Only options that {@link ProtoFile#toSchema}
+   * can print and {@link ProtoParser} reads back identically are generated: no top-level lists,
+   * and no quotes or backslashes in strings.
+   */
+  private List<OptionElement> options(boolean field) {
+    List<OptionElement> result = new ArrayList<>();
+    for (int i = 0, count = random.nextInt(maxOptions + 1); i < count; i++) {
+      String name = "squareup.option_" + i;
+      switch (random.nextInt(field ? 8 : 6)) {
+        case 0:
+          result.add(OptionElement.create(name, OptionElement.Kind.STRING, words(4), true));
+          break;
+        case 1:
+          result.add(OptionElement.create(name, OptionElement.Kind.BOOLEAN,
+              Boolean.toString(random.nextBoolean()), true));
+          break;
+        case 2:
+          result.add(OptionElement.create(name, OptionElement.Kind.NUMBER, number(), true));
+          break;
+        case 3:
+          result.add(OptionElement.create(name, OptionElement.Kind.ENUM, enumValue(), true));
+          break;
+        case 4:
+          result.add(OptionElement.create(name, OptionElement.Kind.MAP, map(0), true));
+          break;
+        case 5:
+          OptionElement subOption = OptionElement.create("value", OptionElement.Kind.NUMBER,
+              number());
+          result.add(OptionElement.create(name, OptionElement.Kind.OPTION, subOption, true));
+          break;
+        case 6:
+          result.add(OptionElement.create("deprecated", OptionElement.Kind.BOOLEAN, "true"));
+          i = count; // Built-in options may only appear once.
+          break;
+        default:
+          result.add(OptionElement.create("default", OptionElement.Kind.NUMBER, number()));
+          i = count;
+          break;
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Object> map(int depth) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (int i = 0, count = 1 + random.nextInt(4); i < count; i++) {
+      result.put("key_" + i, mapValue(depth));
+    }
+    return result;
+  }
+
+  private Object mapValue(int depth) {
+    int choice = random.nextInt(depth < maxOptionDepth ? 5 : 3);
+    switch (choice) {
+      case 0:
+        return words(3);
+      case 1:
+        return number();
+      case 2:
+        return enumValue();
+      case 3:
+        return map(depth + 1);
+      default:
+        List<Object> list = new ArrayList<>();
+        for (int i = 0, count = 1 + random.nextInt(4); i < count; i++) {
+          list.add(random.nextBoolean() ? words(2) : map(depth + 1));
+        }
+        return list;
+    }
+  }
+
+  private String documentation() {
+    if (maxDocumentationLines == 0 || random.nextInt(3) == 0) {
+      return "";
+    }
+    StringBuilder result = new StringBuilder();
+    for (int i = 0, count = 1 + random.nextInt(maxDocumentationLines); i < count; i++) {
+      if (i > 0) result.append('\n');
+      result.append(words(3 + random.nextInt(10)));
+    }
+    return result.toString();
+  }
+
+  private String words(int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) result.append(' ');
+      result.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return result.toString();
+  }
+
+  private String number() {
+    switch (random.nextInt(3)) {
+      case 0:
+        return Integer.toString(random.nextInt(10000));
+      case 1:
+        return Integer.toString(-random.nextInt(10000));
+      default:
+        return random.nextInt(100) + "." + random.nextInt(100);
+    }
+  }
+
+  private String enumValue() {
+    return WORDS[random.nextInt(WORDS.length)].toUpperCase(Locale.US);
+  }
+
+  public static final class Builder {
+    private long seed;
+    private int messageCount = 100;
+    private int maxFields = 10;
+    private int maxNestingDepth = 2;
+    private int enumCount = 10;
+    private int maxEnumConstants = 20;
+    private int maxOptions = 2;
+    private int maxOptionDepth = 2;
+    private int maxDocumentationLines = 3;
+    private int serviceCount = 2;
+    private int maxRpcs = 5;
+
+    private Builder() {
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /** Number of top-level messages. Each may declare nested messages and enums. */
+    public Builder messageCount(int messageCount) {
+      checkArgument(messageCount >= 0, "messageCount < 0: %s", messageCount);
+      this.messageCount = messageCount;
+      return this;
+    }
+
+    public Builder maxFields(int maxFields) {
+      checkArgument(maxFields >= 0, "maxFields < 0: %s", maxFields);
+      this.maxFields = maxFields;
+      return this;
+    }
+
+    /** Depth below top-level messages to which messages may nest. Zero disables nesting. */
+    public Builder maxNestingDepth(int maxNestingDepth) {
+      checkArgument(maxNestingDepth >= 0, "maxNestingDepth < 0: %s", maxNestingDepth);
+      this.maxNestingDepth = maxNestingDepth;
+      return this;
+    }
+
+    /** Number of top-level enums. Zero also disables enums nested in messages. */
+    public Builder enumCount(int enumCount) {
+      checkArgument(enumCount >= 0, "enumCount < 0: %s", enumCount);
+      this.enumCount = enumCount;
+      return this;
+    }
+
+    public Builder maxEnumConstants(int maxEnumConstants) {
+      checkArgument(maxEnumConstants > 0, "maxEnumConstants <= 0: %s", maxEnumConstants);
+      this.maxEnumConstants = maxEnumConstants;
+      return this;
+    }
+
+    /** Maximum options on each element. */
+    public Builder maxOptions(int maxOptions) {
+      checkArgument(maxOptions >= 0, "maxOptions < 0: %s", maxOptions);
+      this.maxOptions = maxOptions;
+      return this;
+    }
+
+    /** Depth to which map-valued options may nest further maps and lists. */
+    public Builder maxOptionDepth(int maxOptionDepth) {
+      checkArgument(maxOptionDepth >= 0, "maxOptionDepth < 0: %s", maxOptionDepth);
+      this.maxOptionDepth = maxOptionDepth;
+      return this;
+    }
+
+    /** Maximum lines of documentation on each element. Zero disables documentation. */
+    public Builder maxDocumentationLines(int maxDocumentationLines) {
+      checkArgument(maxDocumentationLines >= 0, "maxDocumentationLines < 0: %s",
+          maxDocumentationLines);
+      this.maxDocumentationLines = maxDocumentationLines;
+      return this;
+    }
+
+    public Builder serviceCount(int serviceCount) {
+      checkArgument(serviceCount >= 0, "serviceCount < 0: %s", serviceCount);
+      this.serviceCount = serviceCount;
+      return this;
+    }
+
+    public Builder maxRpcs(int maxRpcs) {
+      checkArgument(maxRpcs >= 0, "maxRpcs < 0: %s", maxRpcs);
+      this.maxRpcs = maxRpcs;
+      return this;
+    }
+
+    public ProtoFileGenerator build() {
+      return new ProtoFileGenerator(this);
+    }
+  }
+}
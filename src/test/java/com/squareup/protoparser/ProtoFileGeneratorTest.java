@@ -0,0 +1,113 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoFileGeneratorTest {
+  @Test public void deterministic() {
+    ProtoFileGenerator generator = ProtoFileGenerator.builder().seed(1).build();
+    ProtoFile first = generator.generate("a.proto");
+    assertThat(generator.generate("a.proto")).isEqualTo(first);
+    assertThat(ProtoFileGenerator.builder().seed(1).build().generate("a.proto")).isEqualTo(first);
+    assertThat(ProtoFileGenerator.builder().seed(2).build().generate("a.proto"))
+        .isNotEqualTo(first);
+    assertThat(generator.generate("b.proto").toSchema()).isNotEqualTo(first.toSchema());
+  }
+
+  @Test public void shape() {
+    ProtoFile protoFile = ProtoFileGenerator.builder()
+        .messageCount(7)
+        .enumCount(3)
+        .serviceCount(2)
+        .maxNestingDepth(0)
+        .build()
+        .generate("shape.proto");
+    assertThat(protoFile.typeElements()).hasSize(10);
+    assertThat(protoFile.services()).hasSize(2);
+    for (TypeElement type : protoFile.typeElements()) {
+      for (TypeElement nested : type.nestedElements()) {
+        assertThat(nested).isInstanceOf(EnumElement.class);
+      }
+    }
+  }
+
+  @Test public void roundTripDefaults() {
+    assertRoundTrip(ProtoFileGenerator.builder().build());
+  }
+
+  @Test public void roundTripManyMessages() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(3)
+        .messageCount(1000)
+        .build());
+  }
+
+  @Test public void roundTripDeepNesting() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(4)
+        .messageCount(20)
+        .maxNestingDepth(8)
+        .build());
+  }
+
+  @Test public void roundTripHugeEnums() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(5)
+        .messageCount(10)
+        .enumCount(50)
+        .maxEnumConstants(2000)
+        .build());
+  }
+
+  @Test public void roundTripHeavyOptions() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(6)
+        .maxOptions(12)
+        .maxOptionDepth(6)
+        .build());
+  }
+
+  @Test public void roundTripLongDocumentation() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(7)
+        .maxDocumentationLines(200)
+        .build());
+  }
+
+  @Test public void roundTripBare() {
+    assertRoundTrip(ProtoFileGenerator.builder()
+        .seed(8)
+        .maxOptions(0)
+        .maxDocumentationLines(0)
+        .enumCount(0)
+        .serviceCount(0)
+        .build());
+  }
+
+  @Test public void invalidShape() {
+    try {
+      ProtoFileGenerator.builder().messageCount(-1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("messageCount < 0: -1");
+    }
+    try {
+      ProtoFileGenerator.builder().maxEnumConstants(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("maxEnumConstants <= 0: 0");
+    }
+  }
+
+  private static void assertRoundTrip(ProtoFileGenerator generator) {
+    ProtoFile expected = generator.generate("generated.proto");
+    String schema = expected.toSchema();
+    assertThat(ProtoParser.parse("generated.proto", schema)).isEqualTo(expected);
+    assertThat(ProtoParser.parseUtf8("generated.proto", schema.getBytes(UTF_8)))
+        .isEqualTo(expected);
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoFileSnapshotTest {
+  static final String PROTO = ""
+      + "syntax = \"proto2\";\n"
+      + "package squareup.snapshot;\n"
+      + "import \"a.proto\";\n"
+      + "import public \"b.proto\";\n"
+      + "option java_package = \"com.squareup.snapshot\";\n"
+      + "option (squareup.structured) = {\n"
+      + "  list: [1, \"two\", {three: 3}]\n"
+      + "  nested: { deep: true, deeper: { deepest: FOO } }\n"
+      + "};\n"
+      + "/** A message with ünicode. */\n"
+      + "message Outer {\n"
+      + "  option (squareup.sub).field = 5;\n"
+      + "  // A field.\n"
+      + "  required map<string, Inner> inners = 1 [deprecated = true, (squareup.x) = \"y\"];\n"
+      + "  repeated int64 numbers = 2 [packed = true];\n"
+      + "  oneof choice {\n"
+      + "    string text = 3;\n"
+      + "    .squareup.snapshot.Outer.Inner inner = 4;\n"
+      + "  }\n"
+      + "  extensions 100 to max;\n"
+      + "  message Inner {\n"
+      + "    optional bytes data = 1 [default = \"\\x00\\xff\"];\n"
+      + "  }\n"
+      + "  enum Kind {\n"
+      + "    option allow_alias = true;\n"
+      + "    UNKNOWN = 0;\n"
+      + "    OTHER = 0 [deprecated = true]; // Trailing.\n"
+      + "  }\n"
+      + "  extend Other {\n"
+      + "    optional string nested_extension = 200;\n"
+      + "  }\n"
+      + "}\n"
+      + "extend Outer {\n"
+      + "  optional int32 extension = 100;\n"
+      + "}\n"
+      + "service Service {\n"
+      + "  option (squareup.service) = LONG;\n"
+      + "  rpc Call (Outer) returns (Outer.Inner) {\n"
+      + "    option (squareup.timeout) = -1.5;\n"
+      + "  }\n"
+      + "  rpc Simple (Outer) returns (Outer);\n"
+      + "}\n";
+
+  @Test public void roundTrip() throws Exception {
+    ProtoFile protoFile = ProtoParser.parse("snapshot.proto", PROTO);
+    ProtoFile decoded = ProtoFileSnapshot.decode(ProtoFileSnapshot.encode(protoFile));
+    assertThat(decoded).isEqualTo(protoFile);
+    assertThat(decoded.toSchema()).isEqualTo(protoFile.toSchema());
+  }
+
+  @Test public void roundTripEmpty() throws Exception {
+    ProtoFile protoFile = ProtoFile.builder("").build();
+    assertThat(ProtoFileSnapshot.decode(ProtoFileSnapshot.encode(protoFile)))
+        .isEqualTo(protoFile);
+  }
+
+  @Test public void truncatedSnapshotThrows() {
+    byte[] snapshot = ProtoFileSnapshot.encode(ProtoParser.parse("snapshot.proto", PROTO));
+    for (int length : new int[] {0, 4, 8, snapshot.length / 2, snapshot.length - 1}) {
+      try {
+        ProtoFileSnapshot.decode(Arrays.copyOf(snapshot, length));
+        fail();
+      } catch (IOException expected) {
+      }
+    }
+  }
+
+  @Test public void trailingDataThrows() {
+    byte[] snapshot = ProtoFileSnapshot.encode(ProtoFile.builder("a.proto").build());
+    try {
+      ProtoFileSnapshot.decode(Arrays.copyOf(snapshot, snapshot.length + 1));
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("trailing data in snapshot");
+    }
+  }
+
+  @Test public void notASnapshotThrows() {
+    try {
+      ProtoFileSnapshot.decode("message Foo {}".getBytes());
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("not a snapshot");
+    }
+  }
+}
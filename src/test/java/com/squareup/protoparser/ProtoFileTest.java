@@ -384,4 +384,42 @@ public class ProtoFileTest {
         + "message Message {}\n";
     assertThat(file.toSchema()).isEqualTo(expected);
   }
+
+  @Test public void getTypeAndService() {
+    ProtoFile file = ProtoParser.parse("file.proto", ""
+        + "package squareup.geology;\n"
+        + "message Period {\n"
+        + "  message Rock {\n"
+        + "    enum Kind {\n"
+        + "      IGNEOUS = 1;\n"
+        + "    }\n"
+        + "  }\n"
+        + "}\n"
+        + "enum Era {\n"
+        + "  PALEOZOIC = 1;\n"
+        + "}\n"
+        + "service Geology {\n"
+        + "  rpc Get (Period) returns (Period);\n"
+        + "}\n");
+    TypeElement period = file.typeElements().get(0);
+    TypeElement rock = period.nestedElements().get(0);
+    assertThat(file.getType("squareup.geology.Period")).isSameAs(period);
+    assertThat(file.getType("squareup.geology.Period.Rock")).isSameAs(rock);
+    assertThat(file.getType("squareup.geology.Period.Rock.Kind"))
+        .isSameAs(rock.nestedElements().get(0));
+    assertThat(file.getType("squareup.geology.Era")).isSameAs(file.typeElements().get(1));
+    assertThat(file.getType("Period")).isNull();
+    assertThat(file.getType("squareup.geology.Geology")).isNull();
+    assertThat(file.getService("squareup.geology.Geology")).isSameAs(file.services().get(0));
+    assertThat(file.getService("squareup.geology.Period")).isNull();
+  }
+
+  @Test public void indexDoesNotAffectEquality() {
+    ProtoFile file = ProtoParser.parse("file.proto", "message Message {}");
+    ProtoFile other = ProtoParser.parse("file.proto", "message Message {}");
+    assertThat(file.getType("Message")).isNotNull();
+    assertThat(file).isEqualTo(other);
+    assertThat(file.hashCode()).isEqualTo(other.hashCode());
+    assertThat(file.toString()).isEqualTo(other.toString());
+  }
 }
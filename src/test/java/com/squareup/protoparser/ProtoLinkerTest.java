@@ -0,0 +1,153 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.NamedType;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoLinkerTest {
+  private final ProtoFile geology = ProtoParser.parse("geology.proto", ""
+      + "package squareup.geology;\n"
+      + "import \"money.proto\";\n"
+      + "message Period {\n"
+      + "  optional Rock rock = 1;\n"
+      + "  optional Era era = 2;\n"
+      + "  optional squareup.common.Money money = 3;\n"
+      + "  optional common.Money relative_money = 4;\n"
+      + "  optional .squareup.common.Money absolute_money = 5;\n"
+      + "  optional Missing missing = 6;\n"
+      + "  optional map<string, Rock> rocks = 7;\n"
+      + "  optional Period.Rock.Kind kind = 8;\n"
+      + "  optional Rock.Missing shadowed = 9;\n"
+      + "  oneof choice {\n"
+      + "    Era era_choice = 10;\n"
+      + "    Unknown unknown = 11;\n"
+      + "  }\n"
+      + "  message Rock {\n"
+      + "    enum Kind {\n"
+      + "      IGNEOUS = 1;\n"
+      + "    }\n"
+      + "    optional Kind kind = 1;\n"
+      + "    optional map<string, Gem> gems = 2;\n"
+      + "  }\n"
+      + "}\n"
+      + "enum Era {\n"
+      + "  PALEOZOIC = 1;\n"
+      + "}\n"
+      + "extend squareup.common.Money {\n"
+      + "  optional Era era = 100;\n"
+      + "}\n"
+      + "extend Nope {\n"
+      + "  optional int32 x = 101;\n"
+      + "}\n"
+      + "service Geology {\n"
+      + "  rpc Get (Period) returns (Nothing);\n"
+      + "}\n");
+  private final ProtoFile money = ProtoParser.parse("money.proto", ""
+      + "package squareup.common;\n"
+      + "message Money {\n"
+      + "  optional int64 cents = 1;\n"
+      + "}\n");
+
+  @Test public void get() {
+    ProtoLinker linker = new ProtoLinker(Arrays.asList(geology, money));
+    assertThat(linker.get("squareup.geology.Period.Rock.Kind").name()).isEqualTo("Kind");
+    assertThat(linker.get("squareup.common.Money")).isSameAs(money.typeElements().get(0));
+    assertThat(linker.get("Money")).isNull();
+    assertThat(linker.get("squareup.common")).isNull();
+  }
+
+  @Test public void resolve() {
+    ProtoLinker linker = new ProtoLinker(Arrays.asList(geology, money));
+    TypeElement period = geology.typeElements().get(0);
+    TypeElement rock = period.nestedElements().get(0);
+    TypeElement kind = rock.nestedElements().get(0);
+    TypeElement era = geology.typeElements().get(1);
+    TypeElement moneyType = money.typeElements().get(0);
+
+    String scope = "squareup.geology.Period.Rock";
+    assertThat(linker.resolve(scope, NamedType.create("Kind"))).isSameAs(kind);
+    assertThat(linker.resolve(scope, NamedType.create("Rock"))).isSameAs(rock);
+    assertThat(linker.resolve(scope, NamedType.create("Period"))).isSameAs(period);
+    assertThat(linker.resolve(scope, NamedType.create("Era"))).isSameAs(era);
+    assertThat(linker.resolve(scope, NamedType.create("Period.Rock.Kind"))).isSameAs(kind);
+    assertThat(linker.resolve(scope, NamedType.create("common.Money"))).isSameAs(moneyType);
+    assertThat(linker.resolve(scope, NamedType.create(".squareup.common.Money")))
+        .isSameAs(moneyType);
+    assertThat(linker.resolve(scope, NamedType.create("Money"))).isNull();
+    assertThat(linker.resolve(scope, NamedType.create(".Period"))).isNull();
+    assertThat(linker.resolve("squareup.common", NamedType.create("Era"))).isNull();
+    assertThat(linker.resolve("", NamedType.create("squareup.geology.Era"))).isSameAs(era);
+  }
+
+  @Test public void innermostScopeShadowsOuterScopes() {
+    ProtoFile protoFile = ProtoParser.parse("shadow.proto", ""
+        + "message A {\n"
+        + "  message B {\n"
+        + "  }\n"
+        + "}\n"
+        + "message B {\n"
+        + "  message C {\n"
+        + "  }\n"
+        + "}\n");
+    ProtoLinker linker = new ProtoLinker(Collections.singletonList(protoFile));
+    TypeElement nestedB = protoFile.typeElements().get(0).nestedElements().get(0);
+    TypeElement topLevelB = protoFile.typeElements().get(1);
+    assertThat(linker.resolve("A", NamedType.create("B"))).isSameAs(nestedB);
+    assertThat(linker.resolve("", NamedType.create("B"))).isSameAs(topLevelB);
+    // The first component resolves to A.B, so B.C is not searched for in the outer scope.
+    assertThat(linker.resolve("A", NamedType.create("B.C"))).isNull();
+    assertThat(linker.resolve("A", NamedType.create(".B.C"))).isNotNull();
+  }
+
+  @Test public void unresolvedReferences() {
+    ProtoLinker linker = new ProtoLinker(Arrays.asList(geology, money));
+    assertThat(linker.unresolvedReferences()).containsExactly(
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Period.missing", NamedType.create("Missing")),
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Period.shadowed", NamedType.create("Rock.Missing")),
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Period.unknown", NamedType.create("Unknown")),
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Period.Rock.gems", NamedType.create("Gem")),
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Nope", NamedType.create("Nope")),
+        ProtoLinker.UnresolvedReference.create("geology.proto",
+            "squareup.geology.Geology.Get", NamedType.create("Nothing")));
+    assertThat(linker.unresolvedReferences().get(0).toString())
+        .isEqualTo("geology.proto: unable to resolve Missing in squareup.geology.Period.missing");
+  }
+
+  @Test public void missingFileIsReported() {
+    ProtoLinker linker = new ProtoLinker(Collections.singletonList(geology));
+    assertThat(linker.unresolvedReferences()).extracting("type").contains(
+        NamedType.create("squareup.common.Money"),
+        NamedType.create("common.Money"),
+        NamedType.create(".squareup.common.Money"));
+  }
+
+  @Test public void fullyLinked() {
+    ProtoLinker linker = new ProtoLinker(Arrays.asList(money, ProtoParser.parse("a.proto", ""
+        + "message A {\n"
+        + "  optional squareup.common.Money money = 1;\n"
+        + "  optional A a = 2;\n"
+        + "}\n")));
+    assertThat(linker.unresolvedReferences()).isEmpty();
+  }
+
+  @Test public void duplicateType() {
+    try {
+      new ProtoLinker(Arrays.asList(money,
+          ProtoParser.parse("other.proto", "package squareup.common; message Money {}")));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage(
+          "Duplicate type squareup.common.Money defined in money.proto and other.proto");
+    }
+  }
+}
@@ -0,0 +1,220 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.NamedType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoListenerTest {
+  private static final String PROTO = ""
+      + "syntax = \"proto2\";\n"
+      + "package example;\n"
+      + "import \"a.proto\";\n"
+      + "import public \"b.proto\";\n"
+      + "option java_package = \"com.example\";\n"
+      + "\n"
+      + "// A message.\n"
+      + "message A {\n"
+      + "  optional string a = 1 [default = \"x\"]; // Trailing.\n"
+      + "  oneof choice {\n"
+      + "    int32 b = 2;\n"
+      + "  }\n"
+      + "  extensions 10 to max;\n"
+      + "  message B {\n"
+      + "    option deprecated = true;\n"
+      + "  }\n"
+      + "}\n"
+      + "enum C {\n"
+      + "  ONE = 1 [deprecated = true];\n"
+      + "}\n"
+      + "extend A {\n"
+      + "  repeated bool c = 11;\n"
+      + "}\n"
+      + "service D {\n"
+      + "  rpc Call (A) returns (A);\n"
+      + "  rpc Stream (A) returns (A) {\n"
+      + "    option deprecated = true;\n"
+      + "  }\n"
+      + "}\n";
+
+  @Test public void events() {
+    EventRecorder recorder = new EventRecorder();
+    ProtoParser.parse("test.proto", PROTO, ParseOptions.DEFAULT, recorder);
+    assertThat(recorder.events).containsExactly(
+        "syntax PROTO_2",
+        "package example",
+        "import a.proto",
+        "import public b.proto",
+        "option java_package",
+        "message A example.A \"A message.\"",
+        "field OPTIONAL string a 1 \"Trailing.\" [default]",
+        "oneof choice \"\"",
+        "field ONE_OF int32 b 2 \"\" []",
+        "end oneof",
+        "extensions 10 536870911 \"\"",
+        "message B example.A.B \"\"",
+        "option deprecated",
+        "end message",
+        "end message",
+        "enum C example.C \"\"",
+        "constant ONE 1 \"\" [deprecated]",
+        "end enum",
+        "extend A example.A \"\"",
+        "field REPEATED bool c 11 \"\" []",
+        "end extend",
+        "service D example.D \"\"",
+        "rpc Call A A \"\"",
+        "end rpc",
+        "rpc Stream A A \"\"",
+        "option deprecated",
+        "end rpc",
+        "end service");
+  }
+
+  @Test public void utf8AndSkippedDocumentation() {
+    EventRecorder recorder = new EventRecorder();
+    ParseOptions options = ParseOptions.builder()
+        .documentationMode(ParseOptions.DocumentationMode.SKIP)
+        .build();
+    ProtoParser.parseUtf8("test.proto", PROTO.getBytes(StandardCharsets.UTF_8), options,
+        recorder);
+    assertThat(recorder.events).contains(
+        "message A example.A \"\"",
+        "field OPTIONAL string a 1 \"\" [default]");
+  }
+
+  @Test public void scanOptions() {
+    final List<Object> javaPackages = new ArrayList<>();
+    ProtoListener listener = new ProtoListener() {
+      @Override public void onOption(OptionElement option) {
+        if (option.name().equals("java_package")) {
+          javaPackages.add(option.value());
+        }
+      }
+    };
+    ProtoParser.parse("test.proto", PROTO, ParseOptions.DEFAULT, listener);
+    assertThat(javaPackages).containsExactly("com.example");
+  }
+
+  @Test public void syntaxErrorStopsEvents() {
+    EventRecorder recorder = new EventRecorder();
+    try {
+      ProtoParser.parse("test.proto", "message A {\n  optional int32 a = ;\n}\n",
+          ParseOptions.DEFAULT, recorder);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage(
+          "Syntax error in test.proto at 2:22: expected a word");
+    }
+    assertThat(recorder.events).containsExactly("message A A \"\"");
+  }
+
+  @Test public void treeBuilderKeepsDeclarationsOfEveryScope() {
+    ProtoFile expected = ProtoParser.parse("test.proto", PROTO);
+    assertThat(expected.typeElements()).hasSize(2);
+    assertThat(expected.extendDeclarations()).hasSize(1);
+    assertThat(expected.services().get(0).rpcs().get(1).options()).hasSize(1);
+  }
+
+  static final class EventRecorder extends ProtoListener {
+    final List<String> events = new ArrayList<>();
+
+    @Override public void onPackage(String packageName) {
+      events.add("package " + packageName);
+    }
+
+    @Override public void onSyntax(ProtoFile.Syntax syntax) {
+      events.add("syntax " + syntax);
+    }
+
+    @Override public void onImport(String dependency, boolean isPublic) {
+      events.add("import " + (isPublic ? "public " : "") + dependency);
+    }
+
+    @Override public void onOption(OptionElement option) {
+      events.add("option " + option.name());
+    }
+
+    @Override public void onMessageStart(String name, String qualifiedName,
+        String documentation) {
+      events.add("message " + name + " " + qualifiedName + " \"" + documentation + "\"");
+    }
+
+    @Override public void onMessageEnd() {
+      events.add("end message");
+    }
+
+    @Override public void onField(FieldElement.Label label, DataType type, String name, int tag,
+        String documentation, List<OptionElement> options) {
+      events.add("field " + label + " " + type + " " + name + " " + tag + " \"" + documentation
+          + "\" " + optionNames(options));
+    }
+
+    @Override public void onOneOfStart(String name, String documentation) {
+      events.add("oneof " + name + " \"" + documentation + "\"");
+    }
+
+    @Override public void onOneOfEnd() {
+      events.add("end oneof");
+    }
+
+    @Override public void onExtensions(int start, int end, String documentation) {
+      events.add("extensions " + start + " " + end + " \"" + documentation + "\"");
+    }
+
+    @Override public void onEnumStart(String name, String qualifiedName, String documentation) {
+      events.add("enum " + name + " " + qualifiedName + " \"" + documentation + "\"");
+    }
+
+    @Override public void onEnumConstant(String name, int tag, String documentation,
+        List<OptionElement> options) {
+      events.add("constant " + name + " " + tag + " \"" + documentation + "\" "
+          + optionNames(options));
+    }
+
+    @Override public void onEnumEnd() {
+      events.add("end enum");
+    }
+
+    @Override public void onExtendStart(String name, String qualifiedName,
+        String documentation) {
+      events.add("extend " + name + " " + qualifiedName + " \"" + documentation + "\"");
+    }
+
+    @Override public void onExtendEnd() {
+      events.add("end extend");
+    }
+
+    @Override public void onServiceStart(String name, String qualifiedName,
+        String documentation) {
+      events.add("service " + name + " " + qualifiedName + " \"" + documentation + "\"");
+    }
+
+    @Override public void onServiceEnd() {
+      events.add("end service");
+    }
+
+    @Override public void onRpcStart(String name, NamedType requestType, NamedType responseType,
+        String documentation) {
+      events.add("rpc " + name + " " + requestType + " " + responseType + " \"" + documentation
+          + "\"");
+    }
+
+    @Override public void onRpcEnd() {
+      events.add("end rpc");
+    }
+
+    private static List<String> optionNames(List<OptionElement> options) {
+      List<String> result = new ArrayList<>();
+      for (OptionElement option : options) {
+        result.add(option.name());
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.squareup.protoparser.TestUtils.list;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ProtoLoaderTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void transitiveImportsAreLoadedOnceDependenciesFirst() throws Exception {
+    Path src = temporaryFolder.newFolder("src").toPath();
+    Path lib = temporaryFolder.newFolder("lib").toPath();
+    write(src, "app/a.proto", ""
+        + "import \"app/b.proto\";\n"
+        + "import public \"lib/c.proto\";\n"
+        + "message A {}\n");
+    write(src, "app/b.proto", "import \"lib/d.proto\";\nmessage B {}\n");
+    write(lib, "lib/c.proto", "import \"lib/d.proto\";\nmessage C {}\n");
+    Path d = write(lib, "lib/d.proto", "message D {}\n");
+    write(lib, "lib/unused.proto", "message Unused {}\n");
+
+    Map<String, ProtoFile> loaded = ProtoLoader.loadAll(list(src, lib), list("app/a.proto"));
+    assertThat(loaded.keySet())
+        .containsExactly("lib/d.proto", "app/b.proto", "lib/c.proto", "app/a.proto");
+    assertThat(loaded.get("lib/d.proto")).isEqualTo(ProtoParser.parseUtf8(d));
+  }
+
+  @Test public void earlierIncludePathsShadowLaterOnes() throws Exception {
+    Path first = temporaryFolder.newFolder("first").toPath();
+    Path second = temporaryFolder.newFolder("second").toPath();
+    Path shadowing = write(first, "a.proto", "message First {}\n");
+    write(second, "a.proto", "message Second {}\n");
+
+    Map<String, ProtoFile> loaded = ProtoLoader.loadAll(list(first, second), list("a.proto"));
+    assertThat(loaded.get("a.proto").filePath()).isEqualTo(shadowing.toString());
+  }
+
+  @Test public void importCycleThrows() throws Exception {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "a.proto", "import \"b.proto\";\n");
+    write(root, "b.proto", "import \"c.proto\";\n");
+    write(root, "c.proto", "import \"b.proto\";\n");
+    try {
+      ProtoLoader.loadAll(list(root), list("a.proto"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Import cycle: b.proto -> c.proto -> b.proto");
+    }
+  }
+
+  @Test public void missingImportThrows() throws Exception {
+    Path root = temporaryFolder.getRoot().toPath();
+    Path a = write(root, "a.proto", "import \"missing.proto\";\n");
+    try {
+      ProtoLoader.loadAll(list(root), list("a.proto"));
+      fail();
+    } catch (FileNotFoundException e) {
+      assertThat(e).hasMessage("Failed to resolve import \"missing.proto\" in " + a
+          + " against include paths [" + root + "]");
+    }
+  }
+
+  @Test public void syntaxErrorThrows() throws Exception {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "a.proto", "import \"b.proto\";\n");
+    Path b = write(root, "b.proto", "message B {\n");
+    try {
+      ProtoLoader.loadAll(list(root), list("a.proto"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Syntax error in " + b + " at 2:1: unexpected end of file");
+    }
+  }
+
+  @Test public void interruptCancelsPendingLoads() throws Exception {
+    Path root = temporaryFolder.getRoot().toPath();
+    write(root, "a.proto", "message A {}\n");
+    write(root, "b.proto", "message B {}\n");
+
+    // Count the imports resolved, which each load does first.
+    final AtomicInteger resolveCount = new AtomicInteger();
+    final Path includePath = root;
+    Path countingIncludePath = (Path) Proxy.newProxyInstance(Path.class.getClassLoader(),
+        new Class<?>[] {Path.class}, new InvocationHandler() {
+          @Override public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            if (method.getName().equals("resolve")) resolveCount.incrementAndGet();
+            return method.invoke(includePath, args);
+          }
+        });
+
+    // Occupy the executor's only thread so that the loads stay queued.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException ignored) {
+        }
+      }
+    });
+    try {
+      Thread.currentThread().interrupt();
+      new ProtoLoader(executor, list(countingIncludePath)).load(list("a.proto", "b.proto"));
+      fail();
+    } catch (InterruptedException expected) {
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+    assertThat(executor.awaitTermination(10, SECONDS)).isTrue();
+    assertThat(resolveCount.get()).isEqualTo(0);
+  }
+
+  private static Path write(Path root, String name, String content) throws IOException {
+    File file = root.resolve(name).toFile();
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+    return file.toPath();
+  }
+}
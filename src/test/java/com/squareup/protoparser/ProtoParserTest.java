@@ -5,11 +5,21 @@ import com.squareup.protoparser.DataType.MapType;
 import com.squareup.protoparser.DataType.NamedType;
 import com.squareup.protoparser.DataType.ScalarType;
 import com.squareup.protoparser.OptionElement.Kind;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import static com.squareup.protoparser.DataType.ScalarType.ANY;
 import static com.squareup.protoparser.DataType.ScalarType.BOOL;
@@ -32,10 +42,34 @@ import static com.squareup.protoparser.FieldElement.Label.OPTIONAL;
 import static com.squareup.protoparser.FieldElement.Label.REQUIRED;
 import static com.squareup.protoparser.TestUtils.list;
 import static com.squareup.protoparser.TestUtils.map;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
+@RunWith(Parameterized.class)
 public final class ProtoParserTest {
+  /**
+   * Every case is parsed from UTF-16 chars and from UTF-8 bytes, which must agree exactly, and
+   * again with documentation decoded lazily.
+   */
+  @Parameters(name = "{0}")
+  public static List<Object[]> parameters() {
+    return Arrays.asList(new Object[] {Backend.CHARS}, new Object[] {Backend.UTF8},
+        new Object[] {Backend.UTF8_LAZY_DOCUMENTATION});
+  }
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Backend backend;
+
+  public ProtoParserTest(Backend backend) {
+    this.backend = backend;
+  }
+
+  private ProtoFile parse(String name, String data) {
+    return backend.parse(name, data);
+  }
+
   @Test public void typeParsing() {
     String proto = ""
         + "message Types {\n"
@@ -115,14 +149,14 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("test.proto", proto)).isEqualTo(expected);
+    assertThat(parse("test.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void singleLineComment() {
     String proto = ""
         + "// Test all the things!\n"
         + "message Test {}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo("Test all the things!");
   }
@@ -135,7 +169,7 @@ public final class ProtoParserTest {
     String expected = ""
         + "Test all\n"
         + "the things!";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo(expected);
   }
@@ -144,7 +178,7 @@ public final class ProtoParserTest {
     String proto = ""
         + "/** Test */\n"
         + "message Test {}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo("Test");
   }
@@ -161,7 +195,7 @@ public final class ProtoParserTest {
         + "Test\n"
         + "\n"
         + "Foo";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo(expected);
   }
@@ -178,7 +212,7 @@ public final class ProtoParserTest {
         + "  All\n"
         + "    The\n"
         + "      Things!";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo(expected);
   }
@@ -197,7 +231,7 @@ public final class ProtoParserTest {
         + "  All\n"
         + "    The\n"
         + "      Things!";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo(expected);
   }
@@ -217,7 +251,7 @@ public final class ProtoParserTest {
         + "All\n"
         + "The\n"
         + "Things!";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     TypeElement type = parsed.typeElements().get(0);
     assertThat(type.documentation()).isEqualTo(expected);
   }
@@ -228,7 +262,7 @@ public final class ProtoParserTest {
         + "message Test {\n"
         + "  optional string name = 1; // Test all the things!\n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     MessageElement message = (MessageElement) parsed.typeElements().get(0);
     FieldElement field = message.fields().get(0);
     assertThat(field.documentation()).isEqualTo("Test all the things!");
@@ -240,7 +274,7 @@ public final class ProtoParserTest {
         + "  // Test all...\n"
         + "  optional string name = 1; // ...the things!\n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     MessageElement message = (MessageElement) parsed.typeElements().get(0);
     FieldElement field = message.fields().get(0);
     assertThat(field.documentation()).isEqualTo("Test all...\n...the things!");
@@ -252,7 +286,7 @@ public final class ProtoParserTest {
         + "  optional string first_name = 1; // Testing!\n"
         + "  optional string last_name = 2;\n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     MessageElement message = (MessageElement) parsed.typeElements().get(0);
     FieldElement field1 = message.fields().get(0);
     assertThat(field1.documentation()).isEqualTo("Testing!");
@@ -265,7 +299,7 @@ public final class ProtoParserTest {
         + "enum Test {\n"
         + "  FOO = 1; // Test all the things!   \n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     EnumElement enumElement = (EnumElement) parsed.typeElements().get(0);
     EnumConstantElement value = enumElement.constants().get(0);
     assertThat(value.documentation()).isEqualTo("Test all the things!");
@@ -277,7 +311,7 @@ public final class ProtoParserTest {
         + "  FOO = 1; /* Test all the things!  */  \n"
         + "  BAR = 2;/*Test all the things!*/\n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     EnumElement enumElement = (EnumElement) parsed.typeElements().get(0);
     EnumConstantElement foo = enumElement.constants().get(0);
     assertThat(foo.documentation()).isEqualTo("Test all the things!");
@@ -291,7 +325,7 @@ public final class ProtoParserTest {
         + "  FOO = 1; /* Test all the things!   \n"
         + "}";
     try {
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage(
           "Syntax error in test.proto at 2:38: trailing comment must be closed on the same line");
@@ -304,7 +338,7 @@ public final class ProtoParserTest {
         + "  FOO = 1; /* Test all the things! */ BAR = 2;\n"
         + "}";
     try {
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage(
           "Syntax error in test.proto at 2:40: no syntax may follow trailing comment");
@@ -317,7 +351,7 @@ public final class ProtoParserTest {
         + "  FOO = 1; /\n"
         + "}";
     try {
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage(
           "Syntax error in test.proto at 2:12: expected '//' or '/*'");
@@ -330,7 +364,7 @@ public final class ProtoParserTest {
         + "  // Test all...\n"
         + "  FOO = 1; // ...the things!\n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     EnumElement enumElement = (EnumElement) parsed.typeElements().get(0);
     EnumConstantElement value = enumElement.constants().get(0);
     assertThat(value.documentation()).isEqualTo("Test all...\n...the things!");
@@ -342,7 +376,7 @@ public final class ProtoParserTest {
         + "  // Test all...\n"
         + "  FOO = 1; //      \n"
         + "}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     EnumElement enumElement = (EnumElement) parsed.typeElements().get(0);
     EnumConstantElement value = enumElement.constants().get(0);
     assertThat(value.documentation()).isEqualTo("Test all...");
@@ -350,7 +384,7 @@ public final class ProtoParserTest {
 
   @Test public void syntaxNotRequired() throws Exception {
     String proto = "message Foo {}";
-    ProtoFile parsed = ProtoParser.parse("test.proto", proto);
+    ProtoFile parsed = parse("test.proto", proto);
     assertThat(parsed.syntax()).isNull();
   }
 
@@ -362,7 +396,7 @@ public final class ProtoParserTest {
         .syntax(ProtoFile.Syntax.PROTO_3)
         .addType(MessageElement.builder().name("Foo").build())
         .build();
-    assertThat(ProtoParser.parse("test.proto", proto)).isEqualTo(expected);
+    assertThat(parse("test.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void invalidSyntaxValueThrows() throws Exception {
@@ -370,7 +404,7 @@ public final class ProtoParserTest {
         + "syntax = \"proto4\";\n"
         + "message Foo {}";
     try {
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage(
           "Syntax error in test.proto at 1:18: 'syntax' must be 'proto2' or 'proto3'. Found: proto4");
@@ -383,7 +417,7 @@ public final class ProtoParserTest {
         + "  syntax = \"proto2\";\n"
         + "}";
     try {
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage("Syntax error in test.proto at 2:9: 'syntax' in MESSAGE");
     }
@@ -419,7 +453,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("search.proto", proto)).isEqualTo(expected);
+    assertThat(parse("search.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void parseMessageAndOneOf() throws Exception {
@@ -457,7 +491,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("search.proto", proto)).isEqualTo(expected);
+    assertThat(parse("search.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void parseEnum() throws Exception {
@@ -491,7 +525,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("waffles.proto", proto)).isEqualTo(expected);
+    assertThat(parse("waffles.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void parseEnumWithOptions() throws Exception {
@@ -533,7 +567,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("waffles.proto", proto)).isEqualTo(expected);
+    assertThat(parse("waffles.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void packageDeclaration() throws Exception {
@@ -555,7 +589,7 @@ public final class ProtoParserTest {
             .build())
         .addOption(OptionElement.create("java_package", Kind.STRING, "com.google.protobuf"))
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void nestingInMessage() throws Exception {
@@ -600,7 +634,7 @@ public final class ProtoParserTest {
         .addExtensions(ExtensionsElement.create(1000, ProtoFile.MAX_TAG_VALUE))
         .build();
     ProtoFile expected = ProtoFile.builder("descriptor.proto").addType(messageElement).build();
-    ProtoFile actual = ProtoParser.parse("descriptor.proto", proto);
+    ProtoFile actual = parse("descriptor.proto", proto);
     assertThat(actual).isEqualTo(expected);
   }
 
@@ -647,7 +681,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("chickens.proto", proto)).isEqualTo(expected);
+    assertThat(parse("chickens.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void imports() throws Exception {
@@ -655,7 +689,7 @@ public final class ProtoParserTest {
     ProtoFile expected = ProtoFile.builder("descriptor.proto")
         .addDependency("src/test/resources/unittest_import.proto")
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void publicImports() throws Exception {
@@ -663,7 +697,7 @@ public final class ProtoParserTest {
     ProtoFile expected = ProtoFile.builder("descriptor.proto")
         .addPublicDependency("src/test/resources/unittest_import.proto")
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void extend() throws Exception {
@@ -680,7 +714,7 @@ public final class ProtoParserTest {
                 FieldElement.builder().label(OPTIONAL).type(INT32).name("bar").tag(126).build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void extendInMessage() throws Exception {
@@ -702,7 +736,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void extendInMessageWithPackage() throws Exception {
@@ -728,7 +762,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void fqcnExtendInMessage() throws Exception {
@@ -750,7 +784,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void fqcnExtendInMessageWithPackage() throws Exception {
@@ -775,7 +809,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void defaultFieldWithParen() throws Exception {
@@ -795,7 +829,7 @@ public final class ProtoParserTest {
 
     TypeElement messageElement = MessageElement.builder().name("Foo").addField(field).build();
     ProtoFile expected = ProtoFile.builder("descriptor.proto").addType(messageElement).build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto))
+    assertThat(parse("descriptor.proto", proto))
         .isEqualTo(expected);
   }
 
@@ -820,7 +854,7 @@ public final class ProtoParserTest {
 
     TypeElement messageElement = MessageElement.builder().name("Foo").addField(field).build();
     ProtoFile expected = ProtoFile.builder("foo.proto").addType(messageElement).build();
-    assertThat(ProtoParser.parse("foo.proto", proto))
+    assertThat(parse("foo.proto", proto))
         .isEqualTo(expected);
   }
 
@@ -831,7 +865,7 @@ public final class ProtoParserTest {
         + "[default = \"\\xW\"];\n"
         + "}";
     try {
-      ProtoParser.parse("foo.proto", proto);
+      parse("foo.proto", proto);
       fail();
     } catch (IllegalStateException e) {
       assertThat(e.getMessage().contains("expected a digit after \\x or \\X"));
@@ -873,7 +907,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("descriptor.proto", proto)).isEqualTo(expected);
+    assertThat(parse("descriptor.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void serviceTypesMustBeNamed() {
@@ -882,7 +916,7 @@ public final class ProtoParserTest {
           + "service SearchService {\n"
           + "  rpc Search (string) returns (SearchResponse);"
           + "}";
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
       fail();
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage("Syntax error in test.proto at 2:21: expected message but was string");
@@ -892,7 +926,7 @@ public final class ProtoParserTest {
           + "service SearchService {\n"
           + "  rpc Search (SearchRequest) returns (string);"
           + "}";
-      ProtoParser.parse("test.proto", proto);
+      parse("test.proto", proto);
       fail();
     } catch (IllegalStateException e) {
       assertThat(e).hasMessage("Syntax error in test.proto at 2:45: expected message but was string");
@@ -922,7 +956,58 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("hex.proto", proto)).isEqualTo(expected);
+    assertThat(parse("hex.proto", proto)).isEqualTo(expected);
+  }
+
+  @Test public void integerRadixesAndSigns() throws Exception {
+    String proto = ""
+        + "enum Numbers {\n"
+        + "  DECIMAL = 10;\n"
+        + "  HEX = 0x1f;\n"
+        + "  OCTAL = 017;\n"
+        + "  ZERO = 0;\n"
+        + "  NEGATIVE = -3;\n"
+        + "  NEGATIVE_HEX = -0x10;\n"
+        + "  MIN = -2147483648;\n"
+        + "  MAX = 0x7fffffff;\n"
+        + "}\n"
+        + "message Ranges {\n"
+        + "  extensions 0x10 to 020;\n"
+        + "  extensions 100 to max;\n"
+        + "}\n";
+    ProtoFile protoFile = parse("numbers.proto", proto);
+    EnumElement numbers = (EnumElement) protoFile.typeElements().get(0);
+    List<Integer> tags = new ArrayList<>();
+    for (EnumConstantElement constant : numbers.constants()) {
+      tags.add(constant.tag());
+    }
+    assertThat(tags).containsExactly(10, 31, 15, 0, -3, -16, Integer.MIN_VALUE,
+        Integer.MAX_VALUE);
+    MessageElement ranges = (MessageElement) protoFile.typeElements().get(1);
+    assertThat(ranges.extensions()).containsExactly(
+        ExtensionsElement.create(16, 16),
+        ExtensionsElement.create(100, ProtoFile.MAX_TAG_VALUE));
+  }
+
+  @Test public void invalidIntegers() throws Exception {
+    String[] invalid = {
+        "2147483648", "-2147483649", "0x80000000", "0x", "-", "08", "0xg", "1.5", "12abc", "max"
+    };
+    for (String value : invalid) {
+      try {
+        parse("test.proto", "enum E {\n  A = " + value + ";\n}\n");
+        fail(value);
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessage("Syntax error in test.proto at 2:" + (7 + value.length())
+            + ": expected an integer but was " + value);
+      }
+    }
+    try {
+      parse("test.proto", "message M {\n  extensions 1 to 2x;\n}\n");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Syntax error in test.proto at 2:21: expected an integer but was 2x");
+    }
   }
 
   @Test public void structuredOption() throws Exception {
@@ -964,7 +1049,7 @@ public final class ProtoParserTest {
     expectedBuilder.addOption(OptionElement.create("squareup.four", Kind.MAP, option_four_map, true));
 
     ProtoFile expected = ProtoFile.builder("exotic.proto").addType(expectedBuilder.build()).build();
-    assertThat(ProtoParser.parse("exotic.proto", proto)).isEqualTo(expected);
+    assertThat(parse("exotic.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void optionsWithNestedMapsAndTrailingCommas() throws Exception {
@@ -994,7 +1079,7 @@ public final class ProtoParserTest {
     TypeElement expected =
         MessageElement.builder().name("StructuredOption").addField(field).build();
     ProtoFile protoFile = ProtoFile.builder("nestedmaps.proto").addType(expected).build();
-    assertThat(ProtoParser.parse("nestedmaps.proto", proto))
+    assertThat(parse("nestedmaps.proto", proto))
         .isEqualTo(protoFile);
   }
 
@@ -1137,7 +1222,7 @@ public final class ProtoParserTest {
                 .build())
             .build())
         .build();
-    assertThat(ProtoParser.parse("test.proto", proto)).isEqualTo(expected);
+    assertThat(parse("test.proto", proto)).isEqualTo(expected);
   }
 
   @Test public void extensionWithNestedMessage() throws Exception {
@@ -1169,7 +1254,7 @@ public final class ProtoParserTest {
 
     TypeElement expected = MessageElement.builder().name("Foo").addField(field).build();
     ProtoFile protoFile = ProtoFile.builder("foo.proto").addType(expected).build();
-    assertThat(ProtoParser.parse("foo.proto", proto)).isEqualTo(protoFile);
+    assertThat(parse("foo.proto", proto)).isEqualTo(protoFile);
   }
 
   @Test public void noWhitespace() {
@@ -1185,6 +1270,242 @@ public final class ProtoParserTest {
                     .build())
                 .build())
         .build();
-    assertThat(ProtoParser.parse("test.proto", proto)).isEqualTo(expected);
+    assertThat(parse("test.proto", proto)).isEqualTo(expected);
+  }
+
+  @Test public void nonAsciiStringsAndComments() throws Exception {
+    String proto = ""
+        + "/**\n"
+        + " * Caf\u00e9 \u2615 orders.\n"
+        + " */\n"
+        + "message CafeOrder {\n"
+        + "  // \u00bfQu\u00e9? \ud83c\udf70\n"
+        + "  optional string name = 1 [default = \"cr\u00e8me \\\u00e9 \\x41\"];"
+        + " // \u00e0 la carte\n"
+        + "}\n";
+    ProtoFile parsed = parse("order.proto", proto);
+    MessageElement message = (MessageElement) parsed.typeElements().get(0);
+    assertThat(message.documentation()).isEqualTo("Caf\u00e9 \u2615 orders.");
+    FieldElement field = message.fields().get(0);
+    assertThat(field.documentation()).isEqualTo("\u00bfQu\u00e9? \ud83c\udf70\n\u00e0 la carte");
+    assertThat(field.getDefault().value()).isEqualTo("cr\u00e8me \u00e9 A");
+
+    byte[] utf8 = proto.getBytes(UTF_8);
+    assertThat(ProtoParser.parseUtf8("order.proto", new ByteArrayInputStream(utf8)))
+        .isEqualTo(parsed);
+    ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length);
+    direct.put(utf8).flip();
+    assertThat(ProtoParser.parseUtf8("order.proto", direct)).isEqualTo(parsed);
+    assertThat(direct.position()).isEqualTo(0);
+
+    File file = temporaryFolder.newFile("order.proto");
+    Files.write(file.toPath(), utf8);
+    ProtoFile parsedFile = ProtoParser.parse(file.getPath(), proto);
+    assertThat(ProtoParser.parseUtf8(file)).isEqualTo(parsedFile);
+    assertThat(ProtoParser.parseUtf8(file.toPath())).isEqualTo(parsedFile);
+  }
+
+  @Test public void skipDocumentation() {
+    String proto = ""
+        + "// File.\n"
+        + "/** Message. */\n"
+        + "message A { // Trailing.\n"
+        + "  /*\n"
+        + "   * Field.\n"
+        + "   */\n"
+        + "  optional int32 a = 1; /* Trailing. */ optional int32 b = 2;\n"
+        + "  // Unterminated /* in a line comment.\n"
+        + "}\n"
+        + "enum E {\n"
+        + "  X = 1; // Trailing.\n"
+        + "}\n"
+        + "// End of file.";
+    ParseOptions options = ParseOptions.builder()
+        .documentationMode(ParseOptions.DocumentationMode.SKIP)
+        .build();
+    ProtoFile expected = ProtoFile.builder("test.proto")
+        .addType(MessageElement.builder()
+            .name("A")
+            .addField(FieldElement.builder().label(OPTIONAL).type(INT32).name("a").tag(1).build())
+            .addField(FieldElement.builder().label(OPTIONAL).type(INT32).name("b").tag(2).build())
+            .build())
+        .addType(EnumElement.builder()
+            .name("E")
+            .addConstant(EnumConstantElement.builder().name("X").tag(1).build())
+            .build())
+        .build();
+    assertThat(backend.parse("test.proto", proto, options)).isEqualTo(expected);
+
+    try {
+      backend.parse("test.proto", "message A {}\n/* Unterminated.", options);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Syntax error in test.proto at 2:16: unterminated comment");
+    }
+  }
+
+  @Test public void recoveringReportsEveryError() {
+    String proto = ""
+        + "message A {\n"
+        + "  optional int32 a = 1;\n"
+        + "  optional int32 b = ;\n"
+        + "  optional int32 c = 3;\n"
+        + "}\n"
+        + "message B C {\n"
+        + "  optional int32 x = 1;\n"
+        + "}\n"
+        + "enum E {\n"
+        + "  ONE = 1;\n"
+        + "  TWO 2;\n"
+        + "  THREE = 3;\n"
+        + "}\n"
+        + "message D {\n"
+        + "  optional int32 d = 1\n"
+        + "}\n"
+        + "service S {\n"
+        + "  rpc Foo (A) returns A;\n"
+        + "  rpc Bar (A) returns (A);\n"
+        + "}\n";
+    ProtoParser.Result result = backend.parseRecovering("test.proto", proto);
+    assertThat(result.diagnostics()).containsExactly(
+        Diagnostic.create("test.proto", 3, 22, "expected a word"),
+        Diagnostic.create("test.proto", 6, 12, "expected '{'"),
+        Diagnostic.create("test.proto", 11, 8, "expected '='"),
+        Diagnostic.create("test.proto", 16, 2, "expected ';'"),
+        Diagnostic.create("test.proto", 18, 24, "expected '('"));
+    assertThat(result.diagnostics().get(0).toString())
+        .isEqualTo("test.proto at 3:22: expected a word");
+
+    NamedType a = NamedType.create("A");
+    ProtoFile expected = ProtoFile.builder("test.proto")
+        .addType(MessageElement.builder()
+            .name("A")
+            .addField(FieldElement.builder().label(OPTIONAL).type(INT32).name("a").tag(1).build())
+            .addField(FieldElement.builder().label(OPTIONAL).type(INT32).name("c").tag(3).build())
+            .build())
+        .addType(EnumElement.builder()
+            .name("E")
+            .addConstant(EnumConstantElement.builder().name("ONE").tag(1).build())
+            .addConstant(EnumConstantElement.builder().name("THREE").tag(3).build())
+            .build())
+        .addType(MessageElement.builder().name("D").build())
+        .addService(ServiceElement.builder()
+            .name("S")
+            .addRpc(RpcElement.builder().name("Bar").requestType(a).responseType(a).build())
+            .build())
+        .build();
+    assertThat(result.protoFile()).isEqualTo(expected);
+
+    try {
+      parse("test.proto", proto);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Syntax error in test.proto at 3:22: expected a word");
+    }
+  }
+
+  @Test public void recoveringReportsEndOfFileOnce() {
+    String proto = ""
+        + "message A {\n"
+        + "  message B {\n"
+        + "    optional int32 x = 1;\n";
+    ProtoParser.Result result = backend.parseRecovering("test.proto", proto);
+    assertThat(result.diagnostics()).containsExactly(
+        Diagnostic.create("test.proto", 4, 1, "unexpected end of file"));
+    MessageElement a = (MessageElement) result.protoFile().typeElements().get(0);
+    MessageElement b = (MessageElement) a.nestedElements().get(0);
+    assertThat(b.qualifiedName()).isEqualTo("A.B");
+    assertThat(b.fields()).hasSize(1);
+  }
+
+  @Test public void recoveringSkipsStrayBracesStringsAndComments() {
+    String proto = ""
+        + "}\n"
+        + "option (a) = \"{;}\" garbage /* ; } */ \"x\";\n"
+        + "message A {}\n";
+    ProtoParser.Result result = backend.parseRecovering("test.proto", proto);
+    assertThat(result.diagnostics()).containsExactly(
+        Diagnostic.create("test.proto", 1, 1, "expected a word"),
+        Diagnostic.create("test.proto", 2, 21, "expected ';'"));
+    assertThat(result.protoFile().typeElements()).hasSize(1);
+    assertThat(result.protoFile().options()).isEmpty();
+  }
+
+  @Test public void recoveringReportsValidationErrors() {
+    String proto = ""
+        + "message A {\n"
+        + "  optional int32 a = 1;\n"
+        + "  optional int32 b = 1;\n"
+        + "}\n"
+        + "message B {}\n";
+    ProtoParser.Result result = backend.parseRecovering("test.proto", proto);
+    assertThat(result.diagnostics()).containsExactly(
+        Diagnostic.create("test.proto", 4, 2, "Duplicate tag 1 in A"));
+    assertThat(result.protoFile().typeElements()).hasSize(1);
+    assertThat(result.protoFile().typeElements().get(0).name()).isEqualTo("B");
+  }
+
+  @Test public void recoveringWithoutErrors() throws Exception {
+    String proto = ProtoFileGenerator.builder().build().generateSchema("generated.proto");
+    ProtoParser.Result result = backend.parseRecovering("generated.proto", proto);
+    assertThat(result.diagnostics()).isEmpty();
+    assertThat(result.protoFile()).isEqualTo(parse("generated.proto", proto));
+
+    File file = temporaryFolder.newFile("generated.proto");
+    Files.write(file.toPath(), proto.getBytes(UTF_8));
+    assertThat(ProtoParser.parseUtf8Recovering(file.toPath()).protoFile())
+        .isEqualTo(ProtoParser.parseUtf8(file.toPath()));
+  }
+
+  enum Backend {
+    CHARS {
+      @Override ProtoFile parse(String name, String data) {
+        return ProtoParser.parse(name, data);
+      }
+
+      @Override ProtoFile parse(String name, String data, ParseOptions options) {
+        return ProtoParser.parse(name, data, options);
+      }
+
+      @Override ProtoParser.Result parseRecovering(String name, String data) {
+        return ProtoParser.parseRecovering(name, data);
+      }
+    },
+    UTF8 {
+      @Override ProtoFile parse(String name, String data) {
+        return ProtoParser.parseUtf8(name, data.getBytes(UTF_8));
+      }
+
+      @Override ProtoFile parse(String name, String data, ParseOptions options) {
+        return ProtoParser.parseUtf8(name, data.getBytes(UTF_8), options);
+      }
+
+      @Override ProtoParser.Result parseRecovering(String name, String data) {
+        return ProtoParser.parseUtf8Recovering(name, data.getBytes(UTF_8));
+      }
+    },
+    UTF8_LAZY_DOCUMENTATION {
+      private final ParseOptions options = ParseOptions.builder()
+          .documentationMode(ParseOptions.DocumentationMode.LAZY)
+          .build();
+
+      @Override ProtoFile parse(String name, String data) {
+        return ProtoParser.parseUtf8(name, data.getBytes(UTF_8), options);
+      }
+
+      @Override ProtoFile parse(String name, String data, ParseOptions options) {
+        return ProtoParser.parseUtf8(name, data.getBytes(UTF_8), options);
+      }
+
+      @Override ProtoParser.Result parseRecovering(String name, String data) {
+        return ProtoParser.parseUtf8Recovering(name, data.getBytes(UTF_8));
+      }
+    };
+
+    abstract ProtoFile parse(String name, String data);
+
+    abstract ProtoFile parse(String name, String data, ParseOptions options);
+
+    abstract ProtoParser.Result parseRecovering(String name, String data);
   }
 }
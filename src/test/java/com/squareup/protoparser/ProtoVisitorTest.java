@@ -0,0 +1,147 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ProtoVisitorTest {
+  private static final String PROTO = ""
+      + "package example;\n"
+      + "message A {\n"
+      + "  optional string a = 1;\n"
+      + "  oneof choice {\n"
+      + "    int32 b = 2;\n"
+      + "  }\n"
+      + "  extensions 10 to 20;\n"
+      + "  message B {\n"
+      + "    optional bool c = 1;\n"
+      + "  }\n"
+      + "  enum C {\n"
+      + "    ONE = 1;\n"
+      + "  }\n"
+      + "}\n"
+      + "message D {\n"
+      + "  optional A d = 1;\n"
+      + "}\n"
+      + "extend A {\n"
+      + "  optional int32 e = 10;\n"
+      + "}\n"
+      + "service E {\n"
+      + "  rpc Call (A) returns (D);\n"
+      + "}\n";
+
+  @Test public void visitsInDeclarationOrder() {
+    Recorder recorder = new Recorder();
+    recorder.walk(ProtoParser.parse("test.proto", PROTO));
+    assertThat(recorder.visits).containsExactly(
+        "message example.A",
+        "field a",
+        "oneof choice",
+        "field b",
+        "extensions 10",
+        "message example.A.B",
+        "field c",
+        "enum example.A.C",
+        "constant ONE",
+        "message example.D",
+        "field d",
+        "extend example.A",
+        "field e",
+        "service example.E",
+        "rpc Call");
+  }
+
+  @Test public void pruning() {
+    Recorder recorder = new Recorder() {
+      @Override public boolean visitMessage(MessageElement message) {
+        super.visitMessage(message);
+        return !message.name().equals("A");
+      }
+
+      @Override public boolean visitService(ServiceElement service) {
+        super.visitService(service);
+        return false;
+      }
+    };
+    recorder.walk(ProtoParser.parse("test.proto", PROTO));
+    assertThat(recorder.visits).containsExactly(
+        "message example.A",
+        "message example.D",
+        "field d",
+        "extend example.A",
+        "field e",
+        "service example.E");
+  }
+
+  @Test public void walkType() {
+    TypeElement b = ProtoParser.parse("test.proto", PROTO).typeElements().get(0)
+        .nestedElements().get(0);
+    Recorder recorder = new Recorder();
+    recorder.walk(b);
+    assertThat(recorder.visits).containsExactly("message example.A.B", "field c");
+  }
+
+  @Test public void deepNestingDoesNotOverflow() {
+    int depth = 100000;
+    MessageElement message = MessageElement.builder().name("M").qualifiedName("M").build();
+    for (int i = 1; i < depth; i++) {
+      message = MessageElement.builder().name("M").qualifiedName("M").addType(message).build();
+    }
+    final int[] count = new int[1];
+    new ProtoVisitor() {
+      @Override public boolean visitMessage(MessageElement message) {
+        count[0]++;
+        return true;
+      }
+    }.walk(message);
+    assertThat(count[0]).isEqualTo(depth);
+  }
+
+  static class Recorder extends ProtoVisitor {
+    final List<String> visits = new ArrayList<>();
+
+    @Override public boolean visitMessage(MessageElement message) {
+      visits.add("message " + message.qualifiedName());
+      return true;
+    }
+
+    @Override public void visitField(FieldElement field) {
+      visits.add("field " + field.name());
+    }
+
+    @Override public boolean visitOneOf(OneOfElement oneOf) {
+      visits.add("oneof " + oneOf.name());
+      return true;
+    }
+
+    @Override public void visitExtensions(ExtensionsElement extensions) {
+      visits.add("extensions " + extensions.start());
+    }
+
+    @Override public boolean visitEnum(EnumElement enumElement) {
+      visits.add("enum " + enumElement.qualifiedName());
+      return true;
+    }
+
+    @Override public void visitEnumConstant(EnumConstantElement constant) {
+      visits.add("constant " + constant.name());
+    }
+
+    @Override public boolean visitExtend(ExtendElement extend) {
+      visits.add("extend " + extend.qualifiedName());
+      return true;
+    }
+
+    @Override public boolean visitService(ServiceElement service) {
+      visits.add("service " + service.qualifiedName());
+      return true;
+    }
+
+    @Override public void visitRpc(RpcElement rpc) {
+      visits.add("rpc " + rpc.name());
+    }
+  }
+}
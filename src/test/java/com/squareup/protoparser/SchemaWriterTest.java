@@ -0,0 +1,120 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class SchemaWriterTest {
+  @Test public void indentationTest() {
+    String input = "Foo\nBar\nBaz";
+    String expected = "  Foo\n  Bar\n  Baz\n";
+    StringBuilder builder = new StringBuilder();
+    new SchemaWriter(builder).indent().append(input).endLine();
+    assertThat(builder.toString()).isEqualTo(expected);
+  }
+
+  @Test public void documentationTest() {
+    String input = "Foo\nBar\nBaz";
+    String expected = ""
+        + "// Foo\n"
+        + "// Bar\n"
+        + "// Baz\n";
+    StringBuilder builder = new StringBuilder();
+    new SchemaWriter(builder).documentation(input);
+    assertThat(builder.toString()).isEqualTo(expected);
+  }
+
+  @Test public void documentationOmitsTrailingEmptyLines() {
+    StringBuilder builder = new StringBuilder();
+    new SchemaWriter(builder).documentation("\nFoo\n\nBar\n\n").documentation("\n");
+    assertThat(builder.toString()).isEqualTo("// \n// Foo\n// \n// Bar\n");
+  }
+
+  @Test public void blankLinesAreIndented() {
+    StringBuilder builder = new StringBuilder();
+    new SchemaWriter(builder)
+        .append("a {\n")
+        .indent().append("b\n\nc\n")
+        .indent().append("\nd\n")
+        .unindent().unindent().append("}\n\n");
+    assertThat(builder.toString()).isEqualTo("a {\n  b\n  \n  c\n    \n    d\n}\n\n");
+  }
+
+  @Test public void endLineDropsTrailingBlankLines() {
+    StringBuilder builder = new StringBuilder();
+    new SchemaWriter(builder)
+        .indent().append("a\n\n\n").endLine()
+        .append("b").endLine()
+        .append("c\n").endLine()
+        .unindent().append("d");
+    assertThat(builder.toString()).isEqualTo("  a\n  b\n  c\nd");
+  }
+
+  @Test public void unbalancedUnindent() {
+    try {
+      new SchemaWriter(new StringBuilder()).indent().unindent().unindent();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("unbalanced unindent()");
+    }
+  }
+
+  @Test public void writeSchemaMatchesToSchema() throws IOException {
+    ProtoFile protoFile = ProtoFileGenerator.builder()
+        .seed(9)
+        .maxNestingDepth(6)
+        .maxOptionDepth(4)
+        .build()
+        .generate("generated.proto");
+    StringWriter writer = new StringWriter();
+    protoFile.writeSchema(writer);
+    assertThat(writer.toString()).isEqualTo(protoFile.toSchema());
+  }
+
+  @Test public void writeSchemaDeeplyNested() throws IOException {
+    MessageElement message = MessageElement.builder().name("M0").build();
+    for (int i = 1; i < 200; i++) {
+      message = MessageElement.builder().name("M" + i).addType(message).build();
+    }
+    ProtoFile protoFile = ProtoFile.builder("").addType(message).build();
+    StringWriter writer = new StringWriter();
+    protoFile.writeSchema(writer);
+    String schema = writer.toString();
+    assertThat(schema).isEqualTo(protoFile.toSchema());
+    assertThat(schema).contains("\n" + repeat("  ", 199) + "message M0 {}\n");
+  }
+
+  @Test public void writeSchemaPropagatesIoException() {
+    final IOException failure = new IOException("boom");
+    Writer writer = new Writer() {
+      @Override public void write(char[] chars, int offset, int length) throws IOException {
+        throw failure;
+      }
+
+      @Override public void flush() {
+      }
+
+      @Override public void close() {
+      }
+    };
+    try {
+      ProtoFile.builder("test.proto").build().writeSchema(writer);
+      fail();
+    } catch (IOException e) {
+      assertThat(e).isSameAs(failure);
+    }
+  }
+
+  private static String repeat(String s, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      result.append(s);
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class SourceMapTest {
+  private static final ParseOptions OPTIONS = ParseOptions.builder().sourceMap(true).build();
+
+  private static final String PROTO = ""
+      + "package example;\n"
+      + "\n"
+      + "// A message.\n"
+      + "message A {\n"
+      + "  optional string a = 1; // Trailing.\n"
+      + "  oneof choice {\n"
+      + "    int32 b = 2;\n"
+      + "  }\n"
+      + "  extensions 10 to max;\n"
+      + "  extend B {\n"
+      + "    repeated bool c = 11;\n"
+      + "  }\n"
+      + "}\n"
+      + "enum B {\n"
+      + "  ONE = 1;\n"
+      + "}\n"
+      + "service C {\n"
+      + "  rpc Call (A) returns (A);\n"
+      + "}\n";
+
+  @Test public void spansOfEveryElement() {
+    ProtoFile protoFile = ProtoParser.parse("test.proto", PROTO, OPTIONS);
+    SourceMap sourceMap = protoFile.sourceMap();
+    assertThat(sourceMap.filePath()).isEqualTo("test.proto");
+
+    MessageElement a = (MessageElement) protoFile.typeElements().get(0);
+    assertSpan(sourceMap, a, "message A {", "  }\n}");
+    assertThat(sourceMap.line(sourceMap.start(a))).isEqualTo(4);
+    assertThat(sourceMap.column(sourceMap.start(a))).isEqualTo(1);
+
+    FieldElement field = a.fields().get(0);
+    assertSpan(sourceMap, field, "optional string", "= 1;");
+    assertThat(sourceMap.line(sourceMap.start(field))).isEqualTo(5);
+    assertThat(sourceMap.column(sourceMap.start(field))).isEqualTo(3);
+
+    OneOfElement oneOf = a.oneOfs().get(0);
+    assertSpan(sourceMap, oneOf, "oneof", "b = 2;\n  }");
+    assertSpan(sourceMap, oneOf.fields().get(0), "int32 b", "= 2;");
+    assertSpan(sourceMap, a.extensions().get(0), "extensions", "max;");
+
+    ExtendElement extend = protoFile.extendDeclarations().get(0);
+    assertSpan(sourceMap, extend, "extend B", "11;\n  }");
+    assertSpan(sourceMap, extend.fields().get(0), "repeated bool", "11;");
+
+    EnumElement b = (EnumElement) protoFile.typeElements().get(1);
+    assertSpan(sourceMap, b, "enum B", "1;\n}");
+    assertSpan(sourceMap, b.constants().get(0), "ONE", "= 1;");
+
+    ServiceElement c = protoFile.services().get(0);
+    assertSpan(sourceMap, c, "service C", "(A);\n}");
+    assertSpan(sourceMap, c.rpcs().get(0), "rpc", "(A);");
+  }
+
+  @Test public void utf8OffsetsCountBytes() {
+    String proto = "// éé\nmessage A {}\n";
+    ProtoFile protoFile = ProtoParser.parseUtf8("test.proto",
+        proto.getBytes(StandardCharsets.UTF_8), OPTIONS);
+    SourceMap sourceMap = protoFile.sourceMap();
+    TypeElement a = protoFile.typeElements().get(0);
+    assertThat(sourceMap.start(a)).isEqualTo(8);
+    assertThat(sourceMap.end(a)).isEqualTo(20);
+    assertThat(sourceMap.line(sourceMap.start(a))).isEqualTo(2);
+    assertThat(sourceMap.column(sourceMap.end(a))).isEqualTo(13);
+  }
+
+  @Test public void diagnostic() {
+    ProtoFile protoFile = ProtoParser.parse("test.proto", PROTO, OPTIONS);
+    FieldElement field = ((MessageElement) protoFile.typeElements().get(0)).fields().get(0);
+    assertThat(protoFile.sourceMap().diagnostic(field, "unused field"))
+        .isEqualTo(Diagnostic.create("test.proto", 5, 3, "unused field"));
+  }
+
+  @Test public void unknownElement() {
+    SourceMap sourceMap = ProtoParser.parse("test.proto", PROTO, OPTIONS).sourceMap();
+    TypeElement other = ProtoParser.parse("test.proto", PROTO).typeElements().get(0);
+    assertThat(sourceMap.contains(other)).isFalse();
+    try {
+      sourceMap.start(other);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessageStartingWith("no span for ");
+    }
+  }
+
+  @Test public void absentByDefault() {
+    assertThat(ProtoParser.parse("test.proto", PROTO).sourceMap()).isNull();
+  }
+
+  @Test public void notPartOfValue() {
+    ProtoFile withSourceMap = ProtoParser.parse("test.proto", PROTO, OPTIONS);
+    ProtoFile withoutSourceMap = ProtoParser.parse("test.proto", PROTO);
+    assertThat(withSourceMap).isEqualTo(withoutSourceMap);
+    assertThat(withSourceMap.hashCode()).isEqualTo(withoutSourceMap.hashCode());
+  }
+
+  @Test public void manyElements() {
+    StringBuilder proto = new StringBuilder("message A {\n");
+    for (int i = 1; i <= 1000; i++) {
+      proto.append("  optional int32 f").append(i).append(" = ").append(i).append(";\n");
+    }
+    proto.append("}\n");
+    ProtoFile protoFile = ProtoParser.parse("test.proto", proto.toString(), OPTIONS);
+    SourceMap sourceMap = protoFile.sourceMap();
+    MessageElement a = (MessageElement) protoFile.typeElements().get(0);
+    for (int i = 0; i < 1000; i++) {
+      FieldElement field = a.fields().get(i);
+      assertThat(sourceMap.line(sourceMap.start(field))).isEqualTo(i + 2);
+      assertThat(sourceMap.end(field) - sourceMap.start(field))
+          .isEqualTo(("optional int32 f" + (i + 1) + " = " + (i + 1) + ";").length());
+    }
+  }
+
+  /** Asserts that the text of {@code element} starts and ends with the given text. */
+  private static void assertSpan(SourceMap sourceMap, Object element, String startText,
+      String endText) {
+    String text = PROTO.substring(sourceMap.start(element), sourceMap.end(element));
+    assertThat(text).startsWith(startText).endsWith(endText);
+  }
+}
@@ -0,0 +1,228 @@
+// Copyright 2015 Square, Inc.
+package com.squareup.protoparser;
+
+import com.squareup.protoparser.DataType.NamedType;
+import com.squareup.protoparser.OptionElement.Kind;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class SymbolPoolTest {
+  @Test public void internString() {
+    SymbolPool pool = new SymbolPool();
+    String optional = pool.intern(new String("optional"));
+    assertThat(pool.intern(new String("optional"))).isSameAs(optional);
+    assertThat(pool.intern("int32")).isNotEqualTo(optional);
+    assertThat(pool.size()).isEqualTo(2);
+  }
+
+  @Test public void internSourceSlice() {
+    SymbolPool pool = new SymbolPool();
+    String name = pool.intern("name");
+    char[] chars = "optional string name = 1;".toCharArray();
+    assertThat(pool.intern(Source.of(chars), 16, 20)).isSameAs(name);
+    byte[] bytes = "name".getBytes(UTF_8);
+    assertThat(pool.intern(Source.utf8(bytes), 0, 4)).isSameAs(name);
+    assertThat(pool.intern(Source.of(chars), 16, 19)).isEqualTo("nam");
+    assertThat(pool.intern(Source.of(chars), 0, 0)).isEqualTo("");
+    assertThat(pool.size()).isEqualTo(3);
+  }
+
+  @Test public void growth() {
+    SymbolPool pool = new SymbolPool();
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      symbols.add(pool.intern("symbol" + i));
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertThat(pool.intern("symbol" + i)).isSameAs(symbols.get(i));
+    }
+    assertThat(pool.size()).isEqualTo(10000);
+  }
+
+  @Test public void internOption() {
+    SymbolPool pool = new SymbolPool();
+    OptionElement deprecated = OptionElement.create("deprecated", Kind.BOOLEAN, "true");
+    assertThat(pool.intern(OptionElement.create("deprecated", Kind.BOOLEAN, "true")))
+        .isSameAs(pool.intern(deprecated));
+    assertThat(pool.intern(deprecated)).isNotSameAs(deprecated);
+    OptionElement parenthesized = OptionElement.create("deprecated", Kind.BOOLEAN, "true", true);
+    assertThat(pool.intern(parenthesized)).isSameAs(parenthesized);
+
+    OptionElement nested = OptionElement.create("foo.bar", Kind.OPTION,
+        OptionElement.create("baz", Kind.NUMBER, "12"), true);
+    assertThat(pool.intern(nested)).isSameAs(nested);
+    assertThat(pool.intern(OptionElement.create("foo.bar", Kind.OPTION,
+        OptionElement.create("baz", Kind.NUMBER, "12"), true))).isSameAs(nested);
+    assertThat(pool.optionCount()).isEqualTo(3);
+  }
+
+  @Test public void mapAndListOptionsAreNotPooled() {
+    SymbolPool pool = new SymbolPool();
+    OptionElement map = OptionElement.create("map", Kind.MAP,
+        new LinkedHashMap<>(Collections.singletonMap("a", "b")));
+    OptionElement list = OptionElement.create("list", Kind.LIST,
+        new ArrayList<>(Collections.singletonList("a")));
+    assertThat(pool.intern(map)).isSameAs(map);
+    assertThat(pool.intern(list)).isSameAs(list);
+    assertThat(pool.intern(OptionElement.create("map", Kind.MAP,
+        new LinkedHashMap<>(Collections.singletonMap("a", "b"))))).isNotSameAs(map);
+    assertThat(pool.optionCount()).isEqualTo(0);
+  }
+
+  @Test public void parsedOptionsAreShared() {
+    String proto = ""
+        + "option java_package = \"com.example\";\n"
+        + "message A {\n"
+        + "  optional int32 a = 1 [deprecated = true, (foo.bar).baz = 12];\n"
+        + "  optional int32 b = 2 [deprecated = true, (foo.bar).baz = 12];\n"
+        + "  optional int32 c = 3 [(list) = [1, 2]];\n"
+        + "  optional int32 d = 4 [(list) = [1, 2]];\n"
+        + "}\n"
+        + "enum E {\n"
+        + "  X = 1 [deprecated = true];\n"
+        + "}\n";
+    ParseOptions options = ParseOptions.builder().symbolPool(new SymbolPool()).build();
+    ProtoFile first = ProtoParser.parse("a.proto", proto, options);
+    ProtoFile second = ProtoParser.parseUtf8("b.proto", proto.getBytes(UTF_8), options);
+
+    MessageElement message = (MessageElement) first.typeElements().get(0);
+    List<FieldElement> fields = message.fields();
+    assertThat(fields.get(1).options().get(0)).isSameAs(fields.get(0).options().get(0));
+    assertThat(fields.get(1).options().get(1)).isSameAs(fields.get(0).options().get(1));
+    assertThat(fields.get(3).options().get(0)).isNotSameAs(fields.get(2).options().get(0));
+    assertThat(fields.get(3).options().get(0)).isEqualTo(fields.get(2).options().get(0));
+    EnumElement enumElement = (EnumElement) first.typeElements().get(1);
+    assertThat(enumElement.constants().get(0).options().get(0))
+        .isSameAs(fields.get(0).options().get(0));
+
+    assertThat(second.options().get(0)).isSameAs(first.options().get(0));
+    MessageElement secondMessage = (MessageElement) second.typeElements().get(0);
+    assertThat(secondMessage.fields().get(0).options().get(1))
+        .isSameAs(fields.get(0).options().get(1));
+    assertThat(second).isEqualTo(ProtoParser.parse("b.proto", proto));
+    assertThat(options.symbolPool().optionCount()).isEqualTo(3);
+  }
+
+  @Test public void concurrentUse() throws Exception {
+    final SymbolPool pool = new SymbolPool();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(new Callable<List<String>>() {
+          @Override public List<String> call() {
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+              result.add(pool.intern("symbol" + i));
+            }
+            return result;
+          }
+        }));
+      }
+      List<String> first = futures.get(0).get();
+      for (Future<List<String>> future : futures) {
+        List<String> symbols = future.get();
+        for (int i = 0; i < symbols.size(); i++) {
+          assertThat(symbols.get(i)).isSameAs(first.get(i));
+        }
+      }
+      assertThat(pool.size()).isEqualTo(5000);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Parses a corpus of files and compares the distinct identifier instances, and their total
+   * length in characters, with and without a shared pool.
+   */
+  @Test public void sharedPoolKeepsOneInstancePerIdentifier() {
+    ProtoFileGenerator generator = ProtoFileGenerator.builder().seed(13).messageCount(30).build();
+    List<String> schemas = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      schemas.add(generator.generateSchema("file" + i + ".proto"));
+    }
+    ParseOptions shared = ParseOptions.builder().symbolPool(new SymbolPool()).build();
+
+    Map<String, Boolean> unpooled = new IdentityHashMap<>();
+    Map<String, Boolean> pooled = new IdentityHashMap<>();
+    Set<String> distinct = new HashSet<>();
+    for (int i = 0; i < schemas.size(); i++) {
+      String name = "file" + i + ".proto";
+      collectIdentifiers(ProtoParser.parse(name, schemas.get(i)), unpooled);
+      collectIdentifiers(ProtoParser.parse(name, schemas.get(i), shared), pooled);
+      collectIdentifiers(ProtoParser.parseUtf8(name, schemas.get(i).getBytes(UTF_8), shared),
+          pooled);
+    }
+    distinct.addAll(unpooled.keySet());
+
+    // A shared pool holds exactly one instance of each identifier, for both backends.
+    assertThat(pooled).hasSize(distinct.size());
+    assertThat(new HashSet<>(pooled.keySet())).isEqualTo(distinct);
+    assertThat(totalLength(pooled.keySet())).isLessThan(totalLength(unpooled.keySet()) / 2);
+    assertThat(shared.symbolPool().size()).isGreaterThanOrEqualTo(distinct.size());
+  }
+
+  private static long totalLength(Set<String> strings) {
+    long result = 0;
+    for (String s : strings) {
+      result += s.length();
+    }
+    return result;
+  }
+
+  private static void collectIdentifiers(ProtoFile protoFile, Map<String, Boolean> out) {
+    if (protoFile.packageName() != null) out.put(protoFile.packageName(), true);
+    collectTypes(protoFile.typeElements(), out);
+    for (ServiceElement service : protoFile.services()) {
+      out.put(service.name(), true);
+      for (RpcElement rpc : service.rpcs()) {
+        out.put(rpc.name(), true);
+        out.put(rpc.requestType().name(), true);
+        out.put(rpc.responseType().name(), true);
+      }
+    }
+  }
+
+  private static void collectTypes(List<TypeElement> types, Map<String, Boolean> out) {
+    for (TypeElement type : types) {
+      out.put(type.name(), true);
+      if (type instanceof MessageElement) {
+        MessageElement message = (MessageElement) type;
+        collectFields(message.fields(), out);
+        for (OneOfElement oneOf : message.oneOfs()) {
+          out.put(oneOf.name(), true);
+          collectFields(oneOf.fields(), out);
+        }
+      } else if (type instanceof EnumElement) {
+        for (EnumConstantElement constant : ((EnumElement) type).constants()) {
+          out.put(constant.name(), true);
+        }
+      }
+      collectTypes(type.nestedElements(), out);
+    }
+  }
+
+  private static void collectFields(List<FieldElement> fields, Map<String, Boolean> out) {
+    for (FieldElement field : fields) {
+      out.put(field.name(), true);
+      if (field.type() instanceof NamedType) {
+        out.put(((NamedType) field.type()).name(), true);
+      }
+    }
+  }
+}
@@ -1,28 +1,69 @@
 package com.squareup.protoparser;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
 import org.junit.Test;
 
-import static com.squareup.protoparser.Utils.appendDocumentation;
-import static com.squareup.protoparser.Utils.appendIndented;
+import static com.squareup.protoparser.Utils.immutableCopyOf;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class UtilsTest {
-  @Test public void indentationTest() {
-    String input = "Foo\nBar\nBaz";
-    String expected = "  Foo\n  Bar\n  Baz\n";
-    StringBuilder builder = new StringBuilder();
-    appendIndented(builder, input);
-    assertThat(builder.toString()).isEqualTo(expected);
+  @Test public void immutableCopyOfEmptyListIsShared() {
+    List<String> copy = immutableCopyOf(new ArrayList<String>());
+    assertThat(copy).isEmpty();
+    assertThat(copy).isSameAs(immutableCopyOf(new ArrayList<Integer>()));
   }
 
-  @Test public void documentationTest() {
-    String input = "Foo\nBar\nBaz";
-    String expected = ""
-        + "// Foo\n"
-        + "// Bar\n"
-        + "// Baz\n";
-    StringBuilder builder = new StringBuilder();
-    appendDocumentation(builder, input);
-    assertThat(builder.toString()).isEqualTo(expected);
+  @Test public void immutableCopyOfSingleElement() {
+    List<String> original = new ArrayList<>(Arrays.asList("a"));
+    List<String> copy = immutableCopyOf(original);
+    original.set(0, "b");
+    assertThat(copy).containsExactly("a");
+    assertThat(copy).isEqualTo(Collections.singletonList("a"));
+    assertUnmodifiable(copy);
+  }
+
+  @Test public void immutableCopyOfManyElements() {
+    List<String> original = new ArrayList<>(Arrays.asList("a", "b", "c"));
+    List<String> copy = immutableCopyOf(original);
+    original.add("d");
+    assertThat(copy).containsExactly("a", "b", "c");
+    assertThat(copy).isEqualTo(Arrays.asList("a", "b", "c"));
+    assertThat(copy.hashCode()).isEqualTo(Arrays.asList("a", "b", "c").hashCode());
+    assertThat(copy).isInstanceOf(RandomAccess.class);
+    assertThat(copy.indexOf("b")).isEqualTo(1);
+    assertThat(copy.subList(1, 3)).containsExactly("b", "c");
+    assertUnmodifiable(copy);
+  }
+
+  @Test public void immutableCopyOfCopyIsSameInstance() {
+    List<String> empty = immutableCopyOf(new ArrayList<String>());
+    List<String> single = immutableCopyOf(Arrays.asList("a"));
+    List<String> many = immutableCopyOf(Arrays.asList("a", "b"));
+    assertThat(immutableCopyOf(empty)).isSameAs(empty);
+    assertThat(immutableCopyOf(single)).isSameAs(single);
+    assertThat(immutableCopyOf(many)).isSameAs(many);
+  }
+
+  private static void assertUnmodifiable(List<String> list) {
+    try {
+      list.add("x");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      list.set(0, "x");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      list.remove(0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
   }
 }